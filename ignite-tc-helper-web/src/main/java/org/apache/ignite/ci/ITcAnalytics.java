@@ -17,6 +17,7 @@
 
 package org.apache.ignite.ci;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Function;
 import org.apache.ignite.ci.analysis.RunStat;
@@ -51,4 +52,12 @@ public interface ITcAnalytics {
      * @param ctx Context as provider build data.
      */
     void calculateBuildStatistic(SingleBuildRunCtx ctx);
+
+    /**
+     * Calculate required statistic for builds if was not already calculated, tests of all builds are updated by
+     * batches.
+     *
+     * @param ctxs Contexts as providers of builds data.
+     */
+    void calculateBuildStatistic(Collection<SingleBuildRunCtx> ctxs);
 }
@@ -23,10 +23,15 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
@@ -46,11 +51,13 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import javax.cache.Cache;
+import javax.cache.processor.MutableEntry;
 import javax.inject.Inject;
 import javax.ws.rs.BadRequestException;
 
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheEntryProcessor;
 import org.apache.ignite.ci.analysis.Expirable;
 import org.apache.ignite.ci.analysis.IVersionedEntity;
 import org.apache.ignite.ci.analysis.LogCheckResult;
@@ -65,6 +72,7 @@ import org.apache.ignite.ci.di.cache.GuavaCached;
 import org.apache.ignite.ci.tcmodel.agent.Agent;
 import org.apache.ignite.ci.tcmodel.changes.Change;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
+import org.apache.ignite.ci.tcmodel.changes.ChangesListFull;
 import org.apache.ignite.ci.tcmodel.conf.BuildType;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.result.Build;
@@ -78,6 +86,8 @@ import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrences;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestRef;
 import org.apache.ignite.ci.tcmodel.user.User;
+import org.apache.ignite.ci.teamcity.ignited.runstat.RunStatEngine;
+import org.apache.ignite.ci.teamcity.pure.IXmlResponseParser;
 import org.apache.ignite.ci.util.CacheUpdateUtil;
 import org.apache.ignite.ci.util.CollectionUtil;
 import org.apache.ignite.ci.util.ObjectInterner;
@@ -98,8 +108,8 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
     //V2 caches, 32 parts (V1 caches were 1024 parts)
     @Deprecated
     private static final String TESTS_OCCURRENCES = "testOccurrences";
-    private static final String TESTS_RUN_STAT = "testsRunStat";
-    private static final String CALCULATED_STATISTIC = "calculatedStatistic";
+    public static final String TESTS_RUN_STAT = "testsRunStat";
+    public static final String CALCULATED_STATISTIC = "calculatedStatistic";
     private static final String LOG_CHECK_RESULT = "logCheckResult";
     private static final String CHANGE_INFO_FULL = "changeInfoFull";
     private static final String CHANGES_LIST = "changesList";
@@ -114,14 +124,21 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
     public static final String CONFIGURATIONS = "configurations";
 
     //todo need separate cache or separate key for 'execution time' because it is placed in statistics
-    private static final String BUILDS_FAILURE_RUN_STAT = "buildsFailureRunStat";
+    public static final String BUILDS_FAILURE_RUN_STAT = "buildsFailureRunStat";
     public static final String BUILDS = "builds";
 
     /** Number of builds to re-query from TC to be sure some builds in the middle are not lost. */
     private static final int MAX_BUILDS_IN_PAST_TO_RELOAD = 5;
 
+    /** Max count of tests statistics entries updated by one batch. */
+    private static final int TEST_STAT_BATCH_SIZE = 1000;
+
     @Inject
     private Ignite ignite;
+
+    /** Statistics engine. */
+    @Inject
+    private RunStatEngine runStatEngine;
     /**
      * Teamcity
      */
@@ -151,6 +168,12 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
 
     private static final boolean noLocks = true;
 
+    /** Tests statistics cache, resolved on first access. */
+    private volatile IgniteCache<TestInBranch, RunStat> testRunStatCache;
+
+    /** Suites statistics cache, resolved on first access. */
+    private volatile IgniteCache<SuiteInBranch, RunStat> buildsFailureRunStatCache;
+
 
     @Override public void init(ITeamcity conn) {
         this.teamcity = conn;
@@ -697,12 +720,10 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
             return persistedBuild;
         }
 
-        if (loaded.isFakeStub() || loaded.hasFinishDate()) {
+        // Runs of suites are counted by RunStatEngine once fat build is saved.
+        if (loaded.isFakeStub() || loaded.hasFinishDate())
             cache.put(href, loaded);
 
-            addBuildOccurrenceToFailuresStat(loaded);
-        }
-
         return loaded;
     }
 
@@ -839,8 +860,12 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
     }
 
     private void addTestOccurrencesToStat(TestOccurrences val) {
+        Map<TestInBranch, List<TestRun>> runs = new LinkedHashMap<>();
+
         for (TestOccurrence next : val.getTests())
-            addTestOccurrenceToStat(next, ITeamcity.DEFAULT, null);
+            collectTestRun(runs, next, ITeamcity.DEFAULT, null);
+
+        addTestRunsToStat(runs, AddTestRunsProcessor.INSTANCE);
     }
 
     /** {@inheritDoc} */
@@ -965,11 +990,12 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
     }
 
     private IgniteCache<TestInBranch, RunStat> testRunStatCache() {
-        return getOrCreateCacheV2(ignCacheNme(TESTS_RUN_STAT));
-    }
+        IgniteCache<TestInBranch, RunStat> cache = testRunStatCache;
+
+        if (cache == null)
+            testRunStatCache = cache = getOrCreateCacheV2(ignCacheNme(TESTS_RUN_STAT));
 
-    private IgniteCache<Integer, Boolean> calculatedStatistic() {
-        return getOrCreateCacheV2(ignCacheNme(CALCULATED_STATISTIC));
+        return cache;
     }
 
     /** {@inheritDoc} */
@@ -994,14 +1020,26 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
      * @return cache from suite name to its failure statistics
      */
     private IgniteCache<SuiteInBranch, RunStat> buildsFailureRunStatCache() {
-        return getOrCreateCacheV2(ignCacheNme(BUILDS_FAILURE_RUN_STAT));
+        IgniteCache<SuiteInBranch, RunStat> cache = buildsFailureRunStatCache;
+
+        if (cache == null)
+            buildsFailureRunStatCache = cache = getOrCreateCacheV2(ignCacheNme(BUILDS_FAILURE_RUN_STAT));
+
+        return cache;
     }
 
     private IgniteCache<Integer, LogCheckResult> logCheckResultCache() {
         return getOrCreateCacheV2(ignCacheNme(LOG_CHECK_RESULT));
     }
 
-    private void addTestOccurrenceToStat(TestOccurrence next, String normalizedBranch, Boolean changesExist) {
+    /**
+     * @param runs Runs of tests to add to statistics.
+     * @param next Test occurrence.
+     * @param normalizedBranch Normalized branch.
+     * @param changesExist Changes exist in build.
+     */
+    private static void collectTestRun(Map<TestInBranch, List<TestRun>> runs, TestOccurrence next,
+        String normalizedBranch, Boolean changesExist) {
         String name = next.getName();
         if (Strings.isNullOrEmpty(name))
             return;
@@ -1009,53 +1047,45 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
         if (next.isMutedTest() || next.isIgnoredTest())
             return;
 
-        TestInBranch k = new TestInBranch(name, normalizedBranch);
-
-        testRunStatCache().invoke(k, (entry, arguments) -> {
-            TestInBranch key = entry.getKey();
-            TestOccurrence testOccurrence = (TestOccurrence)arguments[0];
-
-            RunStat val = entry.getValue();
-            if (val == null)
-                val = new RunStat(key.getName());
-
-            val.addTestRun(testOccurrence, changesExist);
-
-            entry.setValue(val);
-
-            return null;
-        }, next);
-    }
-
-    private void migrateOccurrencesToLatest(TestOccurrences val) {
-        for (TestOccurrence next : val.getTests())
-            migrateTestOneOcurrToAddToLatest(next);
+        runs.computeIfAbsent(new TestInBranch(name, normalizedBranch), k -> new ArrayList<>(1))
+            .add(new TestRun(next, changesExist));
     }
 
-    private void migrateTestOneOcurrToAddToLatest(TestOccurrence next) {
-        String name = next.getName();
-        if (Strings.isNullOrEmpty(name))
+    /**
+     * Adds runs to tests statistics: all runs of the same test are applied by one entry update, entries are updated
+     * by batches with shared processor.
+     *
+     * @param runs Runs of tests.
+     * @param proc Processor to apply runs of each batch.
+     */
+    private void addTestRunsToStat(Map<TestInBranch, List<TestRun>> runs, AddTestRunsProcessor proc) {
+        if (runs.isEmpty())
             return;
 
-        if (next.isMutedTest() || next.isIgnoredTest())
-            return;
+        IgniteCache<TestInBranch, RunStat> cache = testRunStatCache();
+        Map<TestInBranch, List<TestRun>> batch = new HashMap<>();
 
-        TestInBranch k = new TestInBranch(name, ITeamcity.DEFAULT);
+        for (Map.Entry<TestInBranch, List<TestRun>> e : runs.entrySet()) {
+            batch.put(e.getKey(), e.getValue());
 
-        testRunStatCache().invoke(k, (entry, arguments) -> {
-            TestInBranch key = entry.getKey();
-            TestOccurrence testOccurrence = (TestOccurrence)arguments[0];
+            if (batch.size() >= TEST_STAT_BATCH_SIZE) {
+                cache.invokeAll(batch.keySet(), proc, batch);
 
-            RunStat val = entry.getValue();
-            if (val == null)
-                val = new RunStat(key.name);
+                batch = new HashMap<>();
+            }
+        }
 
-            val.addTestRunToLatest(testOccurrence, RunStat.ChangesState.UNKNOWN);
+        if (!batch.isEmpty())
+            cache.invokeAll(batch.keySet(), proc, batch);
+    }
 
-            entry.setValue(val);
+    private void migrateOccurrencesToLatest(TestOccurrences val) {
+        Map<TestInBranch, List<TestRun>> runs = new LinkedHashMap<>();
 
-            return null;
-        }, next);
+        for (TestOccurrence next : val.getTests())
+            collectTestRun(runs, next, ITeamcity.DEFAULT, null);
+
+        addTestRunsToStat(runs, AddTestRunsProcessor.LATEST_ONLY);
     }
 
     /** {@inheritDoc} */
@@ -1098,16 +1128,16 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
     /** {@inheritDoc} */
     @AutoProfiling
     @Override public void calculateBuildStatistic(SingleBuildRunCtx ctx) {
-        if (ctx.buildId() == null)
-            return;
-
-        if (calculatedStatistic().containsKey(ctx.buildId()))
-            return;
-
-        for (TestOccurrence testOccurrence : ctx.getTests())
-            addTestOccurrenceToStat(testOccurrence, normalizeBranch(ctx.getBranch()), !ctx.getChanges().isEmpty());
+        calculateBuildStatistic(Collections.singletonList(ctx));
+    }
 
-        calculatedStatistic().put(ctx.buildId(), true);
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public void calculateBuildStatistic(Collection<SingleBuildRunCtx> ctxs) {
+        // Builds are counted by the same engine as builds saved, so each build is claimed and counted once.
+        runStatEngine.countBuilds(serverId, ctxs.stream()
+            .map(SingleBuildRunCtx::buildCompacted)
+            .collect(Collectors.toList()));
     }
 
     /**
@@ -1171,6 +1201,11 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
         return teamcity.getChangesList(buildId);
     }
 
+    /** {@inheritDoc} */
+    @Override public ChangesListFull getChangesFull(int buildId) {
+        return teamcity.getChangesFull(buildId);
+    }
+
     @Override
     public Change getChange(int changeId) {
         return teamcity.getChange(changeId);
@@ -1225,4 +1260,88 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
     @Override public TestOccurrencesFull getTestsPage(int buildId, String href, boolean testDtls) {
         return teamcity.getTestsPage(buildId, href, testDtls);
     }
+
+    /** {@inheritDoc} */
+    @Override public TestOccurrencesFull getTestsPage(int buildId, int start, int cnt, boolean testDtls) {
+        return teamcity.getTestsPage(buildId, start, cnt, testDtls);
+    }
+
+    /** {@inheritDoc} */
+    @Override public <T> T getTestsPage(int buildId, @Nullable String href, boolean testDtls,
+        IXmlResponseParser<T> parser) {
+        return teamcity.getTestsPage(buildId, href, testDtls, parser);
+    }
+
+    /** {@inheritDoc} */
+    @Override public <T> T getTestsPage(int buildId, int start, int cnt, boolean testDtls,
+        IXmlResponseParser<T> parser) {
+        return teamcity.getTestsPage(buildId, start, cnt, testDtls, parser);
+    }
+
+    /**
+     * Run of test to be added to statistics.
+     */
+    private static class TestRun {
+        /** Test occurrence. */
+        private final TestOccurrence occurrence;
+
+        /** Changes exist in build. */
+        @Nullable private final Boolean changesExist;
+
+        /**
+         * @param occurrence Test occurrence.
+         * @param changesExist Changes exist in build.
+         */
+        TestRun(TestOccurrence occurrence, @Nullable Boolean changesExist) {
+            this.occurrence = occurrence;
+            this.changesExist = changesExist;
+        }
+    }
+
+    /**
+     * Adds runs of test to statistics entry. Runs of all keys of batch are passed as the first argument, so one
+     * processor instance is shared by all keys.
+     */
+    private static class AddTestRunsProcessor implements CacheEntryProcessor<TestInBranch, RunStat, Object> {
+        /** Instance. */
+        static final AddTestRunsProcessor INSTANCE = new AddTestRunsProcessor(false);
+
+        /** Instance adding runs to latest runs only, used for migration. */
+        static final AddTestRunsProcessor LATEST_ONLY = new AddTestRunsProcessor(true);
+
+        /** Only latest runs are updated, changes are unknown. */
+        private final boolean latestOnly;
+
+        /**
+         * @param latestOnly Only latest runs are updated.
+         */
+        private AddTestRunsProcessor(boolean latestOnly) {
+            this.latestOnly = latestOnly;
+        }
+
+        /** {@inheritDoc} */
+        @SuppressWarnings("unchecked")
+        @Override public Object process(MutableEntry<TestInBranch, RunStat> entry, Object... args) {
+            List<TestRun> runs = ((Map<TestInBranch, List<TestRun>>)args[0]).get(entry.getKey());
+
+            if (runs == null)
+                return null;
+
+            RunStat val = entry.getValue();
+
+            if (val == null)
+                val = new RunStat(entry.getKey().getName());
+
+            for (TestRun run : runs) {
+                if (latestOnly)
+                    val.addTestRunToLatest(run.occurrence, RunStat.ChangesState.UNKNOWN);
+                else
+                    val.addTestRun(run.occurrence, run.changesExist);
+            }
+
+            entry.setValue(val);
+
+            return null;
+        }
+    }
 }
@@ -46,6 +46,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 import org.apache.ignite.ci.analysis.ISuiteResults;
 import org.apache.ignite.ci.analysis.LogCheckResult;
 import org.apache.ignite.ci.analysis.LogCheckTask;
@@ -56,6 +57,7 @@ import org.apache.ignite.ci.tcmodel.agent.Agent;
 import org.apache.ignite.ci.tcmodel.agent.AgentsRef;
 import org.apache.ignite.ci.tcmodel.changes.Change;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
+import org.apache.ignite.ci.tcmodel.changes.ChangesListFull;
 import org.apache.ignite.ci.tcmodel.conf.BuildType;
 import org.apache.ignite.ci.tcmodel.conf.Project;
 import org.apache.ignite.ci.tcmodel.conf.bt.BuildTypeFull;
@@ -72,7 +74,10 @@ import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestRef;
 import org.apache.ignite.ci.tcmodel.user.User;
 import org.apache.ignite.ci.tcmodel.user.Users;
+import org.apache.ignite.ci.teamcity.pure.AdaptiveConcurrencyLimit;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityHttpConnection;
+import org.apache.ignite.ci.teamcity.pure.IXmlResponseParser;
+import org.apache.ignite.ci.teamcity.pure.TcRequestLimiter;
 import org.apache.ignite.ci.util.ExceptionUtil;
 import org.apache.ignite.ci.util.HttpUtil;
 import org.apache.ignite.ci.util.UrlUtil;
@@ -114,6 +119,9 @@ public class IgniteTeamcityConnection implements ITeamcity {
     /** Teamcity http connection. */
     @Inject private ITeamcityHttpConnection teamcityHttpConn;
 
+    /** Limiter of concurrent requests to TC servers. */
+    @Inject private TcRequestLimiter reqLimiter;
+
     /**  JIRA authorization token. */
     private String jiraBasicAuthTok;
 
@@ -128,6 +136,9 @@ public class IgniteTeamcityConnection implements ITeamcity {
 
     private static int MAX_CFG_CNT = 500;
 
+    /** Maximum count of changes requested for build at once. */
+    private static final int MAX_CHANGES_CNT = 1000;
+
     public Executor getExecutor() {
         return executor;
     }
@@ -233,12 +244,27 @@ public class IgniteTeamcityConnection implements ITeamcity {
             }
             String url = host + "downloadBuildLog.html" + "?buildId=" + buildIdStr + "&archived=true";
 
+            AdaptiveConcurrencyLimit limit = reqLimiter.limit(serverId());
+            long startNs = acquirePermit(limit);
+            boolean overload = false;
+
             try {
                 HttpUtil.sendGetCopyToFile(basicAuthTok, url, file);
             }
             catch (IOException e) {
+                overload = AdaptiveConcurrencyLimit.isOverload(e);
+
                 throw new UncheckedIOException(e);
             }
+            catch (RuntimeException e) {
+                overload = AdaptiveConcurrencyLimit.isOverload(e);
+
+                throw e;
+            }
+            finally {
+                limit.release(startNs, overload);
+            }
+
             return file;
         };
 
@@ -339,6 +365,16 @@ public class IgniteTeamcityConnection implements ITeamcity {
         return getJaxbUsingHref(href, ChangesList.class);
     }
 
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public ChangesListFull getChangesFull(int buildId) {
+        String href = "app/rest/latest/changes" +
+                "?locator=build:(id:" + buildId + "),count:" + MAX_CHANGES_CNT +
+                "&fields=count,change(id,version,username,date,webUrl,comment,user(id,username,name))";
+
+        return getJaxbUsingHref(href, ChangesListFull.class);
+    }
+
     @AutoProfiling
     @Override public Change getChange(int changeId) {
         String href = "app/rest/latest/changes/id:" + + changeId +"";
@@ -377,17 +413,72 @@ public class IgniteTeamcityConnection implements ITeamcity {
     }
 
     private <T> T sendGetXmlParseJaxb(String url, Class<T> rootElem) {
+        return sendGetXmlParse(url, reader -> loadXml(rootElem, reader));
+    }
+
+    /**
+     * @param url Url.
+     * @param parser Parser of response.
+     */
+    private <T> T sendGetXmlParse(String url, IXmlResponseParser<T> parser) {
+        return sendGet(url, inputStream -> parser.parse(new InputStreamReader(inputStream)));
+    }
+
+    /**
+     * Sends request holding permit of concurrency limit until response is consumed.
+     *
+     * @param url Url.
+     * @param rsp Consumer of response.
+     */
+    private <T> T sendGet(String url, ResponseReader<T> rsp) {
+        AdaptiveConcurrencyLimit limit = reqLimiter.limit(serverId());
+        long startNs = acquirePermit(limit);
+        boolean overload = false;
+
         try {
             try (InputStream inputStream = teamcityHttpConn.sendGet(basicAuthTok, url)) {
-                final InputStreamReader reader = new InputStreamReader(inputStream);
-
-                return loadXml(rootElem, reader);
+                return rsp.read(inputStream);
             }
         }
         catch (IOException e) {
+            overload = AdaptiveConcurrencyLimit.isOverload(e);
+
             throw new UncheckedIOException(e);
         }
-        catch (JAXBException e) {
+        catch (JAXBException | XMLStreamException e) {
+            throw ExceptionUtil.propagateException(e);
+        }
+        catch (RuntimeException e) {
+            overload = AdaptiveConcurrencyLimit.isOverload(e);
+
+            throw e;
+        }
+        finally {
+            limit.release(startNs, overload);
+        }
+    }
+
+    /**
+     * Reader of response.
+     */
+    private interface ResponseReader<T> {
+        /**
+         * @param inputStream Response stream.
+         */
+        T read(InputStream inputStream) throws IOException, JAXBException, XMLStreamException;
+    }
+
+    /**
+     * Waits until request to server is allowed by concurrency limit.
+     *
+     * @param limit Limit.
+     * @return Start timestamp of request.
+     */
+    private long acquirePermit(AdaptiveConcurrencyLimit limit) {
+        try {
+            return limit.acquire();
+        }
+        catch (InterruptedException e) {
             throw ExceptionUtil.propagateException(e);
         }
     }
@@ -658,6 +749,13 @@ public class IgniteTeamcityConnection implements ITeamcity {
         this.teamcityHttpConn = teamcityHttpConn;
     }
 
+    /**
+     * @param reqLimiter Limiter of concurrent requests to TC servers.
+     */
+    public void setRequestLimiter(TcRequestLimiter reqLimiter) {
+        this.reqLimiter = reqLimiter;
+    }
+
     /** {@inheritDoc} */
     @AutoProfiling
     @Override public List<BuildRef> getBuildRefsPage(String fullUrl, AtomicReference<String> outNextPage) {
@@ -679,18 +777,52 @@ public class IgniteTeamcityConnection implements ITeamcity {
         return sendGetXmlParseJaxb(url, TestOccurrencesFull.class);
     }
 
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public TestOccurrencesFull getTestsPage(int buildId, int start, int cnt, boolean testDtls) {
+        return sendGetXmlParseJaxb(host + testsHref(buildId, ",start:" + start + ",count:" + cnt, testDtls),
+            TestOccurrencesFull.class);
+    }
+
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public <T> T getTestsPage(int buildId, @Nullable String href, boolean testDtls,
+        IXmlResponseParser<T> parser) {
+        String relPathSelected = Strings.isNullOrEmpty(href) ? testsStartHref(buildId, testDtls) : href;
+        String url = host + (relPathSelected.startsWith("/") ? relPathSelected.substring(1) : relPathSelected);
+
+        return sendGetXmlParse(url, parser);
+    }
+
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public <T> T getTestsPage(int buildId, int start, int cnt, boolean testDtls,
+        IXmlResponseParser<T> parser) {
+        return sendGetXmlParse(host + testsHref(buildId, ",start:" + start + ",count:" + cnt, testDtls), parser);
+    }
+
     /**
      * @param buildId Build id.
      * @param testDtls request test details string
      */
     @NotNull
     private String testsStartHref(int buildId, boolean testDtls) {
+        return testsHref(buildId, "", testDtls);
+    }
+
+    /**
+     * @param buildId Build id.
+     * @param locatorSuffix Additional locator dimensions.
+     * @param testDtls request test details string
+     */
+    @NotNull
+    private String testsHref(int buildId, String locatorSuffix, boolean testDtls) {
         String fieldList = "id,name," +
             (testDtls ? "details," : "") +
             "status,duration,muted,currentlyMuted,currentlyInvestigated,ignored,test(id),build(id)";
 
         return "app/rest/latest/testOccurrences?locator=build:(id:" +
-            buildId + ")" +
+            buildId + ")" + locatorSuffix +
             "&fields=testOccurrence(" + fieldList + ")";
     }
 }
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.analysis;
+
+import java.util.Arrays;
+import org.apache.ignite.ci.analysis.RunStat.ChangesState;
+import org.apache.ignite.ci.analysis.RunStat.RunStatus;
+import org.apache.ignite.ci.db.Persisted;
+
+/**
+ * Latest runs of test or suite sorted by (build ID, test ID). Runs are kept in ring buffer of parallel primitive
+ * arrays, so appending of the newest run and eviction of the oldest one are O(1). Run older than the newest one is
+ * inserted with shift of newer runs.
+ */
+@Persisted
+public class LatestRuns {
+    /** Initial capacity. */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Statuses by code. */
+    private static final RunStatus[] STATUSES = new RunStatus[16];
+
+    /** Changes states by ordinal. */
+    private static final ChangesState[] CHANGES_STATES = ChangesState.values();
+
+    static {
+        for (RunStatus status : RunStatus.values())
+            STATUSES[status.getCode()] = status;
+    }
+
+    /** Build IDs. */
+    private int[] buildIds;
+
+    /** Test IDs in build, {@code 0} for suite runs. */
+    private int[] testIds;
+
+    /** Codes of runs: status code in lower 4 bits, ordinal of changes state in higher bits. */
+    private byte[] codes;
+
+    /** Position of the oldest run. */
+    private int head;
+
+    /** Count of runs. */
+    private int size;
+
+    /** Counters are calculated, counters are not persisted and are calculated on first access after load. */
+    private transient boolean cntrsReady;
+
+    /** Count of failed runs (any status except success). */
+    private transient int failures;
+
+    /** Count of runs with critical failure. */
+    private transient int criticalFailures;
+
+    /**
+     *
+     */
+    public LatestRuns() {
+        buildIds = new int[INITIAL_CAPACITY];
+        testIds = new int[INITIAL_CAPACITY];
+        codes = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds run, the oldest run is evicted if there are more than {@link RunStat#MAX_LATEST_RUNS} runs. Run of the same
+     * test in the same build is replaced.
+     *
+     * @param buildId Build ID.
+     * @param testId Test ID in build.
+     * @param status Status.
+     * @param changesState Changes state.
+     */
+    public void add(int buildId, int testId, RunStatus status, ChangesState changesState) {
+        byte code = (byte)(status.getCode() | changesState.ordinal() << 4);
+
+        ensureCounters();
+
+        int pos = insertPosition(buildId, testId);
+
+        if (pos < size && compare(pos, buildId, testId) == 0) {
+            int idx = physical(pos);
+
+            count(codes[idx], -1);
+            count(code, 1);
+
+            codes[idx] = code;
+
+            return;
+        }
+
+        if (size == RunStat.MAX_LATEST_RUNS) {
+            if (pos == 0)
+                return; // Older than all runs kept.
+
+            count(codes[head], -1);
+
+            head = (head + 1) % buildIds.length;
+            size--;
+            pos--;
+        }
+
+        if (size == buildIds.length)
+            grow();
+
+        for (int i = size; i > pos; i--) {
+            int to = physical(i);
+            int from = physical(i - 1);
+
+            buildIds[to] = buildIds[from];
+            testIds[to] = testIds[from];
+            codes[to] = codes[from];
+        }
+
+        int idx = physical(pos);
+
+        buildIds[idx] = buildId;
+        testIds[idx] = testId;
+        codes[idx] = code;
+
+        count(code, 1);
+
+        size++;
+    }
+
+    /**
+     * @return Count of failed runs, any status except success is counted.
+     */
+    public int failures() {
+        ensureCounters();
+
+        return failures;
+    }
+
+    /**
+     * @return Count of runs with critical failure.
+     */
+    public int criticalFailures() {
+        ensureCounters();
+
+        return criticalFailures;
+    }
+
+    /**
+     * Calculates counters if entry was just loaded.
+     */
+    private void ensureCounters() {
+        if (cntrsReady)
+            return;
+
+        failures = 0;
+        criticalFailures = 0;
+
+        for (int i = 0; i < size; i++)
+            count(codes[physical(i)], 1);
+
+        cntrsReady = true;
+    }
+
+    /**
+     * @param code Code of run.
+     * @param delta Delta: {@code 1} for added run, {@code -1} for removed one.
+     */
+    private void count(byte code, int delta) {
+        RunStatus status = STATUSES[code & 0x0F];
+
+        if (status != RunStatus.RES_OK)
+            failures += delta;
+
+        if (status == RunStatus.RES_CRITICAL_FAILURE)
+            criticalFailures += delta;
+    }
+
+    /**
+     * @return Count of runs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param idx Index of run, runs are sorted from the oldest to the newest.
+     */
+    public int buildId(int idx) {
+        return buildIds[physical(idx)];
+    }
+
+    /**
+     * @param idx Index of run.
+     */
+    public int testId(int idx) {
+        return testIds[physical(idx)];
+    }
+
+    /**
+     * @param idx Index of run.
+     */
+    public RunStatus status(int idx) {
+        return STATUSES[codes[physical(idx)] & 0x0F];
+    }
+
+    /**
+     * @param idx Index of run.
+     * @return Code of status, see {@link RunStatus#getCode()}.
+     */
+    public int statusCode(int idx) {
+        return codes[physical(idx)] & 0x0F;
+    }
+
+    /**
+     * @param idx Index of run.
+     */
+    public ChangesState changesState(int idx) {
+        return CHANGES_STATES[codes[physical(idx)] >> 4];
+    }
+
+    /**
+     * @param buildId Build ID.
+     * @param testId Test ID.
+     * @return Index of the first run not older than given one.
+     */
+    private int insertPosition(int buildId, int testId) {
+        if (size == 0 || compare(size - 1, buildId, testId) < 0)
+            return size;
+
+        int lo = 0;
+        int hi = size - 1;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (compare(mid, buildId, testId) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+
+    /**
+     * @param idx Index of run.
+     * @param buildId Build ID.
+     * @param testId Test ID.
+     * @return Comparison of run with given key, same as {@link RunStat.TestId#compareTo(RunStat.TestId)}.
+     */
+    private int compare(int idx, int buildId, int testId) {
+        int phys = physical(idx);
+        int res = Integer.compare(buildIds[phys], buildId);
+
+        return res != 0 ? res : Integer.compare(testIds[phys], testId);
+    }
+
+    /**
+     * @param idx Index of run.
+     * @return Index in arrays.
+     */
+    private int physical(int idx) {
+        int phys = head + idx;
+
+        return phys < buildIds.length ? phys : phys - buildIds.length;
+    }
+
+    /**
+     * Grows arrays, runs are moved to the beginning of new arrays.
+     */
+    private void grow() {
+        int cap = Math.min(RunStat.MAX_LATEST_RUNS, buildIds.length * 2);
+
+        buildIds = unwrap(buildIds, cap);
+        testIds = unwrap(testIds, cap);
+        codes = unwrap(codes, cap);
+
+        head = 0;
+    }
+
+    /**
+     * @param arr Ring array.
+     * @param cap New capacity.
+     */
+    private int[] unwrap(int[] arr, int cap) {
+        int[] res = Arrays.copyOfRange(arr, head, head + cap);
+
+        System.arraycopy(arr, 0, res, arr.length - head, head);
+
+        return res;
+    }
+
+    /**
+     * @param arr Ring array.
+     * @param cap New capacity.
+     */
+    private byte[] unwrap(byte[] arr, int cap) {
+        byte[] res = Arrays.copyOfRange(arr, head, head + cap);
+
+        System.arraycopy(arr, 0, res, arr.length - head, head);
+
+        return res;
+    }
+}
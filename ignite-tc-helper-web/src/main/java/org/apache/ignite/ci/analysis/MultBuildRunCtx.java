@@ -23,8 +23,8 @@ import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeCompacted;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ITest;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProblemCompacted;
-import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestCompacted;
 import org.apache.ignite.ci.util.CollectionUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -245,7 +245,7 @@ public class MultBuildRunCtx implements ISuiteResults {
         return new ArrayList<>(res.values());
     }
 
-    public void saveToMap(Map<Integer, TestCompactedMult> res, Stream<TestCompacted> tests) {
+    public void saveToMap(Map<Integer, TestCompactedMult> res, Stream<ITest> tests) {
         tests.forEach(testCompacted -> {
             res.computeIfAbsent(testCompacted.testName(), k -> new TestCompactedMult(compactor))
                     .add(testCompacted);
@@ -67,15 +67,23 @@ public class RunStat {
     private String name;
 
     /**
-     * @deprecated {@link #latestRuns} should be used.
+     * @deprecated {@link #latest} should be used.
      */
     @Deprecated
     @Nullable
     SortedMap<TestId, Integer> latestRunResults;
 
+    /**
+     * @deprecated {@link #latest} should be used, map is kept to read entries saved before.
+     */
+    @Deprecated
     @Nullable
     SortedMap<TestId, RunInfo> latestRuns;
 
+    /** Latest runs. */
+    @Nullable
+    private LatestRuns latest;
+
     /**
      * @param name Name of test or suite.
      */
@@ -99,6 +107,31 @@ public class RunStat {
         lastUpdatedMs = System.currentTimeMillis();
     }
 
+    /**
+     * Registers run of test, same as {@link #addTestRun(TestOccurrence, Boolean)} for data of compacted build.
+     *
+     * @param buildId Build ID.
+     * @param testId Test ID in build.
+     * @param status Status of run.
+     * @param durationMs Duration, negative if unknown.
+     * @param changesExist Changes exist in build, {@code null} if unknown.
+     */
+    public void addTestRun(int buildId, int testId, RunStatus status, int durationMs, @Nullable Boolean changesExist) {
+        addRunToLatest(buildId, testId, status, changesStatus(changesExist));
+
+        runs++;
+
+        if (durationMs >= 0) {
+            totalDurationMs += durationMs;
+            runsWithDuration++;
+        }
+
+        if (status != RES_OK)
+            failures++;
+
+        lastUpdatedMs = System.currentTimeMillis();
+    }
+
     private ChangesState changesStatus(Boolean changesExist) {
         if (changesExist == null)
             return ChangesState.UNKNOWN;
@@ -114,7 +147,7 @@ public class RunStat {
             return;
         }
 
-        addRunToLatest(id, new RunInfo(testToResCode(testOccurrence), changesState));
+        addRunToLatest(id.buildId, id.testId, testToResCode(testOccurrence), changesState);
     }
 
     public static TestId extractFullId(String id) {
@@ -160,14 +193,23 @@ public class RunStat {
         return testOccurrence.isNotMutedOrIgnoredTest() ? RES_FAILURE : RES_MUTED_FAILURE;
     }
 
-    private void addRunToLatest(TestId id, RunInfo runInfo) {
-        if (latestRuns == null)
-            latestRuns = new TreeMap<>();
+    private void addRunToLatest(int buildId, int testId, RunStatus status, ChangesState changesState) {
+        LatestRuns runs = latest();
 
-        latestRuns.put(id, runInfo);
+        if (runs == null)
+            latest = runs = new LatestRuns();
 
-        if (latestRuns.size() > MAX_LATEST_RUNS)
-            latestRuns.remove(latestRuns.firstKey());
+        runs.add(buildId, testId, status, changesState);
+    }
+
+    /**
+     * @return Latest runs, runs kept in deprecated maps are migrated on first access.
+     */
+    @Nullable private LatestRuns latest() {
+        if (latestRuns != null || latestRunResults != null)
+            migrateLatestRuns();
+
+        return latest;
     }
 
     public String name() {
@@ -221,21 +263,21 @@ public class RunStat {
     }
 
     public int getFailuresCount() {
-        if (latestRuns == null)
-            return 0;
+        LatestRuns runs = latest();
 
-        return (int)latestRuns.values().stream().filter(res -> res.status != RES_OK).count();
+        return runs == null ? 0 : runs.failures();
     }
 
     public int getCriticalFailuresCount() {
-        if (latestRuns == null)
-            return 0;
+        LatestRuns runs = latest();
 
-        return (int)latestRuns.values().stream().filter(res -> res.status == RES_CRITICAL_FAILURE).count();
+        return runs == null ? 0 : runs.criticalFailures();
     }
 
     public int getRunsCount() {
-        return latestRuns == null ? 0 : latestRuns.size();
+        LatestRuns runs = latest();
+
+        return runs == null ? 0 : runs.size();
     }
 
     public String getFailPercentPrintable() {
@@ -257,7 +299,6 @@ public class RunStat {
     }
 
     public void addBuildRun(Build build) {
-        runs++;
 //        build.lastChanges
 
         //todo ? add duration from statistics
@@ -267,16 +308,24 @@ public class RunStat {
             runsWithDuration++;
         } */
 
-        if (!build.isSuccess())
-            failures++;
+        addBuildRun(build.getId(), build.isSuccess() ? RES_OK : RES_FAILURE);
+    }
 
-        RunStatus resCode = build.isSuccess() ? RES_OK : RES_FAILURE;
+    /**
+     * @param buildId Build ID.
+     * @param status Status of suite run.
+     */
+    public void addBuildRun(int buildId, RunStatus status) {
+        runs++;
 
-        setBuildResCode(build.getId(), new RunInfo(resCode, ChangesState.UNKNOWN));
+        if (status != RES_OK)
+            failures++;
+
+        setBuildResCode(buildId, status);
     }
 
-    private void setBuildResCode(Integer buildId, RunInfo runInfo) {
-        addRunToLatest(new TestId(buildId, 0), runInfo);
+    private void setBuildResCode(Integer buildId, RunStatus status) {
+        addRunToLatest(buildId, 0, status, ChangesState.UNKNOWN);
     }
 
     /**
@@ -284,7 +333,7 @@ public class RunStat {
      * @param buildId Build id.
      */
     public void setBuildCriticalError(Integer buildId) {
-        setBuildResCode(buildId, new RunInfo(RES_CRITICAL_FAILURE, ChangesState.UNKNOWN));
+        setBuildResCode(buildId, RES_CRITICAL_FAILURE);
     }
 
     /**
@@ -302,78 +351,103 @@ public class RunStat {
      */
     @Nullable
     public List<Integer> getLatestRunResults() {
-        if (latestRuns == null)
+        LatestRuns runs = latest();
+
+        if (runs == null)
             return Collections.emptyList();
 
-        return latestRuns.values().stream().map(info -> info.status.code).collect(Collectors.toList());
-    }
+        List<Integer> res = new ArrayList<>(runs.size());
 
-    private int[] concatArr(int[] arr1, int[] arr2) {
-        int[] arr1and2 = new int[arr1.length + arr2.length];
-        System.arraycopy(arr1, 0, arr1and2, 0, arr1.length);
-        System.arraycopy(arr2, 0, arr1and2, arr1.length, arr2.length);
+        for (int i = 0; i < runs.size(); i++)
+            res.add(runs.status(i).code);
 
-        return arr1and2;
+        return res;
     }
 
+    /**
+     * Detects the most recent occurrence of template in latest runs. For template which should be first only the
+     * oldest runs are checked.
+     *
+     * @param t Template.
+     * @return Central event of detected occurrence or {@code null} if template is not detected.
+     */
     @Nullable
     public TestId detectTemplate(EventTemplate t) {
-        if (latestRuns == null)
+        LatestRuns runs = latest();
+
+        if (runs == null)
             return null;
 
-        int centralEvtBuild = t.beforeEvent().length;
+        int size = t.shouldBeFirst() ? Math.min(runs.size(), t.cntEvents()) : runs.size();
+        long state = 0;
+        int end = -1;
 
-        int[] template = concatArr(t.beforeEvent(), t.eventAndAfter());
+        for (int idx = 0; idx < size; idx++) {
+            state = t.next(state, runs.statusCode(idx));
 
-        assert centralEvtBuild < template.length;
-        assert centralEvtBuild >= 0;
+            if (t.matched(state))
+                end = idx;
+        }
 
-        Set<Map.Entry<TestId, RunInfo>> entries = latestRuns.entrySet();
+        return eventAt(t, runs, end);
+    }
 
-        if (entries.size() < template.length)
-            return null;
+    /**
+     * Detects several templates in one pass over latest runs, same as {@link #detectTemplate(EventTemplate)} for
+     * each template.
+     *
+     * @param templates Templates.
+     * @return Central events of detected occurrences, element is {@code null} if corresponding template is not
+     * detected.
+     */
+    public TestId[] detectTemplates(EventTemplate... templates) {
+        TestId[] res = new TestId[templates.length];
+        LatestRuns runs = latest();
 
-        List<Map.Entry<TestId, RunInfo>> histAsArr = new ArrayList<>(entries);
+        if (runs == null)
+            return res;
 
-        TestId detectedAt = null;
-        if (t.shouldBeFirst()) {
-            if (histAsArr.size() >= runs) // skip if total runs can't fit to latest runs
-                detectedAt = checkTemplateAtPos(template, centralEvtBuild, histAsArr, 0);
-        }
-        else {
-            //startIgnite from the end to find most recent
-            for (int idx = histAsArr.size() - template.length; idx >= 0; idx--) {
-                detectedAt = checkTemplateAtPos(template, centralEvtBuild, histAsArr, idx);
+        long[] states = new long[templates.length];
+        int[] ends = new int[templates.length];
+
+        Arrays.fill(ends, -1);
+
+        for (int idx = 0; idx < runs.size(); idx++) {
+            int code = runs.statusCode(idx);
+
+            for (int i = 0; i < templates.length; i++) {
+                EventTemplate t = templates[i];
 
-                if (detectedAt != null)
-                    break;
+                states[i] = t.next(states[i], code);
+
+                if (t.matched(states[i]) && (!t.shouldBeFirst() || idx == t.cntEvents() - 1))
+                    ends[i] = idx;
             }
         }
 
-        return detectedAt;
+        for (int i = 0; i < templates.length; i++)
+            res[i] = eventAt(templates[i], runs, ends[i]);
+
+        return res;
     }
 
+    /**
+     * @param t Template.
+     * @param runs Latest runs.
+     * @param end Index of the last run of template occurrence, {@code -1} if template is not matched.
+     * @return Central event of occurrence.
+     */
     @Nullable
-    private TestId checkTemplateAtPos(int[] template, int centralEvtBuild, List<Map.Entry<TestId, RunInfo>> histAsArr,
-        int idx) {
-        for (int tIdx = 0; tIdx < template.length; tIdx++) {
-            RunInfo curStatus = histAsArr.get(idx + tIdx).getValue();
-
-            if (curStatus == null)
-                break;
+    private TestId eventAt(EventTemplate t, LatestRuns runs, int end) {
+        if (end < 0)
+            return null;
 
-            RunStatus tmpl = RunStatus.byCode(template[tIdx]);
+        if (t.shouldBeFirst() && runs.size() < this.runs) // skip if total runs can't fit to latest runs
+            return null;
 
-            if ((tmpl == RunStatus.RES_OK_OR_FAILURE && (curStatus.status == RES_OK || curStatus.status == RES_FAILURE))
-                || curStatus.status == tmpl) {
-                if (tIdx == template.length - 1)
-                    return histAsArr.get(idx + centralEvtBuild).getKey();
-            }
-            else
-                break;
-        }
+        int idx = end - t.cntEvents() + 1 + t.beforeEvent().length;
 
-        return null;
+        return new TestId(runs.buildId(idx), runs.testId(idx));
     }
 
     public boolean isFlaky() {
@@ -382,47 +456,61 @@ public class RunStat {
 
     @Nullable
     public String getFlakyComments() {
-        if (latestRuns == null)
+        LatestRuns runs = latest();
+
+        if (runs == null)
             return null;
 
         int statusChange = 0;
 
-        RunInfo prev = null;
-
-        for (RunInfo cur : latestRuns.values()) {
-            if (prev != null && cur != null) {
-                if (prev.status != cur.status
-                    && cur.changesState == ChangesState.NONE
-                    && prev.changesState != ChangesState.UNKNOWN)
-                    statusChange++;
-            }
-            prev = cur;
+        for (int i = 1; i < runs.size(); i++) {
+            if (runs.status(i - 1) != runs.status(i)
+                && runs.changesState(i) == ChangesState.NONE
+                && runs.changesState(i - 1) != ChangesState.UNKNOWN)
+                statusChange++;
         }
 
         if (statusChange < 1)
             return null;
 
         return "Test seems to be flaky: " +
-            "changed its status [" + statusChange + "/" + latestRuns.size() + "] without code modifications";
+            "changed its status [" + statusChange + "/" + runs.size() + "] without code modifications";
     }
 
     /**
-     * Migrate data from latestRunResults to latestRuns.
+     * Migrate data from deprecated latestRuns (or latestRunResults for older entries) to {@link LatestRuns}.
      *
      * @deprecated need to be remove after migrate.
      */
     @Deprecated
     public void migrateLatestRuns(){
-        if(latestRunResults == null)
+        if (latestRuns == null && latestRunResults == null)
             return;
 
-        if (latestRuns == null)
-            latestRuns = new TreeMap<>();
-        else
-            latestRuns.clear();
+        LatestRuns runs = new LatestRuns();
+
+        if (latestRuns != null) {
+            for (Map.Entry<TestId, RunInfo> entry : latestRuns.entrySet()) {
+                RunInfo info = entry.getValue();
 
-        for (Map.Entry<TestId, Integer> entry : latestRunResults.entrySet())
-            latestRuns.put(entry.getKey(), new RunInfo(RunStatus.byCode(entry.getValue()), ChangesState.UNKNOWN));
+                if (info != null && info.status != null) {
+                    runs.add(entry.getKey().buildId, entry.getKey().testId, info.status,
+                        info.changesState == null ? ChangesState.UNKNOWN : info.changesState);
+                }
+            }
+        }
+        else {
+            for (Map.Entry<TestId, Integer> entry : latestRunResults.entrySet()) {
+                RunStatus status = entry.getValue() == null ? null : RunStatus.byCode(entry.getValue());
+
+                if (status != null)
+                    runs.add(entry.getKey().buildId, entry.getKey().testId, status, ChangesState.UNKNOWN);
+            }
+        }
+
+        latest = runs;
+        latestRuns = null;
+        latestRunResults = null;
     }
 
     /**
@@ -479,7 +567,10 @@ public class RunStat {
 
     /**
      * Run info for storage in cache.
+     *
+     * @deprecated {@link LatestRuns} should be used, class is kept to read entries saved before.
      */
+    @Deprecated
     public static class RunInfo {
         /** Status of run. */
         RunStatus status;
@@ -23,10 +23,10 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
-import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestCompacted;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ITest;
 
 public class TestCompactedMult implements ITestFailures {
-    private final List<TestCompacted> occurrences = new ArrayList<>();
+    private final List<ITest> occurrences = new ArrayList<>();
     private IStringCompactor compactor;
     private long avgDuration = -1;
 
@@ -39,7 +39,7 @@ public class TestCompactedMult implements ITestFailures {
     }
 
     @Override public boolean isInvestigated() {
-        return occurrences.stream().anyMatch(TestCompacted::isInvestigated);
+        return occurrences.stream().anyMatch(ITest::isInvestigated);
     }
 
     private int getFailedButNotMutedCount() {
@@ -55,7 +55,7 @@ public class TestCompactedMult implements ITestFailures {
     public long getAvgDurationMs() {
         if (avgDuration < 0) {
             avgDuration = (long)occurrences.stream()
-                .map(TestCompacted::getDuration)
+                .map(ITest::getDuration)
                 .filter(Objects::nonNull)
                 .mapToInt(i -> i)
                 .average()
@@ -70,7 +70,7 @@ public class TestCompactedMult implements ITestFailures {
                 .collect(Collectors.toList());
     }
 
-    public void add(TestCompacted next) {
+    public void add(ITest next) {
         occurrences.add(next);
     }
 }
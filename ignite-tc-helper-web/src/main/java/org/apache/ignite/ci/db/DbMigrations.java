@@ -399,6 +399,14 @@ public class DbMigrations {
             }
         });
 
+        applyMigration("latestRunsToRingBuffer-" + testHistCache.getName(), () -> {
+            migrateLatestRuns(testHistCache);
+        });
+
+        applyMigration("latestRunsToRingBuffer-" + suiteHistCache.getName(), () -> {
+            migrateLatestRuns(suiteHistCache);
+        });
+
         applyDestroyIgnCacheMigration(RUNNING_BUILDS);
 
         applyDestroyIgnCacheMigration(BUILD_QUEUE);
@@ -413,6 +421,30 @@ public class DbMigrations {
         applyDestroyCacheMigration(TEAMCITY_BUILD_CACHE_NAME_OLD, TEAMCITY_BUILD_CACHE_NAME_OLD);
     }
 
+    /**
+     * Converts latest runs kept in maps to {@link org.apache.ignite.ci.analysis.LatestRuns}.
+     *
+     * @param cache Run statistics cache.
+     */
+    private <K> void migrateLatestRuns(IgniteCache<K, RunStat> cache) {
+        System.out.println("Total entry for migrate : " + cache.size());
+
+        int i = 0;
+
+        for (Cache.Entry<K, RunStat> next : cache) {
+            RunStat value = next.getValue();
+
+            value.migrateLatestRuns();
+
+            cache.put(next.getKey(), value);
+
+            if (i % 1000 == 0)
+                System.out.println("Migrating entry: count : " + i);
+
+            i++;
+        }
+    }
+
     private void applyDestroyIgnCacheMigration(String cacheName) {
         String ignCacheNme = ignCacheNme(cacheName);
         applyDestroyCacheMigration(cacheName, ignCacheNme);
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.db;
+
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Helpers for compact raw layout of persisted entities. Integers are written as zigzag varints, so small values
+ * including -1 (used for absent compacted strings) take one byte. Arrays are prefixed by (length + 1), zero length
+ * prefix stands for {@code null} array.
+ *
+ * Entities written in raw layout also write named field {@link #WIRE_VER_FIELD}. Entities written by reflection don't
+ * have this field, so {@code 0} is read for them and compatibility reader (by field names) should be used.
+ *
+ * Raw layout should be used only for cache values: raw data of nested object breaks reading of enclosing object written
+ * by reflection. Nested entities may be embedded into raw data of cache value instead.
+ */
+public class RawBinaryIo {
+    /** Name of field with raw layout version. */
+    public static final String WIRE_VER_FIELD = "wire";
+
+    /**
+     * @param wireVer Wire version read.
+     * @param latest Latest version supported by reader.
+     * @param cls Entity class.
+     */
+    public static void checkWireVersion(int wireVer, int latest, Class<?> cls) throws BinaryObjectException {
+        if (wireVer > latest)
+            throw new BinaryObjectException("Unsupported wire version of " + cls.getSimpleName() + ": " + wireVer);
+    }
+
+    /**
+     * @param writer Writer.
+     * @param val Value.
+     */
+    public static void writeVarInt(BinaryRawWriter writer, int val) {
+        writeUnsigned(writer, ((long)val << 1) ^ (val >> 31));
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    public static int readVarInt(BinaryRawReader reader) {
+        long v = readUnsigned(reader);
+
+        return (int)(v >>> 1) ^ -(int)(v & 1);
+    }
+
+    /**
+     * @param writer Writer.
+     * @param val Value.
+     */
+    public static void writeVarLong(BinaryRawWriter writer, long val) {
+        writeUnsigned(writer, (val << 1) ^ (val >> 63));
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    public static long readVarLong(BinaryRawReader reader) {
+        long v = readUnsigned(reader);
+
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * @param writer Writer.
+     * @param arr Array.
+     */
+    public static void writeIntArray(BinaryRawWriter writer, @Nullable int[] arr) {
+        writeLength(writer, arr == null ? -1 : arr.length);
+
+        if (arr != null) {
+            for (int val : arr)
+                writeVarInt(writer, val);
+        }
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    @Nullable public static int[] readIntArray(BinaryRawReader reader) {
+        int len = readLength(reader);
+
+        if (len < 0)
+            return null;
+
+        int[] arr = new int[len];
+
+        for (int i = 0; i < len; i++)
+            arr[i] = readVarInt(reader);
+
+        return arr;
+    }
+
+    /**
+     * Writes differences between neighbour elements, suitable for ascending or clustered values like build IDs.
+     *
+     * @param writer Writer.
+     * @param arr Array.
+     */
+    public static void writeDeltaIntArray(BinaryRawWriter writer, @Nullable int[] arr) {
+        writeLength(writer, arr == null ? -1 : arr.length);
+
+        if (arr != null) {
+            int prev = 0;
+
+            for (int val : arr) {
+                writeVarInt(writer, val - prev);
+
+                prev = val;
+            }
+        }
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    @Nullable public static int[] readDeltaIntArray(BinaryRawReader reader) {
+        int len = readLength(reader);
+
+        if (len < 0)
+            return null;
+
+        int[] arr = new int[len];
+        int prev = 0;
+
+        for (int i = 0; i < len; i++) {
+            prev += readVarInt(reader);
+
+            arr[i] = prev;
+        }
+
+        return arr;
+    }
+
+    /**
+     * @param writer Writer.
+     * @param arr Array.
+     */
+    public static void writeShortArray(BinaryRawWriter writer, @Nullable short[] arr) {
+        writeLength(writer, arr == null ? -1 : arr.length);
+
+        if (arr != null) {
+            for (short val : arr)
+                writeVarInt(writer, val);
+        }
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    @Nullable public static short[] readShortArray(BinaryRawReader reader) {
+        int len = readLength(reader);
+
+        if (len < 0)
+            return null;
+
+        short[] arr = new short[len];
+
+        for (int i = 0; i < len; i++)
+            arr[i] = (short)readVarInt(reader);
+
+        return arr;
+    }
+
+    /**
+     * @param writer Writer.
+     * @param arr Array.
+     */
+    public static void writeLongArray(BinaryRawWriter writer, @Nullable long[] arr) {
+        writeLength(writer, arr == null ? -1 : arr.length);
+
+        if (arr != null) {
+            for (long val : arr)
+                writeVarLong(writer, val);
+        }
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    @Nullable public static long[] readLongArray(BinaryRawReader reader) {
+        int len = readLength(reader);
+
+        if (len < 0)
+            return null;
+
+        long[] arr = new long[len];
+
+        for (int i = 0; i < len; i++)
+            arr[i] = readVarLong(reader);
+
+        return arr;
+    }
+
+    /**
+     * @param writer Writer.
+     * @param len Length of array or collection, negative for {@code null}.
+     */
+    public static void writeLength(BinaryRawWriter writer, int len) {
+        writeUnsigned(writer, len < 0 ? 0 : len + 1L);
+    }
+
+    /**
+     * @param reader Reader.
+     * @return Length of array or collection, {@code -1} for {@code null}.
+     */
+    public static int readLength(BinaryRawReader reader) {
+        return (int)readUnsigned(reader) - 1;
+    }
+
+    /**
+     * @param writer Writer.
+     * @param v Unsigned value.
+     */
+    private static void writeUnsigned(BinaryRawWriter writer, long v) {
+        while ((v & ~0x7FL) != 0) {
+            writer.writeByte((byte)((v & 0x7F) | 0x80));
+
+            v >>>= 7;
+        }
+
+        writer.writeByte((byte)v);
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    private static long readUnsigned(BinaryRawReader reader) {
+        long res = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = reader.readByte();
+
+            res |= (long)(b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0)
+                return res;
+        }
+
+        throw new BinaryObjectException("Malformed varint");
+    }
+}
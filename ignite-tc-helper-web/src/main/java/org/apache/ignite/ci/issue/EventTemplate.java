@@ -17,14 +17,68 @@
 
 package org.apache.ignite.ci.issue;
 
+import com.google.common.base.Preconditions;
+
+import static org.apache.ignite.ci.analysis.RunStat.RunStatus.RES_FAILURE;
+import static org.apache.ignite.ci.analysis.RunStat.RunStatus.RES_OK;
+import static org.apache.ignite.ci.analysis.RunStat.RunStatus.RES_OK_OR_FAILURE;
+
 public class EventTemplate {
+    /** Count of possible status codes of run, status code is kept in 4 bits. */
+    private static final int STATUS_CODES = 16;
+
     private final int[] beforeEvent;
     private final int[] eventAndAfter;
     private boolean shouldBeFirst;
 
+    /**
+     * Template compiled for shift-and matching: for each status code, mask of template positions accepting the status
+     * (bit {@code i} stands for position {@code i} of template).
+     */
+    private final long[] acceptMasks = new long[STATUS_CODES];
+
+    /** Bit of the last position of template, set in state if template is matched. */
+    private final long matchedBit;
+
     public EventTemplate(int[] beforeEvent, int[] eventAndAfter) {
         this.beforeEvent = beforeEvent;
         this.eventAndAfter = eventAndAfter;
+
+        int len = cntEvents();
+
+        Preconditions.checkArgument(eventAndAfter.length > 0 && len <= Long.SIZE,
+            "Template should contain event and have at most " + Long.SIZE + " runs");
+
+        for (int pos = 0; pos < len; pos++) {
+            int tmpl = pos < beforeEvent.length ? beforeEvent[pos] : eventAndAfter[pos - beforeEvent.length];
+
+            for (int code = 0; code < STATUS_CODES; code++) {
+                if (tmpl == code
+                    || (tmpl == RES_OK_OR_FAILURE.getCode() && (code == RES_OK.getCode() || code == RES_FAILURE.getCode())))
+                    acceptMasks[code] |= 1L << pos;
+            }
+        }
+
+        matchedBit = 1L << (len - 1);
+    }
+
+    /**
+     * Shift-and step: extends all partial matches with next run.
+     *
+     * @param state Current state, bit {@code i} is set if last {@code i + 1} runs match template prefix.
+     * @param statusCode Status code of next run.
+     * @return Next state.
+     */
+    public long next(long state, int statusCode) {
+        return ((state << 1) | 1L) & acceptMasks[statusCode];
+    }
+
+    /**
+     * @param state State.
+     * @return {@code True} if whole template is matched by runs ending at the last processed run.
+     */
+    public boolean matched(long state) {
+        return (state & matchedBit) != 0;
     }
 
     public int[] beforeEvent() {
@@ -21,4 +21,10 @@ public class TcBotSystemProperties {
     public static final String DEV_MODE = "DEV_MODE";
     public static final String TEAMCITY_BOT_RECORDER_URLS = "teamcity.bot.recorder.urls";
     public static final String TEAMCITY_BOT_RECORDER = "teamcity.bot.recorder";
+    /** Parse test occurrences using JAXB instead of streaming parser. */
+    public static final String TEAMCITY_BOT_TESTS_JAXB = "teamcity.bot.tests.jaxb";
+    /** Keep test names of fat builds as delta against reference build of the same suite. */
+    public static final String TEAMCITY_BOT_TEST_NAMES_DELTA = "teamcity.bot.test.names.delta";
+    /** Persist new test names as (suite, class, method) triples instead of whole strings. */
+    public static final String TEAMCITY_BOT_TEST_NAMES_HIERARCHICAL = "teamcity.bot.test.names.hierarchical";
 }
@@ -20,6 +20,7 @@ package org.apache.ignite.ci.tcbot.chain;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -148,7 +149,12 @@ public class BuildChainProcessor {
         FatBuildCompacted build = builds.computeIfAbsent(someEntryPoint.getId(), teamcityIgnited::getFatBuild);
         FullChainRunCtx fullChainRunCtx = new FullChainRunCtx(build.toBuild(compactor));
 
-        contexts.sort(Comparator.comparing(function).reversed());
+        // Rate is calculated once for each suite, not for each comparison.
+        Map<MultBuildRunCtx, Float> sortKeys = new IdentityHashMap<>();
+
+        contexts.forEach(ctx -> sortKeys.put(ctx, function.apply(ctx)));
+
+        contexts.sort(Comparator.comparing(sortKeys::get).reversed());
 
         fullChainRunCtx.addAllSuites(contexts);
 
@@ -253,11 +259,13 @@ public class BuildChainProcessor {
     @AutoProfiling
     protected void analyzeTests(MultBuildRunCtx outCtx, IAnalyticsEnabledTeamcity teamcity,
                                      ProcessLogsMode procLog) {
-        for (SingleBuildRunCtx ctx : outCtx.getBuilds()) {
-            tcUpdatePool.getService().submit(() -> {
-                teamcity.calculateBuildStatistic(ctx);
-            });
+        List<SingleBuildRunCtx> builds = outCtx.getBuilds();
+
+        tcUpdatePool.getService().submit(() -> {
+            teamcity.calculateBuildStatistic(builds);
+        });
 
+        for (SingleBuildRunCtx ctx : builds) {
             if ((procLog == ProcessLogsMode.SUITE_NOT_COMPLETE && ctx.hasSuiteIncompleteFailure())
                     || procLog == ProcessLogsMode.ALL)
                 ctx.setLogCheckResFut(teamcity.analyzeBuildLog(ctx.buildId(), ctx));
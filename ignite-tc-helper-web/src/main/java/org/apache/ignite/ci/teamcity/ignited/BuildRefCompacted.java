@@ -18,6 +18,10 @@ package org.apache.ignite.ci.teamcity.ignited;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinaryWriter;
+import org.apache.ignite.binary.Binarylizable;
 import org.apache.ignite.cache.query.annotations.QuerySqlField;
 import org.apache.ignite.ci.db.Persisted;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
@@ -26,7 +30,7 @@ import org.jetbrains.annotations.NotNull;
 import static org.apache.ignite.ci.tcmodel.hist.BuildRef.*;
 
 @Persisted
-public class BuildRefCompacted {
+public class BuildRefCompacted implements Binarylizable {
     /** Build Id without modifications, -1 if it is null. */
     private int id = -1;
 
@@ -43,6 +47,15 @@ public class BuildRefCompacted {
     /** Compacter identifier for string 'State'. */
     private int state = -1;
 
+    /**
+     * Start date. The number of milliseconds since January 1, 1970, 00:00:00 GMT. Negative if unknown, zero for
+     * entries saved before dates were introduced to reference.
+     */
+    protected long startDate = -1L;
+
+    /** Finish date. The number of milliseconds since January 1, 1970, 00:00:00 GMT. Non positive if unknown. */
+    protected long finishDate = -1L;
+
     /**
      * Default constructor.
      */
@@ -70,6 +83,22 @@ public class BuildRefCompacted {
         branchName = refCompacted.branchName();
         status = refCompacted.status();
         state = refCompacted.state();
+        startDate = refCompacted.startDate;
+        finishDate = refCompacted.finishDate;
+    }
+
+    /**
+     * Takes start and finish dates from other version of this build if dates are unknown here. Build history pages
+     * don't contain dates, so it is required to keep dates which were taken from full build data.
+     *
+     * @param other Other version of the same build.
+     */
+    public void inheritDates(BuildRefCompacted other) {
+        if (!hasStartDate())
+            startDate = other.startDate;
+
+        if (finishDate <= 0)
+            finishDate = other.finishDate;
     }
 
 
@@ -105,6 +134,33 @@ public class BuildRefCompacted {
         return "/app/rest/latest/builds/id:" + id;
     }
 
+    /**
+     * Reference fields are kept as named fields: these are used by SQL index and by scan of binary entries in
+     * {@link BuildRefDao}. Subclasses may write raw data after calling this method.
+     *
+     * {@inheritDoc}
+     */
+    @Override public void writeBinary(BinaryWriter writer) throws BinaryObjectException {
+        writer.writeInt("id", id);
+        writer.writeInt("buildTypeId", buildTypeId);
+        writer.writeInt("branchName", branchName);
+        writer.writeInt("status", status);
+        writer.writeInt("state", state);
+        writer.writeLong("startDate", startDate);
+        writer.writeLong("finishDate", finishDate);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void readBinary(BinaryReader reader) throws BinaryObjectException {
+        id = reader.readInt("id");
+        buildTypeId = reader.readInt("buildTypeId");
+        branchName = reader.readInt("branchName");
+        status = reader.readInt("status");
+        state = reader.readInt("state");
+        startDate = reader.readLong("startDate");
+        finishDate = reader.readLong("finishDate");
+    }
+
     /** {@inheritDoc} */
     @Override public boolean equals(Object o) {
         if (this == o)
@@ -116,12 +172,14 @@ public class BuildRefCompacted {
             buildTypeId == compacted.buildTypeId &&
             branchName == compacted.branchName &&
             status == compacted.status &&
-            state == compacted.state;
+            state == compacted.state &&
+            startDate == compacted.startDate &&
+            finishDate == compacted.finishDate;
     }
 
     /** {@inheritDoc} */
     @Override public int hashCode() {
-        return Objects.hashCode(id, buildTypeId, branchName, status, state);
+        return Objects.hashCode(id, buildTypeId, branchName, status, state, startDate, finishDate);
     }
 
     /** */
@@ -149,6 +207,20 @@ public class BuildRefCompacted {
         return state;
     }
 
+    /**
+     * @return Start date timestamp, non positive value if date is unknown.
+     */
+    public long startDateTs() {
+        return startDate;
+    }
+
+    /**
+     * @return {@code True} if start date of this build is known.
+     */
+    public boolean hasStartDate() {
+        return startDate > 0;
+    }
+
     /** */
     public boolean isFakeStub() {
         return id() < 0;
@@ -181,6 +253,8 @@ public class BuildRefCompacted {
             .add("branchName", branchName)
             .add("status", status)
             .add("state", state)
+            .add("startDate", startDate)
+            .add("finishDate", finishDate)
             .toString();
     }
 }
@@ -18,28 +18,33 @@
 package org.apache.ignite.ci.teamcity.ignited;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import javax.cache.Cache;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
 import org.apache.ignite.cache.QueryEntity;
-import org.apache.ignite.cache.query.QueryCursor;
-import org.apache.ignite.cache.query.SqlQuery;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.AutoProfiling;
-import org.apache.ignite.ci.di.cache.GuavaCached;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
-import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
+import org.apache.ignite.ci.teamcity.ignited.buildref.ActiveBuildsIndex;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildIdsBitmap;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefIndex;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.internal.util.GridIntList;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class BuildRefDao {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(BuildRefDao.class);
+
     /** Cache name */
     public static final String TEAMCITY_BUILD_CACHE_NAME = "teamcityBuildRef";
 
@@ -52,31 +57,131 @@ public class BuildRefDao {
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
+    /** Builds history index: build IDs for each (server, build type, branch). */
+    private final BuildRefIndex histIdx = new BuildRefIndex();
+
+    /** Queued and running builds index: build IDs for each server. */
+    private final ActiveBuildsIndex activeIdx = new ActiveBuildsIndex();
+
+    /** Server ID -> IDs of all build references saved. */
+    private final ConcurrentMap<Integer, BuildIdsBitmap> buildIds = new ConcurrentHashMap<>();
+
+    /** History index was filled from cache. */
+    private boolean histIdxReady;
+
+    /** Compacted string ID of queued state. */
+    private int stateQueuedId = -1;
+
+    /** Compacted string ID of running state. */
+    private int stateRunningId = -1;
+
+    /**
+     * Server ID -> IDs of builds, which references were saved before start and finish dates were added to
+     * {@link BuildRefCompacted}. Dates should be migrated for these entries from fat builds.
+     */
+    private final ConcurrentMap<Integer, GridIntList> buildsWithoutDates = new ConcurrentHashMap<>();
+
     /** */
-    public void init() {
+    public synchronized void init() {
         CacheConfiguration<Long, BuildRefCompacted> cfg = TcHelperDb.getCacheV2Config(TEAMCITY_BUILD_CACHE_NAME);
 
         cfg.setQueryEntities(Collections.singletonList(new QueryEntity(Long.class, BuildRefCompacted.class)));
 
         buildRefsCache = igniteProvider.get().getOrCreateCache(cfg);
+
+        if (!histIdxReady) {
+            stateQueuedId = compactor.getStringId(BuildRef.STATE_QUEUED);
+            stateRunningId = compactor.getStringId(BuildRef.STATE_RUNNING);
+
+            rebuildIndexes();
+
+            histIdxReady = true;
+        }
+    }
+
+    /**
+     * Fills in-memory indexes using one scan over binary entries, references are not deserialized.
+     */
+    private void rebuildIndexes() {
+        long start = System.currentTimeMillis();
+
+        BuildRefIndex.Builder histIdxBld = new BuildRefIndex.Builder();
+        Map<Integer, GridIntList> activeBuilds = new HashMap<>();
+
+        IgniteCache<Long, BinaryObject> binCache = buildRefsCache.withKeepBinary();
+
+        int cnt = 0;
+
+        for (Cache.Entry<Long, BinaryObject> entry : binCache) {
+            Long key = entry.getKey();
+            BinaryObject val = entry.getValue();
+
+            if (key == null || val == null)
+                continue;
+
+            int srvId = (int)(key >> 32);
+            int buildId = cacheKeyToBuildId(key);
+            Integer buildTypeId = val.field("buildTypeId");
+            Integer branchName = val.field("branchName");
+            Long startDate = val.field("startDate");
+            Integer state = val.field("state");
+
+            if (state != null && isActiveState(state))
+                activeBuilds.computeIfAbsent(srvId, k -> new GridIntList()).add(buildId);
+
+            if (startDate == null)
+                buildsWithoutDates.computeIfAbsent(srvId, k -> new GridIntList()).add(buildId);
+
+            histIdxBld.add(srvId,
+                buildTypeId == null ? -1 : buildTypeId,
+                branchName == null ? -1 : branchName,
+                buildId,
+                startDate == null ? -1L : startDate);
+
+            idsBitmap(srvId).add(buildId);
+
+            cnt++;
+        }
+
+        histIdx.reset(histIdxBld);
+        activeIdx.reset(activeBuilds);
+
+        logger.info("Build references indexes were built for " + cnt + " entries in "
+            + (System.currentTimeMillis() - start) + "ms");
     }
 
     /**
      * @param srvId Server id.
-     * @return all builds for a server, full scan.
+     * @param persisted Previous version of reference, if it was saved.
+     * @param next New version of reference.
      */
-    @NotNull protected Stream<BuildRefCompacted> compactedBuildsForServer(int srvId) {
-        return StreamSupport.stream(buildRefsCache.spliterator(), false)
-            .filter(entry -> isKeyForServer(entry.getKey(), srvId))
-            .map(javax.cache.Cache.Entry::getValue);
+    private void updateIndexes(int srvId, @Nullable BuildRefCompacted persisted, BuildRefCompacted next) {
+        if (persisted != null
+            && (persisted.buildTypeId() != next.buildTypeId() || persisted.branchName() != next.branchName()))
+            histIdx.remove(srvId, persisted.buildTypeId(), persisted.branchName(), persisted.id());
+
+        histIdx.add(srvId, next.buildTypeId(), next.branchName(), next.id(), next.startDateTs());
+
+        if (persisted == null)
+            idsBitmap(srvId).add(next.id());
+
+        if (persisted == null || persisted.state() != next.state())
+            activeIdx.update(srvId, next.id(), isActiveState(next.state()));
     }
 
     /**
-     * @param key Key.
      * @param srvId Server id.
      */
-    private boolean isKeyForServer(Long key, int srvId) {
-        return key!=null && key >> 32 == srvId;
+    private BuildIdsBitmap idsBitmap(int srvId) {
+        return buildIds.computeIfAbsent(srvId, k -> new BuildIdsBitmap());
+    }
+
+    /**
+     * @param state State (compacted string).
+     * @return {@code True} if state is queued or running.
+     */
+    private boolean isActiveState(int state) {
+        return state == stateQueuedId || state == stateRunningId;
     }
 
     /**
@@ -101,14 +206,20 @@ public class BuildRefDao {
             long cacheKey = buildIdToCacheKey(srvId, next.id());
             BuildRefCompacted buildPersisted = existingEntries.get(cacheKey);
 
+            if (buildPersisted != null)
+                next.inheritDates(buildPersisted);
+
             if (buildPersisted == null || !buildPersisted.equals(next))
                 entriesToPut.put(cacheKey, next);
         }
 
         int size = entriesToPut.size();
-        if (size != 0)
+        if (size != 0) {
             buildRefsCache.putAll(entriesToPut);
 
+            entriesToPut.forEach((key, next) -> updateIndexes((int)srvId, existingEntries.get(key), next));
+        }
+
         return entriesToPut.keySet();
     }
 
@@ -134,7 +245,23 @@ public class BuildRefDao {
     @NotNull public List<BuildRefCompacted> findBuildsInHistoryCompacted(int srvId,
                                                        @Nullable String buildTypeId,
                                                        String bracnhNameQry) {
+        return findBuildsInHistoryCompacted(srvId, buildTypeId, bracnhNameQry, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
 
+    /**
+     * @param srvId Server id mask high.
+     * @param buildTypeId Build type id.
+     * @param bracnhNameQry Bracnh name query.
+     * @param sinceTs Minimal start date, inclusive.
+     * @param untilTs Maximal start date, inclusive.
+     * @return Builds with start date in range and builds with unknown start date, caller should check such builds.
+     */
+    @AutoProfiling
+    @NotNull public List<BuildRefCompacted> findBuildsInHistoryCompacted(int srvId,
+                                                       @Nullable String buildTypeId,
+                                                       String bracnhNameQry,
+                                                       long sinceTs,
+                                                       long untilTs) {
         Integer buildTypeIdId = compactor.getStringIdIfPresent(buildTypeId);
         if (buildTypeIdId == null)
             return Collections.emptyList();
@@ -143,9 +270,30 @@ public class BuildRefDao {
         if (bracnhNameQryId == null)
             return Collections.emptyList();
 
-        return getBuildsForBranch(srvId, bracnhNameQry).stream()
-                .filter(e -> e.buildTypeId() == buildTypeIdId)
-                .collect(Collectors.toList());
+        int[] buildIds = sinceTs == Long.MIN_VALUE && untilTs == Long.MAX_VALUE
+            ? histIdx.getBuildIds(srvId, buildTypeIdId, bracnhNameQryId)
+            : histIdx.getBuildIds(srvId, buildTypeIdId, bracnhNameQryId, sinceTs, untilTs);
+
+        if (buildIds.length == 0)
+            return Collections.emptyList();
+
+        Set<Long> keys = new HashSet<>(buildIds.length * 2);
+
+        for (int buildId : buildIds)
+            keys.add(buildIdToCacheKey(srvId, buildId));
+
+        Map<Long, BuildRefCompacted> refs = buildRefsCache.getAll(keys);
+
+        List<BuildRefCompacted> res = new ArrayList<>(refs.size());
+
+        for (int buildId : buildIds) {
+            BuildRefCompacted ref = refs.get(buildIdToCacheKey(srvId, buildId));
+
+            if (ref != null && ref.buildTypeId() == buildTypeIdId && ref.branchName() == bracnhNameQryId)
+                res.add(ref);
+        }
+
+        return res;
     }
 
     /**
@@ -167,45 +315,19 @@ public class BuildRefDao {
      */
     @AutoProfiling
     public List<BuildRefCompacted> getQueuedAndRunning(int srvId) {
-        GridIntList list = new GridIntList(2);
-        Integer stateQueuedId = compactor.getStringIdIfPresent(BuildRef.STATE_QUEUED);
-        if (stateQueuedId != null)
-            list.add(stateQueuedId);
-
-        Integer stateRunningId = compactor.getStringIdIfPresent(BuildRef.STATE_RUNNING);
-        if (stateRunningId != null)
-            list.add(stateRunningId);
-
-
-        return compactedBuildsForServer(srvId)
-            .filter(e ->  list.contains(e.state()) )
-            .collect(Collectors.toList());
-    }
+        int[] buildIds = activeIdx.getBuildIds(srvId);
 
-    @AutoProfiling
-    @GuavaCached(softValues = true, maximumSize = 1000, expireAfterAccessSecs = 30)
-    public List<BuildRefCompacted> getBuildsForBranch(int srvId, String branchName) {
-        Integer branchNameId = compactor.getStringIdIfPresent(branchName);
-        if (branchNameId == null)
+        if (buildIds.length == 0)
             return Collections.emptyList();
 
-        List<BuildRefCompacted> list = new ArrayList<>();
-        try (QueryCursor<Cache.Entry<Long, BuildRefCompacted>> qryCursor
-                 = buildRefsCache.query(
-            new SqlQuery<Long, BuildRefCompacted>(BuildRefCompacted.class, "branchName = ?")
-                .setArgs(branchNameId))) {
-
-            for (Cache.Entry<Long, BuildRefCompacted> next : qryCursor) {
-                Long key = next.getKey();
+        Set<Long> keys = new HashSet<>(buildIds.length * 2);
 
-                if (!isKeyForServer(key, srvId))
-                    continue;
+        for (int buildId : buildIds)
+            keys.add(buildIdToCacheKey(srvId, buildId));
 
-                list.add(next.getValue());
-            }
-        }
-
-        return list;
+        return buildRefsCache.getAll(keys).values().stream()
+            .filter(ref -> isActiveState(ref.state()))
+            .collect(Collectors.toList());
     }
 
     /**
@@ -220,22 +342,96 @@ public class BuildRefDao {
         if (buildPersisted == null || !buildPersisted.equals(refCompacted)) {
             buildRefsCache.put(cacheKey, refCompacted);
 
+            updateIndexes(srvId, buildPersisted, refCompacted);
+
             return true;
         }
 
         return false;
     }
 
+    /**
+     * Returns IDs of builds which references were saved without start and finish dates. IDs are removed, so builds not
+     * migrated should be returned by {@link #addBuildsWithoutDates(int, Collection)}.
+     *
+     * @param srvId Server id.
+     */
+    public int[] takeBuildsWithoutDates(int srvId) {
+        GridIntList list = buildsWithoutDates.remove(srvId);
+
+        return list == null ? new int[0] : list.array();
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildIds IDs of builds, which dates are still to be migrated.
+     */
+    public void addBuildsWithoutDates(int srvId, Collection<Integer> buildIds) {
+        buildsWithoutDates.compute(srvId, (k, list) -> {
+            GridIntList res = list == null ? new GridIntList(buildIds.size()) : list;
+
+            buildIds.forEach(res::add);
+
+            return res;
+        });
+    }
+
+    /**
+     * Fills unknown start and finish dates of build references from other versions of the same builds.
+     *
+     * @param srvId Server id.
+     * @param builds Builds having dates, usually fat builds.
+     * @return Count of references updated.
+     */
     @AutoProfiling
-    public int[] getAllIds(int srvId) {
-        GridIntList res = new GridIntList(buildRefsCache.size());
+    public int saveDates(int srvId, Collection<? extends BuildRefCompacted> builds) {
+        Map<Long, BuildRefCompacted> withDates = new HashMap<>();
+
+        for (BuildRefCompacted build : builds) {
+            if (build.hasStartDate())
+                withDates.put(buildIdToCacheKey(srvId, build.id()), build);
+        }
+
+        if (withDates.isEmpty())
+            return 0;
+
+        Map<Long, BuildRefCompacted> existingEntries = buildRefsCache.getAll(withDates.keySet());
+        Map<Long, BuildRefCompacted> entriesToPut = new TreeMap<>();
+
+        existingEntries.forEach((key, persisted) -> {
+            BuildRefCompacted next = new BuildRefCompacted(persisted);
+
+            next.inheritDates(withDates.get(key));
+
+            if (!persisted.equals(next))
+                entriesToPut.put(key, next);
+        });
+
+        if (!entriesToPut.isEmpty()) {
+            buildRefsCache.putAll(entriesToPut);
 
-        StreamSupport.stream(buildRefsCache.spliterator(), false)
-                .map(Cache.Entry::getKey)
-                .filter(entry -> isKeyForServer(entry, srvId))
-                .map(BuildRefDao::cacheKeyToBuildId)
-                .forEach(res::add);
+            entriesToPut.forEach((key, next) -> updateIndexes(srvId, existingEntries.get(key), next));
+        }
+
+        return entriesToPut.size();
+    }
+
+    /**
+     * @param srvId Server id.
+     * @return IDs of all build references for server, in ascending order.
+     */
+    @AutoProfiling
+    public int[] getAllIds(int srvId) {
+        return idsBitmap(srvId).toArray();
+    }
 
-        return res.array();
+    /**
+     * @param srvId Server id.
+     * @param exclude IDs to exclude.
+     * @return IDs of build references for server, which are absent in provided set, in ascending order.
+     */
+    @AutoProfiling
+    public int[] getAllIdsExcept(int srvId, BuildIdsBitmap exclude) {
+        return idsBitmap(srvId).andNot(exclude);
     }
 }
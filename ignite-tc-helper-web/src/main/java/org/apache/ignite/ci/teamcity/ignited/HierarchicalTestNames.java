@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import com.google.common.base.MoreObjects;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import javax.cache.processor.MutableEntry;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheEntryProcessor;
+import org.apache.ignite.cache.QueryEntity;
+import org.apache.ignite.cache.query.annotations.QuerySqlField;
+import org.apache.ignite.ci.tcbot.TcBotSystemProperties;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.internal.util.GridIntList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Hierarchical encoding of test names. Name like 'org.apache.ignite.testsuites.SomeTestSuite:
+ * org.apache.ignite.some.SomeTest.testMethod' is persisted as triple of compacted strings (suite prefix, class,
+ * method), so suite and class names are not repeated in persisted strings for each test method. Full names are
+ * reconstructed in local dictionary of compactor, so callers of compactor see ordinary string IDs.
+ */
+class HierarchicalTestNames {
+    /** Cache name. */
+    static final String TEST_NAMES_CACHE = "testNamesHierarchical";
+
+    /** Separator of suite prefix. */
+    private static final String SUITE_SEPARATOR = ": ";
+
+    /** Names cache: (suite, class, method) -> ID. */
+    private IgniteCache<TestNameKey, TestNameEntity> cache;
+
+    /** Class ID -> IDs of test names, guarded by itself. */
+    private final Map<Integer, GridIntList> namesByCls = new HashMap<>();
+
+    /**
+     * @param ignite Ignite.
+     */
+    void init(Ignite ignite) {
+        CacheConfiguration<TestNameKey, TestNameEntity> cfg
+            = IgniteStringCompactor.getCache8PartsConfig(TEST_NAMES_CACHE);
+
+        cfg.setQueryEntities(Collections.singletonList(new QueryEntity(TestNameKey.class, TestNameEntity.class)));
+
+        cache = ignite.getOrCreateCache(cfg);
+    }
+
+    /**
+     * @return Names cache.
+     */
+    IgniteCache<TestNameKey, TestNameEntity> cache() {
+        return cache;
+    }
+
+    /**
+     * @return {@code True} if new test names should be saved in hierarchical form.
+     */
+    static boolean enabled() {
+        return Boolean.getBoolean(TcBotSystemProperties.TEAMCITY_BOT_TEST_NAMES_HIERARCHICAL);
+    }
+
+    /**
+     * @param val String.
+     * @return Suite prefix (may be null), class and method of test name, or null if string is not a test name.
+     */
+    @Nullable static String[] split(String val) {
+        int suiteEnd = val.lastIndexOf(SUITE_SEPARATOR);
+        int clsStart = suiteEnd < 0 ? 0 : suiteEnd + SUITE_SEPARATOR.length();
+
+        int mtdEnd = val.length();
+
+        for (int i = clsStart; i < val.length(); i++) {
+            char c = val.charAt(i);
+
+            // Parameters of method may contain dots.
+            if (c == '[' || c == '(') {
+                mtdEnd = i;
+
+                break;
+            }
+        }
+
+        int dot = val.lastIndexOf('.', mtdEnd - 1);
+
+        if (dot <= clsStart || dot == val.length() - 1 || !Character.isJavaIdentifierStart(val.charAt(dot + 1)))
+            return null;
+
+        boolean pkg = false;
+
+        for (int i = clsStart; i < dot; i++) {
+            char c = val.charAt(i);
+
+            if (c == '.')
+                pkg = true;
+            else if (!Character.isJavaIdentifierPart(c))
+                return null;
+        }
+
+        if (!pkg)
+            return null;
+
+        return new String[] {
+            suiteEnd < 0 ? null : val.substring(0, suiteEnd),
+            val.substring(clsStart, dot),
+            val.substring(dot + 1)};
+    }
+
+    /**
+     * @param key Name key.
+     * @param strings Compacted strings resolver.
+     * @return Full test name, null if some part of name is not found.
+     */
+    @Nullable static String join(TestNameKey key, IntFunction<String> strings) {
+        String suite = key.suite < 0 ? null : strings.apply(key.suite);
+        String cls = strings.apply(key.cls);
+        String mtd = strings.apply(key.mtd);
+
+        if ((key.suite >= 0 && suite == null) || cls == null || mtd == null)
+            return null;
+
+        return (suite == null ? "" : suite + SUITE_SEPARATOR) + cls + '.' + mtd;
+    }
+
+    /**
+     * @param key Name key.
+     * @param id Name ID.
+     */
+    void index(TestNameKey key, int id) {
+        synchronized (namesByCls) {
+            namesByCls.computeIfAbsent(key.cls, k -> new GridIntList(4)).add(id);
+        }
+    }
+
+    /**
+     * @param clsPrefix Prefix of class name, e.g. package.
+     * @param strings Compacted strings resolver.
+     * @return IDs of test names having class with given prefix.
+     */
+    int[] namesByClassPrefix(String clsPrefix, IntFunction<String> strings) {
+        GridIntList res = new GridIntList();
+
+        synchronized (namesByCls) {
+            namesByCls.forEach((clsId, ids) -> {
+                String cls = strings.apply(clsId);
+
+                if (cls != null && cls.startsWith(clsPrefix))
+                    res.addAll(ids);
+            });
+        }
+
+        return res.array();
+    }
+
+    /**
+     * Key of test name: compacted strings of name parts.
+     */
+    public static class TestNameKey {
+        /** Suite prefix, {@code -1} if name has no suite prefix. */
+        @QuerySqlField
+        int suite;
+
+        /** Class. */
+        @QuerySqlField
+        int cls;
+
+        /** Method. */
+        @QuerySqlField
+        int mtd;
+
+        /**
+         * @param suite Suite prefix.
+         * @param cls Class.
+         * @param mtd Method.
+         */
+        TestNameKey(int suite, int cls, int mtd) {
+            this.suite = suite;
+            this.cls = cls;
+            this.mtd = mtd;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            TestNameKey key = (TestNameKey)o;
+
+            return suite == key.suite && cls == key.cls && mtd == key.mtd;
+        }
+
+        /** {@inheritDoc} */
+        @Override public int hashCode() {
+            return Objects.hash(suite, cls, mtd);
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return MoreObjects.toStringHelper(this)
+                .add("suite", suite)
+                .add("cls", cls)
+                .add("mtd", mtd)
+                .toString();
+        }
+    }
+
+    /**
+     * ID of test name.
+     */
+    public static class TestNameEntity {
+        /** ID. */
+        @QuerySqlField(index = true)
+        int id;
+
+        /**
+         * @param id ID.
+         */
+        TestNameEntity(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Puts test name if it is absent.
+     */
+    static class PutIfAbsentProcessor implements CacheEntryProcessor<TestNameKey, TestNameEntity, Integer> {
+        /** ID candidate. */
+        private final int candidate;
+
+        /**
+         * @param candidate ID candidate.
+         */
+        PutIfAbsentProcessor(int candidate) {
+            this.candidate = candidate;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Integer process(MutableEntry<TestNameKey, TestNameEntity> entry, Object... args) {
+            TestNameEntity existing = entry.getValue();
+
+            if (existing != null)
+                return existing.id;
+
+            entry.setValue(new TestNameEntity(candidate));
+
+            return candidate;
+        }
+    }
+}
@@ -16,6 +16,9 @@
  */
 package org.apache.ignite.ci.teamcity.ignited;
 
+import java.util.Collection;
+import org.jetbrains.annotations.Nullable;
+
 /**
  *
  */
@@ -34,4 +37,44 @@ public interface IStringCompactor {
      * @param val Value to check in the compactor.
      */
     public Integer getStringIdIfPresent(String val);
+
+    /**
+     * Compacts several strings at once, implementations may resolve all strings by one storage operation.
+     *
+     * @param vals Values, may contain duplicates and nulls.
+     * @return IDs in the same order as values, {@code -1} for null values.
+     */
+    public default int[] getStringIds(Collection<String> vals) {
+        int[] res = new int[vals.size()];
+        int i = 0;
+
+        for (String val : vals)
+            res[i++] = getStringId(val);
+
+        return res;
+    }
+
+    /**
+     * @param ids IDs.
+     * @return Strings in the same order as IDs, {@code null} for negative or unknown IDs.
+     */
+    public default String[] getStringsFromIds(int[] ids) {
+        String[] res = new String[ids.length];
+
+        for (int i = 0; i < ids.length; i++)
+            res[i] = getStringFromId(ids[i]);
+
+        return res;
+    }
+
+    /**
+     * Finds test names by prefix of test class, e.g. all tests of some package. Only test names persisted in
+     * hierarchical form are found.
+     *
+     * @param clsPrefix Prefix of fully qualified class name.
+     * @return IDs of test names or null if compactor doesn't support search of test names.
+     */
+    @Nullable public default int[] getTestNameIdsByClassPrefix(String clsPrefix) {
+        return null;
+    }
 }
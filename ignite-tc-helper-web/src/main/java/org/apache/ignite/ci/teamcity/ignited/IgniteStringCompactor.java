@@ -17,27 +17,46 @@
 package org.apache.ignite.ci.teamcity.ignited;
 
 import com.google.common.base.MoreObjects;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 import javax.cache.Cache;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.MutableEntry;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteAtomicSequence;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheEntryProcessor;
 import org.apache.ignite.cache.QueryEntity;
 import org.apache.ignite.cache.affinity.rendezvous.RendezvousAffinityFunction;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.cache.query.ContinuousQuery;
 import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
 import org.apache.ignite.cache.query.SqlQuery;
-import org.apache.ignite.cache.query.annotations.QuerySqlField;
 import org.apache.ignite.ci.di.AutoProfiling;
-import org.apache.ignite.ci.di.cache.GuavaCached;
+import org.apache.ignite.ci.teamcity.ignited.HierarchicalTestNames.TestNameEntity;
+import org.apache.ignite.ci.teamcity.ignited.HierarchicalTestNames.TestNameKey;
+import org.apache.ignite.cache.query.annotations.QuerySqlField;
 import org.apache.ignite.ci.util.ExceptionUtil;
 import org.apache.ignite.ci.util.ObjectInterner;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +82,21 @@ public class IgniteStringCompactor implements IStringCompactor {
     /** Sequence. */
     private IgniteAtomicSequence seq;
 
+    /** Local copy of persisted strings. */
+    private final StringDictionary dict = new StringDictionary();
+
+    /** Continuous query keeping dictionary in sync with strings cache. */
+    private QueryCursor<Cache.Entry<String, CompactorEntity>> dictUpdates;
+
+    /** Test names persisted in hierarchical form. */
+    private final HierarchicalTestNames testNames = new HierarchicalTestNames();
+
+    /** Continuous query keeping dictionary in sync with hierarchical test names. */
+    private QueryCursor<Cache.Entry<TestNameKey, TestNameEntity>> testNamesUpdates;
+
+    /** Test names notified before its parts: ID -> name key. Names are resolved by threads requesting strings. */
+    private final ConcurrentMap<Integer, TestNameKey> unresolvedTestNames = new ConcurrentHashMap<>();
+
     public static class CompactorEntity {
         @QuerySqlField
         String val;
@@ -83,6 +117,9 @@ public class IgniteStringCompactor implements IStringCompactor {
     }
 
     private void initIfNeeded() {
+        if (initLatch.getCount() == 0)
+            return;
+
         if (initGuard.compareAndSet(false, true)) {
             init();
 
@@ -110,70 +147,486 @@ public class IgniteStringCompactor implements IStringCompactor {
         stringsCache = ignite.getOrCreateCache(cfg);
 
         seq = ignite.atomicSequence(STRINGS_SEQ, 0, true);
+
+        testNames.init(ignite);
+
+        loadDictionary();
+    }
+
+    /**
+     * Subscribes dictionary to updates of strings cache and loads persisted strings using parallel scan of partitions.
+     * Subscription is made first, so strings added during load are not missed. Test names persisted in hierarchical
+     * form are loaded after strings, because names are reconstructed from strings.
+     */
+    private void loadDictionary() {
+        long start = System.currentTimeMillis();
+
+        ContinuousQuery<String, CompactorEntity> qry = new ContinuousQuery<>();
+
+        qry.setLocalListener(evts -> evts.forEach(evt -> {
+            CompactorEntity entity = evt.getValue();
+
+            if (entity != null)
+                dict.put(entity.id, entity.val);
+        }));
+
+        dictUpdates = stringsCache.query(qry);
+
+        IgniteCache<String, BinaryObject> binCache = stringsCache.withKeepBinary();
+
+        IntStream.range(0, igniteProvider.get().affinity(STRINGS_CACHE).partitions()).parallel().forEach(part -> {
+            try (QueryCursor<Cache.Entry<String, BinaryObject>> cursor
+                     = binCache.query(new ScanQuery<String, BinaryObject>(part))) {
+                for (Cache.Entry<String, BinaryObject> entry : cursor) {
+                    Integer id = entry.getValue().field("id");
+
+                    if (id != null)
+                        dict.put(id, entry.getKey());
+                }
+            }
+        });
+
+        ContinuousQuery<TestNameKey, TestNameEntity> namesQry = new ContinuousQuery<>();
+
+        // Only local maps are updated by listener, cache can't be queried from notification thread.
+        namesQry.setLocalListener(evts -> evts.forEach(evt -> {
+            TestNameEntity entity = evt.getValue();
+
+            if (entity != null && putTestName(evt.getKey(), entity.id, false) == null)
+                unresolvedTestNames.put(entity.id, evt.getKey());
+        }));
+
+        testNamesUpdates = testNames.cache().query(namesQry);
+
+        IntStream.range(0, igniteProvider.get().affinity(HierarchicalTestNames.TEST_NAMES_CACHE).partitions())
+            .parallel()
+            .forEach(part -> {
+                try (QueryCursor<Cache.Entry<TestNameKey, TestNameEntity>> cursor
+                         = testNames.cache().query(new ScanQuery<TestNameKey, TestNameEntity>(part))) {
+                    for (Cache.Entry<TestNameKey, TestNameEntity> entry : cursor)
+                        putTestName(entry.getKey(), entry.getValue().id, true);
+                }
+            });
+
+        logger.info("String dictionary was loaded for " + dict.size() + " entries in "
+            + (System.currentTimeMillis() - start) + "ms");
     }
 
     /** {@inheritDoc} */
-    @AutoProfiling
-    @GuavaCached(cacheNegativeNumbersRval = false)
     @Override public int getStringId(String val) {
         if (val == null)
             return -1;
 
         initIfNeeded();
 
-        CompactorEntity entity = stringsCache.get(val);
-        if (entity != null)
-            return entity.id;
-
-        int codeCandidate = (int)seq.incrementAndGet();
+        int id = dict.idOf(val);
 
-        boolean valWasSet = stringsCache.putIfAbsent(val, new CompactorEntity(codeCandidate, val));
+        return id >= 0 ? id : getOrCreateStringId(val);
+    }
 
-        return valWasSet ? codeCandidate : stringsCache.get(val).id;
+    /**
+     * @param val String, which is absent in local dictionary.
+     * @return Persisted ID of the string, new ID is created if it is needed.
+     */
+    private int getOrCreateStringId(String val) {
+        return getOrCreateStringIds(Collections.singleton(val), true).get(val);
     }
 
     /** {@inheritDoc} */
-    @AutoProfiling
-    @GuavaCached(cacheNullRval = false)
     @Override public String getStringFromId(int id) {
         if (id < 0)
             return null;
 
         initIfNeeded();
 
+        String str = dict.byId(id);
+
+        return str != null ? str : loadStringFromId(id);
+    }
+
+    /**
+     * @param id String ID, which is absent in local dictionary.
+     * @return Persisted string or null if it is not found.
+     */
+    @Nullable private String loadStringFromId(int id) {
+        TestNameKey unresolved = unresolvedTestNames.get(id);
+
+        if (unresolved != null) {
+            String name = putTestName(unresolved, id, true);
+
+            if (name != null) {
+                unresolvedTestNames.remove(id, unresolved);
+
+                return name;
+            }
+        }
+
         QueryCursor<Cache.Entry<String, CompactorEntity>> qryCursor
             = stringsCache.query(new SqlQuery<String, CompactorEntity>(CompactorEntity.class, "id = ?").setArgs(id));
 
         Iterator<Cache.Entry<String, CompactorEntity>> iter = qryCursor.iterator();
 
         if (!iter.hasNext()) {
-            System.err.println("Not found string by id " + id);
+            qryCursor.close();
 
-            return null;
+            String name = HierarchicalTestNames.enabled() ? loadTestNameFromId(id) : null;
+
+            if (name == null)
+                System.err.println("Not found string by id " + id);
+
+            return name;
         }
 
         Cache.Entry<String, CompactorEntity> next = iter.next();
 
         qryCursor.close();
 
-        return ObjectInterner.internString(next.getValue().val);
+        String str = ObjectInterner.internString(next.getValue().val);
+
+        dict.put(id, str);
+
+        return str;
+    }
+
+    /**
+     * @param id ID of test name persisted in hierarchical form.
+     * @return Test name or null if it is not found.
+     */
+    @Nullable private String loadTestNameFromId(int id) {
+        try (QueryCursor<Cache.Entry<TestNameKey, TestNameEntity>> cursor = testNames.cache().query(
+            new SqlQuery<TestNameKey, TestNameEntity>(TestNameEntity.class, "id = ?").setArgs(id))) {
+            Iterator<Cache.Entry<TestNameKey, TestNameEntity>> iter = cursor.iterator();
+
+            return iter.hasNext() ? putTestName(iter.next().getKey(), id, true) : null;
+        }
+    }
+
+    /**
+     * Adds test name persisted in hierarchical form to local dictionary.
+     *
+     * @param key Name key.
+     * @param id Name ID.
+     * @param loadParts Load parts of name absent in local dictionary from cache.
+     * @return Test name or null if some part of name is not found.
+     */
+    @Nullable private String putTestName(TestNameKey key, int id, boolean loadParts) {
+        String name = HierarchicalTestNames.join(key, partId -> {
+            String part = dict.byId(partId);
+
+            return part != null || !loadParts ? part : loadStringFromId(partId);
+        });
+
+        if (name != null && dict.put(id, name))
+            testNames.index(key, id);
+
+        return name;
+    }
+
+    /**
+     * Resolves test names notified before its parts.
+     */
+    private void resolveTestNames() {
+        unresolvedTestNames.forEach((id, key) -> {
+            if (putTestName(key, id, true) != null)
+                unresolvedTestNames.remove(id, key);
+        });
     }
 
     /** {@inheritDoc} */
-    @GuavaCached(cacheNullRval = false, cacheNegativeNumbersRval = false)
     @Override public Integer getStringIdIfPresent(String val) {
         if (val == null)
             return -1;
 
         initIfNeeded();
 
+        int id = dict.idOf(val);
+
+        if (id >= 0)
+            return id;
+
         CompactorEntity entity = stringsCache.get(val);
 
-        if (entity != null)
+        if (entity != null) {
+            dict.put(entity.id, entity.val);
+
             return entity.id;
+        }
+
+        String[] parts = HierarchicalTestNames.split(val);
+
+        if (parts == null)
+            return null;
+
+        if (!HierarchicalTestNames.enabled()) {
+            // All persisted names are loaded on init and kept by continuous query.
+            resolveTestNames();
+
+            id = dict.idOf(val);
+
+            return id >= 0 ? id : null;
+        }
+
+        TestNameKey key = testNameKey(parts, Collections.emptyMap());
+        TestNameEntity nameEntity = key == null ? null : testNames.cache().get(key);
+
+        if (nameEntity != null) {
+            putTestName(key, nameEntity.id, true);
+
+            return nameEntity.id;
+        }
 
         return null;
+    }
+
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public int[] getStringIds(Collection<String> vals) {
+        initIfNeeded();
+
+        return getStringIds(vals, true);
+    }
+
+    /**
+     * @param vals Values.
+     * @param testNamesAllowed Test names may be resolved or created in hierarchical form.
+     * @return IDs in the same order as values.
+     */
+    private int[] getStringIds(Collection<String> vals, boolean testNamesAllowed) {
+        int[] res = new int[vals.size()];
+        Set<String> missing = new TreeSet<>();
+        int i = 0;
+
+        for (String val : vals) {
+            int id = val == null ? -1 : dict.idOf(val);
 
+            if (id < 0 && val != null)
+                missing.add(val);
+
+            res[i++] = id;
+        }
+
+        if (missing.isEmpty())
+            return res;
+
+        Map<String, Integer> ids = getOrCreateStringIds(missing, testNamesAllowed);
+
+        i = 0;
+
+        for (String val : vals) {
+            if (res[i] < 0 && val != null)
+                res[i] = ids.get(val);
+
+            i++;
+        }
+
+        return res;
+    }
+
+    /**
+     * Resolves strings by one cache operation, IDs for new strings are reserved from sequence by one range.
+     *
+     * @param vals Strings, which are absent in local dictionary.
+     * @param testNamesAllowed Test names may be resolved or created in hierarchical form.
+     * @return String -> ID.
+     */
+    private Map<String, Integer> getOrCreateStringIds(Set<String> vals, boolean testNamesAllowed) {
+        Map<String, Integer> res = new HashMap<>();
+
+        stringsCache.getAll(vals).forEach((val, entity) -> {
+            dict.put(entity.id, entity.val);
+
+            res.put(val, entity.id);
+        });
+
+        if (testNamesAllowed && res.size() < vals.size())
+            getOrCreateTestNameIds(vals, res);
+
+        if (res.size() == vals.size())
+            return res;
+
+        long nextId = seq.getAndAdd(vals.size() - res.size()) + 1;
+        Map<String, EntryProcessor<String, CompactorEntity, Integer>> procs = new TreeMap<>();
+
+        for (String val : vals) {
+            if (!res.containsKey(val))
+                procs.put(val, new PutIfAbsentProcessor((int)nextId++));
+        }
+
+        // Entries are put only if absent, so concurrently created IDs are never overwritten.
+        stringsCache.invokeAll(procs).forEach((val, procRes) -> {
+            int id = procRes.get();
+
+            dict.put(id, val);
+
+            res.put(val, id);
+        });
+
+        return res;
+    }
+
+    /**
+     * Resolves test names, which are absent in strings cache, using hierarchical names. If hierarchical form is enabled,
+     * new names are created in this form, parts of names are saved as ordinary strings. Otherwise only names already
+     * known locally are resolved.
+     *
+     * @param vals Strings.
+     * @param res String -> ID, to be filled.
+     */
+    private void getOrCreateTestNameIds(Set<String> vals, Map<String, Integer> res) {
+        if (!HierarchicalTestNames.enabled()) {
+            // Persisted names are loaded on init and kept by continuous query, so cache is not requested.
+            resolveTestNames();
+
+            for (String val : vals) {
+                int id = res.containsKey(val) ? -1 : dict.idOf(val);
+
+                if (id >= 0)
+                    res.put(val, id);
+            }
+
+            return;
+        }
+
+        Map<String, String[]> names = new HashMap<>();
+        Set<String> parts = new TreeSet<>();
+
+        for (String val : vals) {
+            String[] valParts = res.containsKey(val) ? null : HierarchicalTestNames.split(val);
+
+            if (valParts == null)
+                continue;
+
+            names.put(val, valParts);
+
+            for (String part : valParts) {
+                if (part != null)
+                    parts.add(part);
+            }
+        }
+
+        if (names.isEmpty())
+            return;
+
+        List<String> partsList = new ArrayList<>(parts);
+        int[] ids = getStringIds(partsList, false);
+        Map<String, Integer> partIds = new HashMap<>();
+
+        for (int i = 0; i < ids.length; i++)
+            partIds.put(partsList.get(i), ids[i]);
+
+        Map<TestNameKey, String> keys = new HashMap<>();
+
+        for (Map.Entry<String, String[]> name : names.entrySet()) {
+            TestNameKey key = testNameKey(name.getValue(), partIds);
+
+            if (key != null)
+                keys.put(key, name.getKey());
+        }
+
+        testNames.cache().getAll(keys.keySet()).forEach((key, entity) -> {
+            String val = keys.remove(key);
+
+            putTestName(key, entity.id, true);
+
+            res.put(val, entity.id);
+        });
+
+        if (keys.isEmpty())
+            return;
+
+        long nextId = seq.getAndAdd(keys.size()) + 1;
+        Map<TestNameKey, EntryProcessor<TestNameKey, TestNameEntity, Integer>> procs = new HashMap<>();
+
+        for (TestNameKey key : keys.keySet())
+            procs.put(key, new HierarchicalTestNames.PutIfAbsentProcessor((int)nextId++));
+
+        testNames.cache().invokeAll(procs).forEach((key, procRes) -> {
+            int id = procRes.get();
+
+            putTestName(key, id, true);
+
+            res.put(keys.get(key), id);
+        });
+    }
+
+    /**
+     * @param parts Suite prefix, class and method of test name.
+     * @param partIds Known IDs of parts, local dictionary is used for other parts.
+     * @return Name key or null if some part is unknown.
+     */
+    @Nullable private TestNameKey testNameKey(String[] parts, Map<String, Integer> partIds) {
+        int[] ids = new int[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i] == null) {
+                ids[i] = -1;
+
+                continue;
+            }
+
+            Integer id = partIds.get(parts[i]);
+
+            ids[i] = id != null ? id : dict.idOf(parts[i]);
+
+            if (ids[i] < 0)
+                return null;
+        }
+
+        return new TestNameKey(ids[0], ids[1], ids[2]);
+    }
+
+    /** {@inheritDoc} */
+    @Override public int[] getTestNameIdsByClassPrefix(String clsPrefix) {
+        initIfNeeded();
+
+        return testNames.namesByClassPrefix(clsPrefix, dict::byId);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String[] getStringsFromIds(int[] ids) {
+        initIfNeeded();
+
+        String[] res = new String[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            int id = ids[i];
+
+            if (id < 0)
+                continue;
+
+            String str = dict.byId(id);
+
+            res[i] = str != null ? str : loadStringFromId(id);
+        }
+
+        return res;
+    }
+
+    /**
+     * Puts compacted string if it is absent.
+     */
+    private static class PutIfAbsentProcessor implements CacheEntryProcessor<String, CompactorEntity, Integer> {
+        /** ID candidate. */
+        private final int candidate;
+
+        /**
+         * @param candidate ID candidate.
+         */
+        PutIfAbsentProcessor(int candidate) {
+            this.candidate = candidate;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Integer process(MutableEntry<String, CompactorEntity> entry, Object... args) {
+            CompactorEntity existing = entry.getValue();
+
+            if (existing != null)
+                return existing.id;
+
+            entry.setValue(new CompactorEntity(candidate, entry.getKey()));
+
+            return candidate;
+        }
     }
 
     @NotNull
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Heap-resident bidirectional dictionary of compacted strings: dense array of strings indexed by ID and open
+ * addressing hash table of IDs keyed by string. Lookups don't lock and don't allocate, updates are serialized.
+ * Lookup may miss string which is being added concurrently, so caller should fall back to persisted strings on miss.
+ */
+class StringDictionary {
+    /** Max ID kept in dictionary, strings with greater IDs are served from persisted strings only. */
+    static final int MAX_ID = 1 << 26;
+
+    /** Initial capacity. */
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    /** Current table, replaced on growth. */
+    private volatile Table tbl = new Table(new String[INITIAL_CAPACITY], new int[INITIAL_CAPACITY * 2]);
+
+    /** Strings count, guarded by this. */
+    private int size;
+
+    /**
+     * @param id String ID.
+     * @return String or null if it is not present in dictionary.
+     */
+    @Nullable String byId(int id) {
+        String[] strs = tbl.strings;
+
+        return id >= 0 && id < strs.length ? strs[id] : null;
+    }
+
+    /**
+     * @param val String.
+     * @return String ID or {@code -1} if it is not present in dictionary.
+     */
+    int idOf(String val) {
+        Table t = tbl;
+        String[] strs = t.strings;
+        int[] slots = t.slots;
+        int mask = slots.length - 1;
+
+        for (int i = spread(val.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+
+            if (slot == 0)
+                return -1;
+
+            int id = slot - 1;
+
+            if (id < strs.length) {
+                String str = strs[id];
+
+                if (str != null && str.equals(val))
+                    return id;
+            }
+        }
+    }
+
+    /**
+     * Adds string, does nothing if string with the same ID is already present.
+     *
+     * @param id String ID.
+     * @param val String.
+     * @return {@code True} if string was added.
+     */
+    synchronized boolean put(int id, String val) {
+        if (id < 0 || id >= MAX_ID || val == null)
+            return false;
+
+        Table t = tbl;
+        String[] strs = t.strings;
+        int[] slots = t.slots;
+
+        if (id < strs.length && strs[id] != null)
+            return false;
+
+        boolean grown = false;
+
+        if (id >= strs.length) {
+            strs = Arrays.copyOf(strs, Math.min(MAX_ID, Math.max(strs.length * 2, Integer.highestOneBit(id) * 2)));
+
+            grown = true;
+        }
+
+        strs[id] = val;
+        size++;
+
+        if (size * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+
+            for (int i = 0; i < strs.length; i++) {
+                if (strs[i] != null)
+                    insert(slots, strs[i], i);
+            }
+
+            grown = true;
+        }
+        else
+            insert(slots, val, id);
+
+        if (grown)
+            tbl = new Table(strs, slots);
+
+        return true;
+    }
+
+    /**
+     * @return Count of strings in dictionary.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param slots Slots.
+     * @param val String.
+     * @param id String ID.
+     */
+    private static void insert(int[] slots, String val, int id) {
+        int mask = slots.length - 1;
+        int i = spread(val.hashCode()) & mask;
+
+        while (slots[i] != 0)
+            i = (i + 1) & mask;
+
+        slots[i] = id + 1;
+    }
+
+    /**
+     * @param h Hash code.
+     */
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Strings and hash table slots, slot contains (ID + 1) of string or {@code 0} if slot is empty.
+     */
+    private static class Table {
+        /** Strings by ID. */
+        final String[] strings;
+
+        /** Slots. */
+        final int[] slots;
+
+        /**
+         * @param strings Strings.
+         * @param slots Slots.
+         */
+        Table(String[] strings, int[] slots) {
+            this.strings = strings;
+            this.slots = slots;
+        }
+    }
+}
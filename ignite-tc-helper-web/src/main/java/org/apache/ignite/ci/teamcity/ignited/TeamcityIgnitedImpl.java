@@ -18,7 +18,6 @@ package org.apache.ignite.ci.teamcity.ignited;
 
 
 import com.google.common.collect.Sets;
-import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.ignite.ci.ITeamcity;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.MonitoredTask;
@@ -27,13 +26,19 @@ import org.apache.ignite.ci.teamcity.ignited.buildcondition.BuildCondition;
 import org.apache.ignite.ci.teamcity.ignited.buildcondition.BuildConditionDao;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.result.Build;
+import org.apache.ignite.ci.teamcity.ignited.buildref.FullReindexState;
+import org.apache.ignite.ci.teamcity.ignited.buildref.FullReindexStateDao;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeCompacted;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeDao;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeSync;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.LoadPriority;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
+import org.apache.ignite.ci.teamcity.ignited.runstat.RunStatEngine;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityConn;
+import org.apache.ignite.ci.util.FutureUtil;
+import org.apache.ignite.ci.web.TcUpdatePool;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
@@ -60,6 +66,9 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
      */
     public static final int MAX_INCREMENTAL_BUILDS_TO_CHECK = 5000;
 
+    /** Count of builds to migrate dates at once. */
+    private static final int MIGRATE_DATES_CHUNK_SIZE = 1000;
+
     /** Server id. */
     private String srvNme;
 
@@ -83,12 +92,24 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
     /** Changes DAO. */
     @Inject private ChangeDao changesDao;
 
+    /** Full reindex progress DAO. */
+    @Inject private FullReindexStateDao reindexStateDao;
+
     /** Changes DAO. */
     @Inject private ChangeSync changeSync;
 
     /** Changes DAO. */
     @Inject private IStringCompactor compactor;
 
+    /** Statistics engine. */
+    @Inject private RunStatEngine runStatEngine;
+
+    /** Pool to run TC requests in background. */
+    @Inject private TcUpdatePool tcUpdatePool;
+
+    /** Request next page of build references while current page is saved during full reindex. */
+    private volatile boolean pipelinedSync = true;
+
     /** Server ID mask for cache Entries. */
     private int srvIdMaskHigh;
 
@@ -101,6 +122,18 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         buildConditionDao.init();
         fatBuildDao.init();
         changesDao.init();
+        reindexStateDao.init();
+        runStatEngine.init(srvNme);
+
+        sheduleMigrateBuildRefsDates();
+    }
+
+    /**
+     *
+     */
+    private void sheduleMigrateBuildRefsDates() {
+        scheduler.sheduleNamed(taskName("migrateBuildRefsDates"), () -> migrateBuildRefsDates(srvNme),
+            360, TimeUnit.MINUTES);
     }
 
 
@@ -120,150 +153,39 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
     }
 
     /** {@inheritDoc} */
-    public List<BuildRefCompacted> getFinishedBuildsCompacted(
+    @AutoProfiling
+    @Override public List<BuildRefCompacted> getFinishedBuildsCompacted(
         @Nullable String buildTypeId,
         @Nullable String branchName,
         @Nullable Date sinceDate,
         @Nullable Date untilDate) {
-        final int allDatesOutOfBounds = -1;
-        final int someDatesOutOfBounds = -2;
-        final int invalidVal = -3;
-        final int unknownStatus = compactor.getStringId(STATUS_UNKNOWN);
-
-        List<BuildRefCompacted> buildRefs = getBuildHistoryCompacted(buildTypeId, branchName)
-            .stream().filter(b -> b.status() != unknownStatus).collect(Collectors.toList());
-
-        int idSince = 0;
-        int idUntil = buildRefs.size() - 1;
-
-        if (sinceDate != null) {
-            idSince = binarySearchDate(buildRefs, 0, buildRefs.size(), sinceDate, true);
-            idSince = (idSince == someDatesOutOfBounds) ? 0 : idSince;
-        }
-
-        if (untilDate != null) {
-            idUntil = (idSince < 0) ? allDatesOutOfBounds :
-                binarySearchDate(buildRefs, idSince, buildRefs.size(), untilDate, false);
-            idUntil = (idUntil == someDatesOutOfBounds) ? buildRefs.size() - 1 : idUntil;
-        }
+        ensureActualizeRequested();
 
-        if (idSince == invalidVal || idUntil == invalidVal) {
-            AtomicBoolean stopFilter = new AtomicBoolean();
-            AtomicBoolean addBuild = new AtomicBoolean();
-
-            return buildRefs.stream()
-                .filter(b -> {
-                    if (stopFilter.get())
-                        return addBuild.get();
-
-                    FatBuildCompacted build = getFatBuild(b.id());
-
-                    if (build == null || build.isFakeStub())
-                        return false;
-
-                    Date date = build.getStartDate();
-
-                    if (sinceDate != null && untilDate != null)
-                        if ((date.after(sinceDate) || date.equals(sinceDate)) &&
-                            (date.before(untilDate) || date.equals(untilDate)))
-                            return true;
-                        else {
-                            if (date.after(untilDate)) {
-                                stopFilter.set(true);
-                                addBuild.set(false);
-                            }
-
-                            return false;
-                        }
-                    else if (sinceDate != null) {
-                        if (date.after(sinceDate) || date.equals(sinceDate)) {
-                            stopFilter.set(true);
-                            addBuild.set(true);
-
-                            return true;
-                        }
-
-                        return false;
-                    }
-                    else {
-                        if (date.after(untilDate)) {
-                            stopFilter.set(true);
-                            addBuild.set(false);
-
-                            return false;
-                        }
-
-                        return true;
-                    }
-                })
-                .collect(Collectors.toList());
-        } else if (idSince == allDatesOutOfBounds || idUntil == allDatesOutOfBounds)
-            return Collections.emptyList();
-        else
-            return buildRefs.subList(idSince, idUntil + 1);
-    }
+        final int unknownStatus = compactor.getStringId(STATUS_UNKNOWN);
+        final long sinceTs = sinceDate == null ? Long.MIN_VALUE : sinceDate.getTime();
+        final long untilTs = untilDate == null ? Long.MAX_VALUE : untilDate.getTime();
+        final boolean filterDates = sinceDate != null || untilDate != null;
 
-    /**
-     * @param buildRefs Build refs list.
-     * @param fromIdx From index.
-     * @param toIdx To index.
-     * @param key Key.
-     * @param since {@code true} If key is sinceDate, {@code false} is untilDate.
-     *
-     * @return {@value >= 0} Build id from list with min interval between key. If since {@code true}, min interval
-     * between key and same day or later. If since {@code false}, min interval between key and same day or earlier;
-     * {@value -1} All dates out of bounds. If sinceDate after last list element date or untilDate before first list
-     * element;
-     * {@value -2} Some dates out of bounds. If sinceDate before first list element or untilDate after last list
-     * element;
-     * {@value -3} Invalid value. If method get null or fake stub build.
-     */
-    private int binarySearchDate(List<BuildRefCompacted> buildRefs, int fromIdx, int toIdx, Date key, boolean since) {
-        final int allDatesOutOfBounds = -1;
-        final int someDatesOutOfBounds = -2;
-        final int invalidVal = -3;
-
-        int low = fromIdx;
-        int high = toIdx - 1;
-        long minDiff = key.getTime();
-        int minDiffId = since ? low : high;
-        long temp;
-
-        FatBuildCompacted highBuild = getFatBuild(buildRefs.get(high).id());
-        FatBuildCompacted lowBuild = getFatBuild(buildRefs.get(low).id());
-
-        if (highBuild != null && !highBuild.isFakeStub()){
-            if (highBuild.getStartDate().before(key))
-                return since ? allDatesOutOfBounds : someDatesOutOfBounds;
-        }
+        String bracnhNameQry = branchForQuery(branchName);
 
-        if (lowBuild != null && !lowBuild.isFakeStub()){
-            if (lowBuild.getStartDate().after(key))
-                return since ? someDatesOutOfBounds : allDatesOutOfBounds;
-        }
+        // Index returns builds started in the range and builds with start date not yet known for the reference.
+        return buildRefDao.findBuildsInHistoryCompacted(srvIdMaskHigh, buildTypeId, bracnhNameQry, sinceTs, untilTs)
+            .stream()
+            .filter(b -> b.status() != unknownStatus)
+            .filter(b -> {
+                if (!filterDates || b.hasStartDate())
+                    return true;
 
-        while (low <= high) {
-            int mid = (low + high) >>> 1;
-            FatBuildCompacted midVal = getFatBuild(buildRefs.get(mid).id());
+                FatBuildCompacted build = getFatBuild(b.id());
 
-            if (midVal != null && !midVal.isFakeStub()) {
-                if (midVal.getStartDate().after(key))
-                    high = mid - 1;
-                else if (midVal.getStartDate().before(key))
-                    low = mid + 1;
-                else
-                    return mid;
+                if (build == null || build.isFakeStub() || !build.hasStartDate())
+                    return false;
 
-                temp = midVal.getStartDate().getTime() - key.getTime();
+                long startTs = build.startDateTs();
 
-                if ((temp > 0 == since) && (Math.abs(temp) < minDiff)) {
-                    minDiff = Math.abs(temp);
-                    minDiffId = mid;
-                }
-            } else
-                return invalidVal;
-        }
-        return minDiffId;
+                return startTs >= sinceTs && startTs <= untilTs;
+            })
+            .collect(Collectors.toList());
     }
 
     /** {@inheritDoc} */
@@ -333,16 +255,19 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         if (existingBuild != null && !existingBuild.isOutdatedEntityVersion()) {
             boolean finished = !existingBuild.isRunning(compactor) && !existingBuild.isQueued(compactor);
 
-            if(finished || acceptQueued)
+            if (finished)
+                return existingBuild;
+
+            if (acceptQueued) {
+                // Stale data is returned now, refresh is requested before any background loading.
+                buildSync.scheduleBuildsLoad(conn, Collections.singleton(buildId), LoadPriority.INTERACTIVE);
+
                 return existingBuild;
+            }
         }
 
         FatBuildCompacted savedVer = buildSync.reloadBuild(conn, buildId, existingBuild);
 
-        //build was modified, probably we need also to update reference accordindly
-        if (savedVer != null)
-            buildRefDao.save(srvIdMaskHigh, new BuildRefCompacted(savedVer));
-
         return savedVer == null ? existingBuild : savedVer;
     }
 
@@ -360,13 +285,10 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
             changes.put(changeId, v);
         });
 
-        for (int changeId : changeIds) {
-            if (!changes.containsKey(changeId)) {
-                final ChangeCompacted change = changeSync.reloadChange(srvIdMaskHigh, changeId, conn);
+        int[] missing = Arrays.stream(changeIds).filter(changeId -> !changes.containsKey(changeId)).toArray();
 
-                changes.put(changeId, change);
-            }
-        }
+        if (missing.length > 0)
+            changes.putAll(changeSync.reloadChanges(srvIdMaskHigh, missing, conn));
 
         return changes.values();
     }
@@ -395,7 +317,7 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
             });
         }
         //schedule direct reload for Fat Builds for all queued too-old builds
-        buildSync.scheduleBuildsLoad(conn, directUpload);
+        buildSync.scheduleBuildsLoad(conn, directUpload, LoadPriority.RUNNING);
 
         runActualizeBuildRefs(srvNme, false, paginateUntil);
 
@@ -404,8 +326,58 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
             buildSync.doLoadBuilds(-1, srvNme, conn, paginateUntil);
         }
 
-        // schedule full resync later
-        scheduler.invokeLater(this::sheduleResyncBuildRefs, 15, TimeUnit.MINUTES);
+        FullReindexState reindexState = reindexStateDao.get(srvIdMaskHigh);
+
+        // continue interrupted full resync as soon as possible, otherwise schedule full resync later
+        if (reindexState != null && reindexState.isInProgress())
+            sheduleResyncBuildRefs();
+        else
+            scheduler.invokeLater(this::sheduleResyncBuildRefs, 15, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Fills start and finish dates for build references saved before dates were introduced, dates are taken from fat
+     * builds already saved in DB.
+     *
+     * @param srvId Server id.
+     */
+    @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
+    @MonitoredTask(name = "Migrate BuildRefs dates", nameExtArgIndex = 0)
+    @AutoProfiling
+    protected String migrateBuildRefsDates(String srvId) {
+        int[] buildIds = buildRefDao.takeBuildsWithoutDates(srvIdMaskHigh);
+
+        int updated = 0;
+        List<Integer> chunk = new ArrayList<>();
+        List<Integer> failed = new ArrayList<>();
+
+        for (int i = 0; i < buildIds.length; i++) {
+            chunk.add(buildIds[i]);
+
+            if (chunk.size() >= MIGRATE_DATES_CHUNK_SIZE || i == buildIds.length - 1) {
+                try {
+                    updated += buildRefDao.saveDates(srvIdMaskHigh,
+                        fatBuildDao.getAllFatBuilds(srvIdMaskHigh, chunk).values());
+                }
+                catch (Exception e) {
+                    logger.error("Migration of build references dates failed for " + srvId + ": " + e.getMessage(), e);
+
+                    failed.addAll(chunk);
+                }
+
+                chunk.clear();
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            // References are kept for the next run of the migration.
+            buildRefDao.addBuildsWithoutDates(srvIdMaskHigh, failed);
+
+            scheduler.invokeLater(this::sheduleMigrateBuildRefsDates, 15, TimeUnit.MINUTES);
+        }
+
+        return "Build references updated " + updated + " from " + buildIds.length + " without dates for " + srvId
+            + (failed.isEmpty() ? "" : ", failed " + failed.size());
     }
 
     /**
@@ -434,12 +406,24 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
     @AutoProfiling
     protected String runActualizeBuildRefs(String srvId, boolean fullReindex,
                                            @Nullable Set<Integer> mandatoryToReload) {
+        FullReindexState reindexState = fullReindex ? startFullReindex() : null;
+        String firstPageUrl = reindexState != null ? reindexState.nextHref : null;
+
         AtomicReference<String> outLinkNext = new AtomicReference<>();
-        List<BuildRef> tcDataFirstPage = conn.getBuildRefsPage(null, outLinkNext);
+        List<BuildRef> tcDataFirstPage = conn.getBuildRefsPage(firstPageUrl, outLinkNext);
+        String nextHref = outLinkNext.get();
+
+        // Full reindex reads all pages, so next page is requested from TC while current page is saved. Incremental
+        // sync usually stops after first pages, so next page is requested only if it is needed.
+        boolean pipelined = fullReindex && pipelinedSync;
+        CompletableFuture<BuildRefsPage> nextPageFut = pipelined ? requestBuildRefsPage(nextHref) : null;
 
         Set<Long> buildsUpdated = buildRefDao.saveChunk(srvIdMaskHigh, tcDataFirstPage);
         int totalUpdated = buildsUpdated.size();
-        buildSync.scheduleBuildsLoad(conn, cacheKeysToBuildIds(buildsUpdated));
+        buildSync.scheduleBuildsLoad(conn, cacheKeysToBuildIds(buildsUpdated), LoadPriority.NEW_REFS);
+
+        if (reindexState != null)
+            saveReindexProgress(reindexState, tcDataFirstPage, buildsUpdated.size(), outLinkNext.get());
 
         int totalChecked = tcDataFirstPage.size();
         int neededToFind = 0;
@@ -449,18 +433,25 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
             tcDataFirstPage.stream().map(BuildRef::getId).forEach(mandatoryToReload::remove);
         }
 
-        while (outLinkNext.get() != null) {
-            String nextPageUrl = outLinkNext.get();
-            outLinkNext.set(null);
-            List<BuildRef> tcDataNextPage = conn.getBuildRefsPage(nextPageUrl, outLinkNext);
+        while (nextHref != null) {
+            BuildRefsPage nextPage = nextPageFut != null
+                ? FutureUtil.getResult(nextPageFut)
+                : loadBuildRefsPage(nextHref);
+            nextHref = nextPage.nextHref;
+            nextPageFut = pipelined ? requestBuildRefsPage(nextHref) : null;
+
+            List<BuildRef> tcDataNextPage = nextPage.builds;
             Set<Long> curChunkBuildsSaved = buildRefDao.saveChunk(srvIdMaskHigh, tcDataNextPage);
             totalUpdated += curChunkBuildsSaved.size();
-            buildSync.scheduleBuildsLoad(conn, cacheKeysToBuildIds(curChunkBuildsSaved));
+            buildSync.scheduleBuildsLoad(conn, cacheKeysToBuildIds(curChunkBuildsSaved), LoadPriority.NEW_REFS);
 
             int savedCurChunk = curChunkBuildsSaved.size();
 
             totalChecked += tcDataNextPage.size();
 
+            if (reindexState != null)
+                saveReindexProgress(reindexState, tcDataNextPage, savedCurChunk, nextPage.nextHref);
+
             if (!fullReindex) {
                 if (mandatoryToReload != null && !mandatoryToReload.isEmpty())
                     tcDataNextPage.stream().map(BuildRef::getId).forEach(mandatoryToReload::remove);
@@ -476,10 +467,110 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
             }
         }
 
+        if (reindexState != null) {
+            reindexState.finishTs = System.currentTimeMillis();
+
+            reindexStateDao.save(srvIdMaskHigh, reindexState);
+        }
+
         int leftToFind = mandatoryToReload == null ? 0 : mandatoryToReload.size();
         return "Entries saved " + totalUpdated + " Builds checked " + totalChecked + " Needed to find " + neededToFind + " remained to find " + leftToFind;
     }
 
+    /**
+     * @return State of full reindex: continued one if previous reindex was interrupted, or new one.
+     */
+    private FullReindexState startFullReindex() {
+        FullReindexState state = reindexStateDao.get(srvIdMaskHigh);
+
+        if (state != null && state.isInProgress()) {
+            logger.info("Full reindex of build references for " + srvNme + " is continued from " + state.nextHref);
+
+            state.resumedCnt++;
+
+            return state;
+        }
+
+        state = new FullReindexState();
+
+        state.srvName = srvNme;
+        state.startTs = System.currentTimeMillis();
+
+        return state;
+    }
+
+    /**
+     * Persists reindex progress, so after restart reindex will be continued from the next page.
+     *
+     * @param state Reindex state.
+     * @param page Page of references saved.
+     * @param saved Count of references saved.
+     * @param nextHref Next page href.
+     */
+    private void saveReindexProgress(FullReindexState state, List<BuildRef> page, int saved,
+        @Nullable String nextHref) {
+        state.nextHref = nextHref;
+        state.updateTs = System.currentTimeMillis();
+        state.buildsChecked += page.size();
+        state.entriesSaved += saved;
+
+        page.stream().mapToInt(BuildRef::getId).min()
+            .ifPresent(minId -> state.lastBuildId = state.lastBuildId == 0 ? minId : Math.min(state.lastBuildId, minId));
+
+        reindexStateDao.save(srvIdMaskHigh, state);
+    }
+
+    /**
+     * @param nextPageUrl Next page url.
+     * @return Future for page of build references requested in background, or {@code null} if there are no more
+     * pages.
+     */
+    @Nullable private CompletableFuture<BuildRefsPage> requestBuildRefsPage(@Nullable String nextPageUrl) {
+        if (nextPageUrl == null)
+            return null;
+
+        return CompletableFuture.supplyAsync(() -> loadBuildRefsPage(nextPageUrl), tcUpdatePool.getService());
+    }
+
+    /**
+     * @param pageUrl Page url.
+     * @return Page of build references.
+     */
+    private BuildRefsPage loadBuildRefsPage(String pageUrl) {
+        AtomicReference<String> outLinkNext = new AtomicReference<>();
+        List<BuildRef> builds = conn.getBuildRefsPage(pageUrl, outLinkNext);
+
+        return new BuildRefsPage(builds, outLinkNext.get());
+    }
+
+    /**
+     * @param pipelinedSync {@code True} to request next page of build references while current one is saved during
+     * full reindex.
+     */
+    void pipelinedSync(boolean pipelinedSync) {
+        this.pipelinedSync = pipelinedSync;
+    }
+
+    /**
+     * Page of build references received from TC.
+     */
+    private static class BuildRefsPage {
+        /** Builds. */
+        private final List<BuildRef> builds;
+
+        /** Next page href. */
+        @Nullable private final String nextHref;
+
+        /**
+         * @param builds Builds.
+         * @param nextHref Next page href.
+         */
+        private BuildRefsPage(List<BuildRef> builds, @Nullable String nextHref) {
+            this.builds = builds;
+            this.nextHref = nextHref;
+        }
+    }
+
     @NotNull private List<Integer> cacheKeysToBuildIds(Collection<Long> cacheKeysUpdated) {
         return cacheKeysUpdated.stream().map(BuildRefDao::cacheKeyToBuildId).collect(Collectors.toList());
     }
@@ -19,12 +19,18 @@ package org.apache.ignite.ci.teamcity.ignited;
 import com.google.inject.AbstractModule;
 import com.google.inject.internal.SingletonScope;
 import org.apache.ignite.ci.teamcity.ignited.buildcondition.BuildConditionDao;
+import org.apache.ignite.ci.teamcity.ignited.buildref.FullReindexStateDao;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeDao;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeSync;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestDetailsDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestDetailsDictionaries;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestNamesRefDao;
+import org.apache.ignite.ci.teamcity.ignited.runstat.RunStatEngine;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityHttpConnection;
 import org.apache.ignite.ci.teamcity.restcached.TcRestCachedModule;
+import org.apache.ignite.ci.web.TcUpdatePool;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -40,11 +46,17 @@ public class TeamcityIgnitedModule extends AbstractModule {
         bind(BuildRefDao.class).in(new SingletonScope());
         bind(BuildConditionDao.class).in(new SingletonScope());
         bind(FatBuildDao.class).in(new SingletonScope());
+        bind(TestDetailsDao.class).in(new SingletonScope());
+        bind(TestDetailsDictionaries.class).in(new SingletonScope());
+        bind(TestNamesRefDao.class).in(new SingletonScope());
         bind(ProactiveFatBuildSync.class).in(new SingletonScope());
         bind(ChangeSync.class).in(new SingletonScope());
         bind(ChangeDao.class).in(new SingletonScope());
+        bind(FullReindexStateDao.class).in(new SingletonScope());
+        bind(RunStatEngine.class).in(new SingletonScope());
 
         bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+        bind(TcUpdatePool.class).in(new SingletonScope());
 
         TcRestCachedModule module = new TcRestCachedModule();
         module.overrideHttp(conn);
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.ignite.internal.util.GridIntList;
+
+/**
+ * In-memory index of queued and running builds for each server. Index is not persisted, it is rebuilt from build
+ * references cache at startup and updated each time reference is saved.
+ */
+public class ActiveBuildsIndex {
+    /** Server ID -> IDs of queued and running builds. */
+    private final ConcurrentMap<Integer, Set<Integer>> srvIdx = new ConcurrentHashMap<>();
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @param active {@code True} if build is queued or running now, {@code false} otherwise.
+     */
+    public void update(int srvId, int buildId, boolean active) {
+        if (active)
+            srvIdx.computeIfAbsent(srvId, k -> ConcurrentHashMap.newKeySet()).add(buildId);
+        else {
+            Set<Integer> ids = srvIdx.get(srvId);
+
+            if (ids != null)
+                ids.remove(buildId);
+        }
+    }
+
+    /**
+     * @param srvId Server id.
+     * @return IDs of queued and running builds, in any order.
+     */
+    public int[] getBuildIds(int srvId) {
+        Set<Integer> ids = srvIdx.get(srvId);
+
+        if (ids == null)
+            return new int[0];
+
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Replaces all index data.
+     *
+     * @param data Server ID -> IDs of queued and running builds.
+     */
+    public void reset(Map<Integer, GridIntList> data) {
+        srvIdx.clear();
+
+        data.forEach((srvId, list) -> {
+            Set<Integer> ids = ConcurrentHashMap.newKeySet(list.size());
+
+            for (int i = 0; i < list.size(); i++)
+                ids.add(list.get(i));
+
+            srvIdx.put(srvId, ids);
+        });
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.concurrent.GuardedBy;
+import org.apache.ignite.ci.db.Persisted;
+import org.apache.ignite.internal.util.GridIntList;
+
+/**
+ * Set of non negative build IDs. IDs are split into chunks by high 16 bits, each chunk is a plain bitmap of 65536 bits
+ * (8 KB) allocated only if chunk contains at least one ID. TeamCity build IDs are dense, so bitmap chunks are the
+ * most compact representation for them.
+ *
+ * Instance may be saved into cache as is, chunk data is kept in flat arrays.
+ */
+@Persisted
+public class BuildIdsBitmap {
+    /** Bits in chunk. */
+    private static final int CHUNK_BITS = 1 << 16;
+
+    /** Words in chunk. */
+    private static final int CHUNK_WORDS = CHUNK_BITS / 64;
+
+    /** Chunk numbers (high 16 bits of ID), ascending. */
+    @GuardedBy("this")
+    private int[] chunkKeys = new int[0];
+
+    /** Bitmap words of chunks, {@link #CHUNK_WORDS} for each chunk, same order as {@link #chunkKeys}. */
+    @GuardedBy("this")
+    private long[] words = new long[0];
+
+    /**
+     * Creates empty set.
+     */
+    public BuildIdsBitmap() {
+    }
+
+    /**
+     * @param other Set to copy.
+     */
+    public BuildIdsBitmap(BuildIdsBitmap other) {
+        synchronized (other) {
+            chunkKeys = other.chunkKeys.clone();
+            words = other.words.clone();
+        }
+    }
+
+    /**
+     * @param id Build id, negative values are ignored.
+     */
+    public synchronized void add(int id) {
+        if (id < 0)
+            return;
+
+        int chunkIdx = Arrays.binarySearch(chunkKeys, id >>> 16);
+
+        if (chunkIdx < 0)
+            chunkIdx = insertChunk(-(chunkIdx + 1), id >>> 16);
+
+        int bit = id & (CHUNK_BITS - 1);
+
+        words[chunkIdx * CHUNK_WORDS + (bit >>> 6)] |= 1L << bit;
+    }
+
+    /**
+     * @param id Build id.
+     */
+    public synchronized boolean contains(int id) {
+        if (id < 0)
+            return false;
+
+        int chunkIdx = Arrays.binarySearch(chunkKeys, id >>> 16);
+
+        if (chunkIdx < 0)
+            return false;
+
+        int bit = id & (CHUNK_BITS - 1);
+
+        return (words[chunkIdx * CHUNK_WORDS + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return Count of IDs in this set.
+     */
+    public synchronized int size() {
+        int cnt = 0;
+
+        for (long word : words)
+            cnt += Long.bitCount(word);
+
+        return cnt;
+    }
+
+    /**
+     * @return All IDs in ascending order.
+     */
+    public int[] toArray() {
+        return andNot(new BuildIdsBitmap());
+    }
+
+    /**
+     * @param other Other set.
+     * @return IDs present in this set and absent in other set, in ascending order.
+     */
+    public int[] andNot(BuildIdsBitmap other) {
+        Map<Integer, long[]> otherChunks = other.chunks();
+        GridIntList res = new GridIntList(64);
+
+        synchronized (this) {
+            for (int i = 0; i < chunkKeys.length; i++) {
+                long[] otherChunk = otherChunks.get(chunkKeys[i]);
+                int base = chunkKeys[i] << 16;
+
+                for (int w = 0; w < CHUNK_WORDS; w++) {
+                    long word = words[i * CHUNK_WORDS + w];
+
+                    if (otherChunk != null)
+                        word &= ~otherChunk[w];
+
+                    while (word != 0) {
+                        int bit = Long.numberOfTrailingZeros(word);
+
+                        res.add(base + (w << 6) + bit);
+
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+
+        return res.array();
+    }
+
+    /**
+     * @return Copy of chunks data: chunk number -> chunk words.
+     */
+    private synchronized Map<Integer, long[]> chunks() {
+        Map<Integer, long[]> res = new TreeMap<>();
+
+        for (int i = 0; i < chunkKeys.length; i++)
+            res.put(chunkKeys[i], Arrays.copyOfRange(words, i * CHUNK_WORDS, (i + 1) * CHUNK_WORDS));
+
+        return res;
+    }
+
+    /**
+     * @param pos Position of new chunk.
+     * @param key Chunk number.
+     * @return Index of inserted chunk.
+     */
+    @GuardedBy("this")
+    private int insertChunk(int pos, int key) {
+        int[] newKeys = new int[chunkKeys.length + 1];
+        long[] newWords = new long[words.length + CHUNK_WORDS];
+
+        System.arraycopy(chunkKeys, 0, newKeys, 0, pos);
+        System.arraycopy(chunkKeys, pos, newKeys, pos + 1, chunkKeys.length - pos);
+        newKeys[pos] = key;
+
+        System.arraycopy(words, 0, newWords, 0, pos * CHUNK_WORDS);
+        System.arraycopy(words, pos * CHUNK_WORDS, newWords, (pos + 1) * CHUNK_WORDS, words.length - pos * CHUNK_WORDS);
+
+        chunkKeys = newKeys;
+        words = newWords;
+
+        return pos;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of build references. For each server and each (build type, branch) pair holds sorted posting list
+ * of build IDs with its start dates. Index is not persisted, it is rebuilt from build references cache at startup.
+ */
+public class BuildRefIndex {
+    /** Empty array. */
+    private static final int[] EMPTY = new int[0];
+
+    /** Server ID -> (build type, branch) key -> build IDs. */
+    private final ConcurrentMap<Integer, ConcurrentMap<Long, SortedBuildIds>> srvIdx = new ConcurrentHashMap<>();
+
+    /**
+     * @param buildTypeId Build type id (compacted string).
+     * @param branchName Branch name (compacted string).
+     */
+    public static long historyKey(int buildTypeId, int branchName) {
+        return ((long)buildTypeId << 32) | (branchName & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildTypeId Build type id (compacted string).
+     * @param branchName Branch name (compacted string).
+     * @param buildId Build id.
+     * @param startDate Start date timestamp, non positive value if unknown.
+     */
+    public void add(int srvId, int buildTypeId, int branchName, int buildId, long startDate) {
+        srvIdx.computeIfAbsent(srvId, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(historyKey(buildTypeId, branchName), k -> new SortedBuildIds())
+            .add(buildId, startDate);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildTypeId Build type id (compacted string).
+     * @param branchName Branch name (compacted string).
+     * @param buildId Build id.
+     */
+    public void remove(int srvId, int buildTypeId, int branchName, int buildId) {
+        SortedBuildIds ids = historyIds(srvId, buildTypeId, branchName);
+
+        if (ids != null)
+            ids.remove(buildId);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildTypeId Build type id (compacted string).
+     * @param branchName Branch name (compacted string).
+     * @return Build IDs in ascending order, empty array if there are no builds.
+     */
+    public int[] getBuildIds(int srvId, int buildTypeId, int branchName) {
+        SortedBuildIds ids = historyIds(srvId, buildTypeId, branchName);
+
+        return ids == null ? EMPTY : ids.toArray();
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildTypeId Build type id (compacted string).
+     * @param branchName Branch name (compacted string).
+     * @param sinceTs Minimal start date, inclusive.
+     * @param untilTs Maximal start date, inclusive.
+     * @return Build IDs in ascending order, having start date in range or having unknown start date.
+     */
+    public int[] getBuildIds(int srvId, int buildTypeId, int branchName, long sinceTs, long untilTs) {
+        SortedBuildIds ids = historyIds(srvId, buildTypeId, branchName);
+
+        return ids == null ? EMPTY : ids.toArray(sinceTs, untilTs);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildTypeId Build type id.
+     * @param branchName Branch name.
+     */
+    private SortedBuildIds historyIds(int srvId, int buildTypeId, int branchName) {
+        ConcurrentMap<Long, SortedBuildIds> idx = srvIdx.get(srvId);
+
+        return idx == null ? null : idx.get(historyKey(buildTypeId, branchName));
+    }
+
+    /**
+     * Replaces all index data with data collected by builder.
+     *
+     * @param bld Builder.
+     */
+    public void reset(Builder bld) {
+        srvIdx.clear();
+
+        bld.data.forEach((srvId, histories) -> {
+            ConcurrentMap<Long, SortedBuildIds> idx = new ConcurrentHashMap<>();
+
+            histories.forEach((key, builds) ->
+                idx.put(key, new SortedBuildIds(builds.ids, builds.startDates, builds.len)));
+
+            srvIdx.put(srvId, idx);
+        });
+    }
+
+    /**
+     * Collects index data during full scan of build references, not thread safe.
+     */
+    public static class Builder {
+        /** Server ID -> (build type, branch) key -> builds. */
+        private final Map<Integer, Map<Long, BuildsArr>> data = new HashMap<>();
+
+        /**
+         * @param srvId Server id.
+         * @param buildTypeId Build type id (compacted string).
+         * @param branchName Branch name (compacted string).
+         * @param buildId Build id.
+         * @param startDate Start date timestamp, non positive value if unknown.
+         */
+        public void add(int srvId, int buildTypeId, int branchName, int buildId, long startDate) {
+            data.computeIfAbsent(srvId, k -> new HashMap<>())
+                .computeIfAbsent(historyKey(buildTypeId, branchName), k -> new BuildsArr())
+                .add(buildId, startDate);
+        }
+    }
+
+    /**
+     * Growing arrays of build IDs and start dates.
+     */
+    private static class BuildsArr {
+        /** Build IDs. */
+        private int[] ids = new int[8];
+
+        /** Start dates. */
+        private long[] startDates = new long[8];
+
+        /** Length. */
+        private int len;
+
+        /**
+         * @param buildId Build id.
+         * @param startDate Start date.
+         */
+        void add(int buildId, long startDate) {
+            if (len == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+                startDates = Arrays.copyOf(startDates, startDates.length * 2);
+            }
+
+            ids[len] = buildId;
+            startDates[len] = startDate;
+            len++;
+        }
+    }
+}
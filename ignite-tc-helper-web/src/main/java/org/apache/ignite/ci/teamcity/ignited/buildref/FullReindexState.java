@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import com.google.common.base.MoreObjects;
+import org.apache.ignite.ci.db.Persisted;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Progress of full build references reindex for one server. Saved after each page, so reindex may be continued after
+ * restart from the page it stopped.
+ */
+@Persisted
+public class FullReindexState {
+    /** Server name. */
+    public String srvName;
+
+    /** Href of the next page to be loaded, {@code null} if reindex was finished. */
+    @Nullable public String nextHref;
+
+    /** Reindex start timestamp. */
+    public long startTs;
+
+    /** Last progress update timestamp. */
+    public long updateTs;
+
+    /** Reindex finish timestamp, 0 if reindex is in progress. */
+    public long finishTs;
+
+    /** Builds checked since reindex start. */
+    public int buildsChecked;
+
+    /** References saved since reindex start. */
+    public int entriesSaved;
+
+    /** Minimal build ID reached, 0 if no builds were found. */
+    public int lastBuildId;
+
+    /** Count of restarts after which reindex was continued. */
+    public int resumedCnt;
+
+    /**
+     * @return {@code True} if reindex was started and was not finished.
+     */
+    public boolean isInProgress() {
+        return nextHref != null && finishTs == 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("srvName", srvName)
+            .add("nextHref", nextHref)
+            .add("startTs", startTs)
+            .add("updateTs", updateTs)
+            .add("finishTs", finishTs)
+            .add("buildsChecked", buildsChecked)
+            .add("entriesSaved", entriesSaved)
+            .add("lastBuildId", lastBuildId)
+            .add("resumedCnt", resumedCnt)
+            .toString();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.jetbrains.annotations.Nullable;
+
+import static org.apache.ignite.ci.teamcity.ignited.IgniteStringCompactor.getCache8PartsConfig;
+
+/**
+ * Persisted progress of full build references reindex, key is server ID.
+ */
+public class FullReindexStateDao {
+    /** Cache name. */
+    public static final String BUILD_REFS_REINDEX_CACHE_NAME = "teamcityBuildRefReindex";
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** Reindex state cache. */
+    private volatile IgniteCache<Integer, FullReindexState> stateCache;
+
+    /**
+     * Initialize
+     */
+    public synchronized void init() {
+        if (stateCache == null)
+            stateCache = igniteProvider.get().getOrCreateCache(getCache8PartsConfig(BUILD_REFS_REINDEX_CACHE_NAME));
+    }
+
+    /**
+     * @param srvId Server id.
+     * @return State of last full reindex, or {@code null} if reindex was never started.
+     */
+    @Nullable public FullReindexState get(int srvId) {
+        return stateCache.get(srvId);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param state State.
+     */
+    public void save(int srvId, FullReindexState state) {
+        stateCache.put(srvId, state);
+    }
+
+    /**
+     * @return States of all servers, empty if DAO was not initialized yet.
+     */
+    public Collection<FullReindexState> getAll() {
+        IgniteCache<Integer, FullReindexState> cache = stateCache;
+
+        if (cache == null)
+            return Collections.emptyList();
+
+        List<FullReindexState> res = new ArrayList<>();
+
+        cache.forEach(entry -> res.add(entry.getValue()));
+
+        return res;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.Arrays;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Posting list of build IDs: primitive array kept sorted in ascending order, without duplicates. Start date of each
+ * build is kept in parallel array to filter builds by date without loading build data.
+ */
+public class SortedBuildIds {
+    /** Empty array. */
+    private static final int[] EMPTY = new int[0];
+
+    /** Build IDs, only first {@link #size} elements are valid. */
+    @GuardedBy("this")
+    private int[] ids;
+
+    /** Start dates of builds, same order as {@link #ids}, non positive value if date is unknown. */
+    @GuardedBy("this")
+    private long[] startDates;
+
+    /** Count of valid elements in {@link #ids}. */
+    @GuardedBy("this")
+    private int size;
+
+    /**
+     * Creates empty list.
+     */
+    public SortedBuildIds() {
+        ids = EMPTY;
+        startDates = new long[0];
+    }
+
+    /**
+     * @param ids Build IDs in any order, without duplicates.
+     * @param startDates Start dates of builds, same order as IDs.
+     * @param len Count of valid elements in provided arrays.
+     */
+    SortedBuildIds(int[] ids, long[] startDates, int len) {
+        // Sort positions by build ID: high half is ID, low half is position in source arrays.
+        long[] order = new long[len];
+
+        for (int i = 0; i < len; i++)
+            order[i] = ((long)ids[i] << 32) | i;
+
+        Arrays.sort(order);
+
+        this.ids = new int[len];
+        this.startDates = new long[len];
+
+        for (int i = 0; i < len; i++) {
+            int pos = (int)order[i];
+
+            this.ids[i] = ids[pos];
+            this.startDates[i] = startDates[pos];
+        }
+
+        size = len;
+    }
+
+    /**
+     * @param buildId Build id.
+     * @param startDate Start date timestamp, non positive value if unknown.
+     * @return {@code True} if ID was added, {@code false} if it was already present.
+     */
+    public synchronized boolean add(int buildId, long startDate) {
+        // Builds are mostly come in increasing order, so check the tail first.
+        if (size == 0 || ids[size - 1] < buildId) {
+            ensureCapacity(size + 1);
+
+            ids[size] = buildId;
+            startDates[size] = startDate;
+            size++;
+
+            return true;
+        }
+
+        int idx = Arrays.binarySearch(ids, 0, size, buildId);
+
+        if (idx >= 0) {
+            startDates[idx] = startDate;
+
+            return false;
+        }
+
+        int insPnt = -(idx + 1);
+
+        ensureCapacity(size + 1);
+
+        System.arraycopy(ids, insPnt, ids, insPnt + 1, size - insPnt);
+        System.arraycopy(startDates, insPnt, startDates, insPnt + 1, size - insPnt);
+
+        ids[insPnt] = buildId;
+        startDates[insPnt] = startDate;
+        size++;
+
+        return true;
+    }
+
+    /**
+     * @param buildId Build id.
+     * @return {@code True} if ID was removed.
+     */
+    public synchronized boolean remove(int buildId) {
+        int idx = Arrays.binarySearch(ids, 0, size, buildId);
+
+        if (idx < 0)
+            return false;
+
+        System.arraycopy(ids, idx + 1, ids, idx, size - idx - 1);
+        System.arraycopy(startDates, idx + 1, startDates, idx, size - idx - 1);
+
+        size--;
+
+        return true;
+    }
+
+    /**
+     * @return Copy of build IDs in ascending order.
+     */
+    public synchronized int[] toArray() {
+        return size == 0 ? EMPTY : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * @param sinceTs Minimal start date, inclusive.
+     * @param untilTs Maximal start date, inclusive.
+     * @return Build IDs in ascending order, having start date in range or unknown start date.
+     */
+    public synchronized int[] toArray(long sinceTs, long untilTs) {
+        int[] res = new int[size];
+        int cnt = 0;
+
+        for (int i = 0; i < size; i++) {
+            long ts = startDates[i];
+
+            if (ts <= 0 || (ts >= sinceTs && ts <= untilTs))
+                res[cnt++] = ids[i];
+        }
+
+        return cnt == res.length ? res : Arrays.copyOf(res, cnt);
+    }
+
+    /**
+     * @return Count of build IDs in this list.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param minCap Minimal required capacity.
+     */
+    @GuardedBy("this")
+    private void ensureCapacity(int minCap) {
+        if (ids.length >= minCap)
+            return;
+
+        int newCap = Math.max(minCap, ids.length < 8 ? 8 : ids.length + (ids.length >> 1));
+
+        ids = Arrays.copyOf(ids, newCap);
+        startDates = Arrays.copyOf(startDates, newCap);
+    }
+}
@@ -18,10 +18,18 @@ package org.apache.ignite.ci.teamcity.ignited.change;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import javax.xml.bind.DatatypeConverter;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinaryWriter;
+import org.apache.ignite.binary.Binarylizable;
 import org.apache.ignite.ci.analysis.IVersionedEntity;
 import org.apache.ignite.ci.db.Persisted;
+import org.apache.ignite.ci.db.RawBinaryIo;
 import org.apache.ignite.ci.tcmodel.changes.Change;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
@@ -29,13 +37,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Persisted
-public class ChangeCompacted implements IVersionedEntity {
+public class ChangeCompacted implements IVersionedEntity, Binarylizable {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(FatBuildDao.class);
 
     /** Latest version. */
     private static final int LATEST_VERSION = 3;
 
+    /** Raw layout version, see {@link #writeBinary(BinaryWriter)}. */
+    private static final int WIRE_VER = 1;
+
     /** Entity fields version. */
     @SuppressWarnings("FieldCanBeLocal")
     private short _ver = LATEST_VERSION;
@@ -55,6 +66,12 @@ public class ChangeCompacted implements IVersionedEntity {
     /** Date timestamp. */
     private long date;
 
+    /**
+     * Default constructor.
+     */
+    public ChangeCompacted() {
+    }
+
     public ChangeCompacted(IStringCompactor compactor, Change change) {
         id = compactor.getStringId(change.id);
         vcsUsername = compactor.getStringId(change.username);
@@ -116,6 +133,54 @@ public class ChangeCompacted implements IVersionedEntity {
         return compactor.getStringFromId(tcUserFullname);
     }
 
+    /** {@inheritDoc} */
+    @Override public void writeBinary(BinaryWriter writer) throws BinaryObjectException {
+        writer.writeByte(RawBinaryIo.WIRE_VER_FIELD, (byte)WIRE_VER);
+
+        BinaryRawWriter raw = writer.rawWriter();
+
+        RawBinaryIo.writeVarInt(raw, _ver);
+        RawBinaryIo.writeVarInt(raw, id);
+        RawBinaryIo.writeVarInt(raw, vcsUsername);
+        RawBinaryIo.writeVarInt(raw, tcUserId);
+        RawBinaryIo.writeVarInt(raw, tcUserUsername);
+        RawBinaryIo.writeVarInt(raw, tcUserFullname);
+        raw.writeByteArray(version);
+        RawBinaryIo.writeVarLong(raw, date);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void readBinary(BinaryReader reader) throws BinaryObjectException {
+        int wireVer = reader.readByte(RawBinaryIo.WIRE_VER_FIELD);
+
+        if (wireVer == 0) {
+            // Change was written by reflection.
+            _ver = reader.readShort("_ver");
+            id = reader.readInt("id");
+            vcsUsername = reader.readInt("vcsUsername");
+            tcUserId = reader.readInt("tcUserId");
+            tcUserUsername = reader.readInt("tcUserUsername");
+            tcUserFullname = reader.readInt("tcUserFullname");
+            version = reader.readByteArray("version");
+            date = reader.readLong("date");
+
+            return;
+        }
+
+        RawBinaryIo.checkWireVersion(wireVer, WIRE_VER, ChangeCompacted.class);
+
+        BinaryRawReader raw = reader.rawReader();
+
+        _ver = (short)RawBinaryIo.readVarInt(raw);
+        id = RawBinaryIo.readVarInt(raw);
+        vcsUsername = RawBinaryIo.readVarInt(raw);
+        tcUserId = RawBinaryIo.readVarInt(raw);
+        tcUserUsername = RawBinaryIo.readVarInt(raw);
+        tcUserFullname = RawBinaryIo.readVarInt(raw);
+        version = raw.readByteArray();
+        date = RawBinaryIo.readVarLong(raw);
+    }
+
     /** {@inheritDoc} */
     @Override public boolean equals(Object o) {
         if (this == o)
@@ -130,11 +195,12 @@ public class ChangeCompacted implements IVersionedEntity {
             tcUserUsername == compacted.tcUserUsername &&
             tcUserFullname == compacted.tcUserFullname &&
             date == compacted.date &&
-            Objects.equal(version, compacted.version);
+            Arrays.equals(version, compacted.version);
     }
 
     /** {@inheritDoc} */
     @Override public int hashCode() {
-        return Objects.hashCode(_ver, id, vcsUsername, tcUserId, tcUserUsername, tcUserFullname, version, date);
+        return Objects.hashCode(_ver, id, vcsUsername, tcUserId, tcUserUsername, tcUserFullname,
+            Arrays.hashCode(version), date);
     }
 }
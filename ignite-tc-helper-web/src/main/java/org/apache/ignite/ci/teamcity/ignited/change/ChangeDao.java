@@ -20,6 +20,7 @@ package org.apache.ignite.ci.teamcity.ignited.change;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
@@ -89,6 +90,24 @@ public class ChangeDao {
         return false;
     }
 
+    /**
+     * Saves changes by one cache operation, without comparison with persisted versions.
+     *
+     * @param srvId Server id.
+     * @param changes Change ID -> change.
+     */
+    @AutoProfiling
+    public void saveAll(int srvId, Map<Integer, ChangeCompacted> changes) {
+        if (changes.isEmpty())
+            return;
+
+        Map<Long, ChangeCompacted> entries = new TreeMap<>();
+
+        changes.forEach((changeId, change) -> entries.put(changeIdToCacheKey(srvId, changeId), change));
+
+        changesCache.putAll(entries);
+    }
+
     public ChangeCompacted load(int srvId, int changeId) {
         return changesCache.get(changeIdToCacheKey(srvId, changeId));
     }
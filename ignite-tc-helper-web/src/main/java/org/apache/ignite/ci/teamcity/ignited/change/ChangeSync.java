@@ -19,16 +19,24 @@ package org.apache.ignite.ci.teamcity.ignited.change;
 import com.google.common.base.Throwables;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.tcmodel.changes.Change;
+import org.apache.ignite.ci.tcmodel.changes.ChangesListFull;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityConn;
 import org.apache.ignite.ci.util.ExceptionUtil;
+import org.apache.ignite.ci.util.FutureUtil;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXParseException;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ChangeSync {
     /** Logger. */
@@ -39,6 +47,9 @@ public class ChangeSync {
 
     @Inject private IStringCompactor compactor;
 
+    /** Cache key of change -> future for change, which is being loaded now. */
+    private final ConcurrentMap<Long, CompletableFuture<ChangeCompacted>> changesInFlight = new ConcurrentHashMap<>();
+
     public ChangeCompacted change(int srvId, int changeId, ITeamcityConn conn) {
         final ChangeCompacted load = changeDao.load(srvId, changeId);
 
@@ -48,9 +59,167 @@ public class ChangeSync {
         return reloadChange(srvId, changeId, conn);
     }
 
+    /**
+     * Ensures changes of build are saved. All missing or outdated changes are requested from TC by one request for the
+     * whole build. Changes which are being loaded by another thread, e.g. for other build of the same chain, are not
+     * requested again.
+     *
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @param changeIds Change IDs of build.
+     * @param conn Connection.
+     * @return Change ID -> change.
+     */
+    @AutoProfiling
+    public Map<Integer, ChangeCompacted> buildChanges(int srvId, int buildId, int[] changeIds, ITeamcityConn conn) {
+        return changes(srvId, buildId, changeIds, conn);
+    }
+
+    /**
+     * Reloads changes missing in cache, changes are saved by one cache operation.
+     *
+     * @param srvId Server id.
+     * @param changeIds Change IDs.
+     * @param conn Connection.
+     * @return Change ID -> change.
+     */
+    @AutoProfiling
+    public Map<Integer, ChangeCompacted> reloadChanges(int srvId, int[] changeIds, ITeamcityConn conn) {
+        return changes(srvId, null, changeIds, conn);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id to request all its changes at once, {@code null} to request changes one by one.
+     * @param changeIds Change IDs.
+     * @param conn Connection.
+     * @return Change ID -> change.
+     */
+    private Map<Integer, ChangeCompacted> changes(int srvId, @Nullable Integer buildId, int[] changeIds,
+        ITeamcityConn conn) {
+        final Map<Long, ChangeCompacted> persisted = changeDao.getAll(srvId, changeIds);
+
+        final Map<Integer, ChangeCompacted> res = new HashMap<>();
+        final Map<Integer, CompletableFuture<ChangeCompacted>> own = new HashMap<>();
+        final Map<Integer, CompletableFuture<ChangeCompacted>> others = new HashMap<>();
+
+        for (int changeId : changeIds) {
+            long key = changeDao.changeIdToCacheKey(srvId, changeId);
+            ChangeCompacted change = persisted.get(key);
+
+            if (change != null && !change.isOutdatedEntityVersion()) {
+                res.put(changeId, change);
+
+                continue;
+            }
+
+            if (own.containsKey(changeId) || others.containsKey(changeId))
+                continue;
+
+            CompletableFuture<ChangeCompacted> fut = new CompletableFuture<>();
+            CompletableFuture<ChangeCompacted> inFlight = changesInFlight.putIfAbsent(key, fut);
+
+            if (inFlight == null)
+                own.put(changeId, fut);
+            else
+                others.put(changeId, inFlight);
+        }
+
+        if (!own.isEmpty()) {
+            try {
+                Map<Integer, ChangeCompacted> loaded = loadChanges(srvId, buildId, own.keySet(), conn);
+
+                loaded.forEach((changeId, change) -> own.get(changeId).complete(change));
+
+                res.putAll(loaded);
+            }
+            catch (Throwable e) {
+                own.values().forEach(fut -> fut.completeExceptionally(e));
+
+                throw e;
+            }
+            finally {
+                // Waiters of changes missing in loaded result should not hang.
+                own.forEach((changeId, fut) -> {
+                    if (!fut.isDone())
+                        fut.completeExceptionally(new IllegalStateException("Change was not loaded: " + changeId));
+                });
+
+                own.forEach((changeId, fut) -> changesInFlight.remove(changeDao.changeIdToCacheKey(srvId, changeId), fut));
+            }
+        }
+
+        others.forEach((changeId, fut) -> res.put(changeId, FutureUtil.getResult(fut)));
+
+        return res;
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id to request all its changes at once, {@code null} to request changes one by one.
+     * @param changeIds Change IDs to load.
+     * @param conn Connection.
+     * @return Change ID -> change, for each of requested IDs.
+     */
+    private Map<Integer, ChangeCompacted> loadChanges(int srvId, @Nullable Integer buildId,
+        Iterable<Integer> changeIds, ITeamcityConn conn) {
+        final Map<Integer, Change> buildChanges = new HashMap<>();
+
+        if (buildId != null) {
+            try {
+                ChangesListFull list = conn.getChangesFull(buildId);
+
+                for (Change change : list.changes()) {
+                    try {
+                        buildChanges.put(Integer.parseInt(change.id), change);
+                    }
+                    catch (NumberFormatException e) {
+                        logger.error("Unable to parse change id " + change.id, e);
+                    }
+                }
+            }
+            catch (Exception e) {
+                if (Throwables.getRootCause(e) instanceof FileNotFoundException)
+                    logger.info("Loading changes of build [" + buildId + "] for server [" + conn.serverId() + "] failed:" + e.getMessage(), e);
+                else
+                    throw ExceptionUtil.propagateException(e);
+            }
+        }
+
+        final Map<Integer, ChangeCompacted> res = new HashMap<>();
+
+        for (Integer changeId : changeIds) {
+            Change change = buildChanges.get(changeId);
+
+            // Change was not returned for build, e.g. if build has too many changes.
+            if (change == null)
+                change = loadChange(changeId, conn);
+
+            res.put(changeId, new ChangeCompacted(compactor, change));
+        }
+
+        changeDao.saveAll(srvId, res);
+
+        return res;
+    }
+
     @NotNull
     @AutoProfiling
     public ChangeCompacted reloadChange(int srvId, int changeId, ITeamcityConn conn) {
+        final ChangeCompacted changeCompacted = new ChangeCompacted(compactor, loadChange(changeId, conn));
+
+        changeDao.save(srvId, changeId, changeCompacted);
+
+        return changeCompacted;
+    }
+
+    /**
+     * @param changeId Change id.
+     * @param conn Connection.
+     * @return Change loaded, or stub if change data is not available.
+     */
+    @NotNull
+    private Change loadChange(int changeId, ITeamcityConn conn) {
         Change change;
         try {
             change = conn.getChange(changeId);
@@ -69,10 +238,6 @@ public class ChangeSync {
                 throw ExceptionUtil.propagateException(e);
         }
 
-        final ChangeCompacted changeCompacted = new ChangeCompacted(compactor, change);
-
-        changeDao.save(srvId, changeId, changeCompacted);
-
-        return changeCompacted;
+        return change;
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.GuardedBy;
+import org.apache.ignite.internal.util.GridIntList;
+
+/**
+ * Multi-level queue of build IDs to be loaded for one server. Builds are taken from the highest priority level first,
+ * in order of addition within level. Each build is queued only once, with highest priority requested. Total count of
+ * queued builds is limited, on overflow the oldest build of the lowest priority level is dropped.
+ */
+public class BuildLoadQueue {
+    /** Priorities, ordered from the highest one. */
+    private static final LoadPriority[] PRIORITIES = LoadPriority.values();
+
+    /** Maximum count of builds queued. */
+    private final int maxSize;
+
+    /** Build IDs for each priority level, in order of addition. */
+    @GuardedBy("this")
+    private final List<LinkedHashSet<Integer>> levels = new ArrayList<>(PRIORITIES.length);
+
+    /** Build ID -> level. */
+    @GuardedBy("this")
+    private final Map<Integer, LoadPriority> queued = new HashMap<>();
+
+    /** Builds dropped because of queue overflow. */
+    @GuardedBy("this")
+    private long dropped;
+
+    /**
+     * @param maxSize Maximum count of builds queued.
+     */
+    public BuildLoadQueue(int maxSize) {
+        this.maxSize = maxSize;
+
+        for (int i = 0; i < PRIORITIES.length; i++)
+            levels.add(new LinkedHashSet<>());
+    }
+
+    /**
+     * @param buildIds Build IDs.
+     * @param priority Priority.
+     * @return Count of builds queued or moved to higher priority level.
+     */
+    public synchronized int addAll(Collection<Integer> buildIds, LoadPriority priority) {
+        int added = 0;
+
+        for (Integer buildId : buildIds) {
+            if (buildId != null && add(buildId, priority))
+                added++;
+        }
+
+        return added;
+    }
+
+    /**
+     * @param buildId Build id.
+     * @param priority Priority.
+     */
+    @GuardedBy("this")
+    private boolean add(int buildId, LoadPriority priority) {
+        LoadPriority cur = queued.get(buildId);
+
+        if (cur != null) {
+            if (cur.ordinal() <= priority.ordinal())
+                return false;
+
+            levels.get(cur.ordinal()).remove(buildId);
+        }
+        else if (queued.size() >= maxSize && !evictLowerThan(priority)) {
+            dropped++;
+
+            return false;
+        }
+
+        levels.get(priority.ordinal()).add(buildId);
+        queued.put(buildId, priority);
+
+        return true;
+    }
+
+    /**
+     * Removes the oldest build from the lowest non empty level, if it is lower than provided priority.
+     *
+     * @param priority Priority.
+     * @return {@code True} if build was removed.
+     */
+    @GuardedBy("this")
+    private boolean evictLowerThan(LoadPriority priority) {
+        for (int i = levels.size() - 1; i > priority.ordinal(); i--) {
+            if (pollFirst(i) == null)
+                continue;
+
+            dropped++;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param lvl Level.
+     * @return The oldest build ID of level or {@code null} if level is empty.
+     */
+    @GuardedBy("this")
+    private Integer pollFirst(int lvl) {
+        Iterator<Integer> it = levels.get(lvl).iterator();
+
+        if (!it.hasNext())
+            return null;
+
+        Integer buildId = it.next();
+
+        it.remove();
+        queued.remove(buildId);
+
+        return buildId;
+    }
+
+    /**
+     * @param maxCnt Maximum count of builds to take.
+     * @return Build IDs taken from the queue, highest priority first, empty if queue is empty.
+     */
+    public synchronized GridIntList poll(int maxCnt) {
+        GridIntList res = new GridIntList(Math.min(maxCnt, queued.size()) + 1);
+
+        for (int i = 0; i < levels.size() && res.size() < maxCnt; i++) {
+            while (res.size() < maxCnt) {
+                Integer buildId = pollFirst(i);
+
+                if (buildId == null)
+                    break;
+
+                res.add(buildId);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * @param priority Priority.
+     * @return Count of builds queued with provided priority.
+     */
+    public synchronized int depth(LoadPriority priority) {
+        return levels.get(priority.ordinal()).size();
+    }
+
+    /**
+     * @return Total count of builds queued.
+     */
+    public synchronized int size() {
+        return queued.size();
+    }
+
+    /**
+     * @return Count of builds dropped because of queue overflow.
+     */
+    public synchronized long dropped() {
+        return dropped;
+    }
+}
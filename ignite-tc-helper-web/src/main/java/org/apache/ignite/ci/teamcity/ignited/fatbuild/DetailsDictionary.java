@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.MoreObjects;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.ignite.ci.db.Persisted;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shared dictionary for test details compression. Details are compressed by raw deflate with preset dictionary, ID of
+ * dictionary is written in first 2 bytes of compressed data, so details may be decoded by any saved dictionary.
+ */
+@Persisted
+public class DetailsDictionary {
+    /** Maximal dictionary size, deflate window can't refer to more distant data. */
+    public static final int MAX_SIZE = 32 * 1024;
+
+    /** Maximal dictionary ID, ID is saved in 2 bytes. */
+    public static final int MAX_ID = 0xFFFF;
+
+    /** Bytes of header with dictionary ID. */
+    private static final int HEADER_SIZE = 2;
+
+    /** Dictionary ID, unique for server. */
+    private int id;
+
+    /** Creation timestamp. */
+    private long createdTs;
+
+    /** Dictionary data. */
+    private byte[] data;
+
+    /** Raw bytes of sample used for training. */
+    private long sampleRawBytes;
+
+    /** Bytes of sample compressed each record separately. */
+    private long samplePerRecordBytes;
+
+    /** Bytes of sample compressed with this dictionary. */
+    private long sampleDictBytes;
+
+    /**
+     * @param id Dictionary ID.
+     * @param data Dictionary data.
+     */
+    public DetailsDictionary(int id, byte[] data) {
+        this.id = id;
+        this.data = data;
+        this.createdTs = System.currentTimeMillis();
+    }
+
+    /**
+     * @param raw Raw bytes.
+     * @return Compressed data including dictionary ID header.
+     */
+    public byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+
+        try {
+            deflater.setDictionary(data);
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + HEADER_SIZE + 16);
+
+            out.write(id >>> 8);
+            out.write(id);
+
+            byte[] buf = new byte[4096];
+
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+
+                out.write(buf, 0, len);
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param compressed Compressed data including dictionary ID header, ID should be equal to ID of this dictionary.
+     * @return Raw bytes.
+     */
+    public byte[] decompress(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+
+        try {
+            inflater.setDictionary(data);
+            // Extra byte is required by inflater in raw mode to detect end of stream.
+            byte[] input = new byte[compressed.length - HEADER_SIZE + 1];
+
+            System.arraycopy(compressed, HEADER_SIZE, input, 0, input.length - 1);
+
+            inflater.setInput(input);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buf = new byte[4096];
+
+            while (!inflater.finished()) {
+                int len = inflater.inflate(buf);
+
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new DataFormatException("Unexpected end of compressed test details");
+
+                out.write(buf, 0, len);
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @param compressed Compressed data including dictionary ID header.
+     * @return Dictionary ID or -1 if data is too short.
+     */
+    public static int dictionaryId(@Nullable byte[] compressed) {
+        if (compressed == null || compressed.length < HEADER_SIZE)
+            return -1;
+
+        return (compressed[0] & 0xFF) << 8 | (compressed[1] & 0xFF);
+    }
+
+    /**
+     * @param rawBytes Raw bytes of sample.
+     * @param perRecordBytes Bytes of sample compressed each record separately.
+     * @param dictBytes Bytes of sample compressed with this dictionary.
+     */
+    public void sampleStatistics(long rawBytes, long perRecordBytes, long dictBytes) {
+        sampleRawBytes = rawBytes;
+        samplePerRecordBytes = perRecordBytes;
+        sampleDictBytes = dictBytes;
+    }
+
+    /**
+     * @return Dictionary ID.
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return Creation timestamp.
+     */
+    public long createdTs() {
+        return createdTs;
+    }
+
+    /**
+     * @return Dictionary size in bytes.
+     */
+    public int size() {
+        return data.length;
+    }
+
+    /**
+     * @return Raw bytes of sample used for training.
+     */
+    public long sampleRawBytes() {
+        return sampleRawBytes;
+    }
+
+    /**
+     * @return Bytes of sample compressed each record separately.
+     */
+    public long samplePerRecordBytes() {
+        return samplePerRecordBytes;
+    }
+
+    /**
+     * @return Bytes of sample compressed with this dictionary.
+     */
+    public long sampleDictBytes() {
+        return sampleDictBytes;
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("id", id)
+            .add("createdTs", createdTs)
+            .add("size", data.length)
+            .add("sampleRawBytes", sampleRawBytes)
+            .add("samplePerRecordBytes", samplePerRecordBytes)
+            .add("sampleDictBytes", sampleDictBytes)
+            .toString();
+    }
+}
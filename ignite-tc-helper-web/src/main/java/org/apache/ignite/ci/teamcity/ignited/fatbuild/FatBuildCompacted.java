@@ -20,26 +20,40 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import java.util.Date;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinaryWriter;
 import org.apache.ignite.ci.analysis.IVersionedEntity;
 import org.apache.ignite.ci.db.Persisted;
+import org.apache.ignite.ci.db.RawBinaryIo;
 import org.apache.ignite.ci.tcmodel.conf.BuildType;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.TestOccurrencesRef;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 import org.apache.ignite.ci.teamcity.ignited.BuildRefCompacted;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -47,8 +61,17 @@ import java.util.stream.Stream;
  */
 @Persisted
 public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEntity {
-    /** Latest version. */
-    private static final int LATEST_VERSION = 5;
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(FatBuildCompacted.class);
+
+    /**
+     * Latest version. Version 6: tests are kept in columns instead of list of objects. Version 7: test details are kept
+     * in {@link TestDetailsDao}.
+     */
+    private static final int LATEST_VERSION = 7;
+
+    /** Raw layout version, see {@link #writeBinary(BinaryWriter)}. Version 2: test names may be kept as delta. */
+    private static final int WIRE_VER = 2;
 
     /** Default branch flag offset. */
     public static final int DEF_BR_F = 0;
@@ -67,13 +90,7 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
     /** Entity fields version. */
     private short _ver = LATEST_VERSION;
 
-    /** Start date. The number of milliseconds since January 1, 1970, 00:00:00 GMT */
-    private long startDate;
-
-    /** Finish date. The number of milliseconds since January 1, 1970, 00:00:00 GMT */
-    private long finishDate;
-
-    /** Finish date. The number of milliseconds since January 1, 1970, 00:00:00 GMT */
+    /** Queued date. The number of milliseconds since January 1, 1970, 00:00:00 GMT */
     private long queuedDate;
 
     /** Project ID, where suite is located. */
@@ -82,8 +99,63 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
     /** Suite Name for this builds. */
     private int name = -1;
 
+    /** Tests in layout of version 5 and earlier, is not filled for entities of latest version. */
     @Nullable private List<TestCompacted> tests;
 
+    /** Tests: ID in build. Tests data is kept in parallel arrays, each test has the same index in all arrays. */
+    @Nullable private int[] testIdsInBuild;
+
+    /** Tests: name (compacted string). Null if names are kept as delta, see {@link #testNamesDelta}. */
+    @Nullable private int[] testNames;
+
+    /** Tests: ID of reference names for {@link #testNamesDelta}, build ID of reference build. */
+    private int testNamesRef = -1;
+
+    /** Tests: names kept as delta against reference names, see {@link TestNamesDelta}. */
+    @Nullable private int[] testNamesDelta;
+
+    /** Tests: status (compacted string). */
+    @Nullable private int[] testStatuses;
+
+    /** Tests: duration, negative if unknown. */
+    @Nullable private int[] testDurations;
+
+    /** Tests: flags bits, offsets are the same as in {@link TestCompacted} flags. */
+    @Nullable private short[] testFlags;
+
+    /** Tests: test global ID. */
+    @Nullable private long[] testIds;
+
+    /** Tests: actual build ID. */
+    @Nullable private int[] testActualBuildIds;
+
+    /**
+     * Tests: compressed details of all tests, one after another. Since version 7 only details of tests without ID in
+     * build are kept here, others are kept in {@link TestDetailsDao}.
+     */
+    @Nullable private byte[] testDetails;
+
+    /**
+     * Tests: details of i-th test are located in {@link #testDetails} in range [offs[i], offs[i + 1]), array length is
+     * tests count + 1. Null if there are no details for all tests.
+     */
+    @Nullable private int[] testDetailsOffs;
+
+    /** Loader of test details kept separately, not persisted. */
+    @Nullable private transient ITestDetailsLoader detailsLdr;
+
+    /** Loader for tests of this build, keeps loaded details in this instance, not persisted. */
+    @Nullable private transient ITestDetailsLoader cachingLdr;
+
+    /** Loader of reference test names, not persisted. */
+    @Nullable private transient ITestNamesLoader namesLdr;
+
+    /** Test names resolved from delta, not persisted. */
+    @Nullable private transient volatile int[] resolvedNames;
+
+    /** Test ID in build -> details already loaded by {@link #detailsLdr}, not persisted. */
+    @Nullable private transient Map<Integer, byte[]> loadedDetails;
+
     @Nullable private int snapshotDeps[];
 
     private BitSet flags = new BitSet();
@@ -182,10 +254,10 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
         type.projectId(projectId(compactor));
         res.setBuildType(type);
 
-        if (tests != null) {
+        if (tests != null || testStatuses != null) {
             TestOccurrencesRef testOccurrencesRef = new TestOccurrencesRef();
             testOccurrencesRef.href = "/app/rest/latest/testOccurrences?locator=build:(id:" + id() + ")";
-            testOccurrencesRef.count = tests.size();
+            testOccurrencesRef.count = testsCount();
             res.testOccurrences = testOccurrencesRef;
         }
 
@@ -213,14 +285,360 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
      * @param page Page.
      */
     public void addTests(IStringCompactor compactor, List<TestOccurrenceFull> page) {
-        for (TestOccurrenceFull next : page) {
-            TestCompacted compacted = new TestCompacted(compactor, next);
+        addTests(TestCompacted.compactAll(compactor, page));
+    }
+
+    /**
+     * Appends tests to columns. Tests kept in layout of previous version are converted to columns as well. Details of
+     * tests having ID in build are not kept in columns, such details should be saved using {@link TestDetailsDao}.
+     *
+     * @param page Tests already compacted.
+     */
+    public void addTests(List<TestCompacted> page) {
+        if (page.isEmpty())
+            return;
+
+        List<TestCompacted> all = testsCompacted();
+
+        all.addAll(page);
+
+        setTests(all);
+    }
+
+    /**
+     * @param all All tests of the build.
+     */
+    private void setTests(List<TestCompacted> all) {
+        int cnt = all.size();
+
+        testIdsInBuild = new int[cnt];
+        testNames = new int[cnt];
+        testNamesRef = -1;
+        testNamesDelta = null;
+        resolvedNames = null;
+        testStatuses = new int[cnt];
+        testDurations = new int[cnt];
+        testFlags = new short[cnt];
+        testIds = new long[cnt];
+        testActualBuildIds = new int[cnt];
+
+        int dtlsLen = 0;
+
+        for (int i = 0; i < cnt; i++) {
+            TestCompacted test = all.get(i);
+
+            testIdsInBuild[i] = test.idInBuild();
+            testNames[i] = test.testName();
+            testStatuses[i] = test.status();
+            testDurations[i] = test.duration();
+            testFlags[i] = (short)test.flagsBits();
+
+            if (isSeparateDetails(test))
+                testFlags[i] |= 1 << TestCompacted.SEPARATE_DETAILS_F;
+            testIds[i] = test.testId();
+            testActualBuildIds[i] = test.actualBuildId();
+
+            byte[] dtls = inlineDetails(test);
+
+            if (dtls != null)
+                dtlsLen += dtls.length;
+        }
+
+        testDetails = null;
+        testDetailsOffs = null;
+
+        if (dtlsLen > 0) {
+            testDetails = new byte[dtlsLen];
+            testDetailsOffs = new int[cnt + 1];
+
+            int off = 0;
+
+            for (int i = 0; i < cnt; i++) {
+                byte[] dtls = inlineDetails(all.get(i));
+
+                testDetailsOffs[i] = off;
+
+                if (dtls != null) {
+                    System.arraycopy(dtls, 0, testDetails, off, dtls.length);
+
+                    off += dtls.length;
+                }
+            }
+
+            testDetailsOffs[cnt] = off;
+        }
+
+        tests = null;
+    }
+
+    /**
+     * @param test Test.
+     * @return {@code True} if test details are kept in {@link TestDetailsDao}.
+     */
+    private static boolean isSeparateDetails(TestCompacted test) {
+        return test.idInBuild() >= 0 && (test.details() != null || test.isSeparateDetails());
+    }
+
+    /**
+     * @param test Test.
+     * @return Details to be kept in columns of this build.
+     */
+    @Nullable private static byte[] inlineDetails(TestCompacted test) {
+        return isSeparateDetails(test) ? null : test.details();
+    }
+
+    /**
+     * @param detailsLdr Loader of test details kept separately.
+     */
+    void detailsLoader(@Nullable ITestDetailsLoader detailsLdr) {
+        this.detailsLdr = detailsLdr;
+
+        cachingLdr = detailsLdr == null ? null : new ITestDetailsLoader() {
+            @Override public Map<Integer, byte[]> loadDetails(int[] testIdsInBuild) {
+                return FatBuildCompacted.this.loadDetails(testIdsInBuild);
+            }
+
+            @Nullable @Override public DetailsDictionary dictionary(int dictId) {
+                return detailsLdr.dictionary(dictId);
+            }
+        };
+    }
+
+    /**
+     * Loads details of tests by one request, loaded details are kept in this instance.
+     *
+     * @param testIdsInBuild Test IDs in build.
+     * @return Test ID in build -> compressed details.
+     */
+    private synchronized Map<Integer, byte[]> loadDetails(int[] testIdsInBuild) {
+        if (detailsLdr == null)
+            return Collections.emptyMap();
+
+        if (loadedDetails == null)
+            loadedDetails = new HashMap<>();
+
+        int[] missing = Arrays.stream(testIdsInBuild).filter(id -> !loadedDetails.containsKey(id)).toArray();
+
+        if (missing.length > 0) {
+            Map<Integer, byte[]> loaded = detailsLdr.loadDetails(missing);
+
+            // Absent details are remembered too, to avoid repeated requests.
+            for (int id : missing)
+                loadedDetails.put(id, loaded.get(id));
+        }
+
+        Map<Integer, byte[]> res = new HashMap<>();
+
+        for (int id : testIdsInBuild) {
+            byte[] dtls = loadedDetails.get(id);
+
+            if (dtls != null)
+                res.put(id, dtls);
+        }
+
+        return res;
+    }
+
+    /**
+     * @return IDs in build of tests having details kept in {@link TestDetailsDao}.
+     */
+    int[] separateDetailsTestIds() {
+        if (testFlags == null)
+            return new int[0];
+
+        return IntStream.range(0, testFlags.length)
+            .filter(idx -> (testFlags[idx] & (1 << TestCompacted.SEPARATE_DETAILS_F)) != 0)
+            .map(idx -> testIdsInBuild[idx])
+            .toArray();
+    }
+
+    /**
+     * Loads details of tests kept separately by one request.
+     *
+     * @param idxs Test indexes in columns.
+     */
+    private void prefetchDetails(int[] idxs) {
+        if (detailsLdr == null || testFlags == null)
+            return;
+
+        int[] ids = Arrays.stream(idxs)
+            .filter(idx -> (testFlags[idx] & (1 << TestCompacted.SEPARATE_DETAILS_F)) != 0)
+            .map(idx -> testIdsInBuild[idx])
+            .toArray();
+
+        if (ids.length > 0)
+            loadDetails(ids);
+    }
+
+    /**
+     * @param namesLdr Loader of reference test names.
+     */
+    void testNamesLoader(@Nullable ITestNamesLoader namesLdr) {
+        this.namesLdr = namesLdr;
+    }
+
+    /**
+     * @return Test names (compacted strings), names kept as delta are resolved on first call.
+     */
+    @Nullable int[] testNameIds() {
+        if (testNamesDelta == null)
+            return testNames;
+
+        int[] res = resolvedNames;
+
+        if (res == null) {
+            res = resolveNames();
+
+            if (res != null)
+                resolvedNames = res;
+            else {
+                // Names are unknown, but columns are still consistent.
+                res = new int[testsCount()];
+
+                Arrays.fill(res, -1);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * @return Test names resolved from delta, null if reference names are not available.
+     */
+    @Nullable private int[] resolveNames() {
+        int[] ref = namesLdr == null ? null : namesLdr.referenceNames(testNamesRef);
+
+        if (ref == null) {
+            if (namesLdr != null)
+                logger.error("Reference test names [" + testNamesRef + "] are not found for build " + id());
+
+            return null;
+        }
+
+        try {
+            int[] res = TestNamesDelta.decode(ref, testNamesDelta);
+
+            if (res.length == testsCount())
+                return res;
+
+            logger.error("Test names resolved for build " + id() + " don't match tests count: " + res.length);
+        }
+        catch (IllegalArgumentException e) {
+            logger.error("Failed to resolve test names for build " + id() + ": " + e.getMessage(), e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Replaces test names with delta against reference names.
+     *
+     * @param refId Reference ID.
+     * @param delta Delta of current test names against reference names.
+     */
+    void testNamesDelta(int refId, int[] delta) {
+        resolvedNames = testNameIds();
+
+        testNamesRef = refId;
+        testNamesDelta = delta;
+        testNames = null;
+    }
+
+    /**
+     * Takes delta of test names from other version of this build if test names are the same, so builds can be compared
+     * by {@link #equals(Object)}.
+     *
+     * @param other Other version of the build.
+     */
+    void sameTestNamesAs(FatBuildCompacted other) {
+        if (other.testNamesDelta == null || testNamesDelta != null)
+            return;
+
+        if (Arrays.equals(testNameIds(), other.testNameIds()))
+            testNamesDelta(other.testNamesRef, other.testNamesDelta);
+    }
+
+    /**
+     * @return ID of reference names if test names are kept as delta, {@code -1} otherwise.
+     */
+    int testNamesRef() {
+        return testNamesDelta == null ? -1 : testNamesRef;
+    }
 
-            if (tests == null)
-                tests = new ArrayList<>();
+    /**
+     * @return Count of tests in this build.
+     */
+    public int testsCount() {
+        if (tests != null)
+            return tests.size();
+
+        return testStatuses == null ? 0 : testStatuses.length;
+    }
+
+    /**
+     * @return Copy of all tests as standalone objects, may be used to save tests into another build.
+     */
+    List<TestCompacted> testsCompacted() {
+        if (tests != null)
+            return new ArrayList<>(tests);
+
+        int cnt = testsCount();
+        List<TestCompacted> res = new ArrayList<>(cnt);
+
+        for (int i = 0; i < cnt; i++)
+            res.add(testCompacted(i));
 
-            tests.add(compacted);
+        return res;
+    }
+
+    /**
+     * @param idx Test index in columns.
+     */
+    private TestCompacted testCompacted(int idx) {
+        byte[] dtls = null;
+
+        if (testDetailsOffs != null && testDetailsOffs[idx + 1] > testDetailsOffs[idx])
+            dtls = Arrays.copyOfRange(testDetails, testDetailsOffs[idx], testDetailsOffs[idx + 1]);
+
+        int flagsBits = testFlags[idx] & 0xFFFF;
+
+        if (dtls == null && (flagsBits & (1 << TestCompacted.SEPARATE_DETAILS_F)) != 0 && detailsLdr != null) {
+            synchronized (this) {
+                dtls = loadedDetails == null ? null : loadedDetails.get(testIdsInBuild[idx]);
+            }
         }
+
+        TestCompacted test = new TestCompacted(testIdsInBuild[idx], testNameIds()[idx], testStatuses[idx],
+            testDurations[idx], flagsBits, testIds[idx], testActualBuildIds[idx], dtls);
+
+        test.detailsLoader(cachingLdr);
+
+        return test;
+    }
+
+    /**
+     * @param bits Test flags bits.
+     * @param off Flag offset.
+     */
+    @Nullable private static Boolean testFlag(int bits, int off) {
+        if ((bits & (1 << off)) == 0)
+            return null;
+
+        return (bits & (1 << (off + 1))) != 0;
+    }
+
+    /**
+     * @param idx Test index in columns.
+     * @param successStatus Success status (compacted string).
+     */
+    private boolean isFailedButNotMuted(int idx, int successStatus) {
+        if (testStatuses[idx] == successStatus)
+            return false;
+
+        int bits = testFlags[idx];
+
+        return !Boolean.TRUE.equals(testFlag(bits, TestCompacted.MUTED_F))
+            && !Boolean.TRUE.equals(testFlag(bits, TestCompacted.IGNORED_F));
     }
 
     /**
@@ -252,12 +670,14 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
      * @param compactor Compactor.
      */
     public TestOccurrencesFull getTestOcurrences(IStringCompactor compactor) {
-        if (tests == null)
+        if (tests == null && testStatuses == null)
             return new TestOccurrencesFull();
 
+        prefetchDetails(IntStream.range(0, testsCount()).toArray());
+
         List<TestOccurrenceFull> res = new ArrayList<>();
 
-        for (TestCompacted compacted : tests)
+        for (TestCompacted compacted : testsCompacted())
             res.add(compacted.toTestOccurrence(compactor, id()));
 
         TestOccurrencesFull testOccurrences = new TestOccurrencesFull();
@@ -283,23 +703,206 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
             return false;
         FatBuildCompacted that = (FatBuildCompacted)o;
         return _ver == that._ver &&
-            startDate == that.startDate &&
-            finishDate == that.finishDate &&
             queuedDate == that.queuedDate &&
             projectId == that.projectId &&
             name == that.name &&
             Objects.equal(tests, that.tests) &&
-            Objects.equal(snapshotDeps, that.snapshotDeps) &&
+            Arrays.equals(testIdsInBuild, that.testIdsInBuild) &&
+            Arrays.equals(testNames, that.testNames) &&
+            testNamesRef() == that.testNamesRef() &&
+            Arrays.equals(testNamesDelta, that.testNamesDelta) &&
+            Arrays.equals(testStatuses, that.testStatuses) &&
+            Arrays.equals(testDurations, that.testDurations) &&
+            Arrays.equals(testFlags, that.testFlags) &&
+            Arrays.equals(testIds, that.testIds) &&
+            Arrays.equals(testActualBuildIds, that.testActualBuildIds) &&
+            Arrays.equals(testDetails, that.testDetails) &&
+            Arrays.equals(testDetailsOffs, that.testDetailsOffs) &&
+            Arrays.equals(snapshotDeps, that.snapshotDeps) &&
             Objects.equal(flags, that.flags) &&
                 Objects.equal(problems, that.problems) &&
                 Objects.equal(statistics, that.statistics)
-                && Objects.equal(changesIds, that.changesIds);
+                && Arrays.equals(changesIds, that.changesIds);
     }
 
     /** {@inheritDoc} */
     @Override public int hashCode() {
-        return Objects.hashCode(super.hashCode(), _ver, startDate, finishDate, queuedDate, projectId, name, tests,
-                snapshotDeps, flags, problems, statistics, changesIds);
+        return Objects.hashCode(super.hashCode(), _ver, queuedDate, projectId, name, tests,
+                Arrays.hashCode(testIdsInBuild), Arrays.hashCode(testNames), testNamesRef(),
+                Arrays.hashCode(testNamesDelta), Arrays.hashCode(testStatuses),
+                Arrays.hashCode(testDurations), Arrays.hashCode(testFlags), Arrays.hashCode(testIds),
+                Arrays.hashCode(testActualBuildIds), Arrays.hashCode(testDetails), Arrays.hashCode(testDetailsOffs),
+                Arrays.hashCode(snapshotDeps), flags, problems, statistics, Arrays.hashCode(changesIds));
+    }
+
+    /**
+     * Build reference fields are written as named fields, all other data is written in raw layout: ids as varints,
+     * test columns as arrays, nested tests and problems without object headers.
+     *
+     * {@inheritDoc}
+     */
+    @Override public void writeBinary(BinaryWriter writer) throws BinaryObjectException {
+        super.writeBinary(writer);
+
+        writer.writeByte(RawBinaryIo.WIRE_VER_FIELD, (byte)WIRE_VER);
+
+        BinaryRawWriter raw = writer.rawWriter();
+
+        RawBinaryIo.writeVarInt(raw, _ver);
+        RawBinaryIo.writeVarLong(raw, queuedDate);
+        RawBinaryIo.writeVarInt(raw, projectId);
+        RawBinaryIo.writeVarInt(raw, name);
+        RawBinaryIo.writeLongArray(raw, flags.toLongArray());
+
+        RawBinaryIo.writeLength(raw, tests == null ? -1 : tests.size());
+
+        if (tests != null) {
+            for (TestCompacted test : tests)
+                test.writeRaw(raw);
+        }
+
+        RawBinaryIo.writeDeltaIntArray(raw, testIdsInBuild);
+        RawBinaryIo.writeIntArray(raw, testNames);
+        RawBinaryIo.writeIntArray(raw, testStatuses);
+        RawBinaryIo.writeIntArray(raw, testDurations);
+        RawBinaryIo.writeShortArray(raw, testFlags);
+        raw.writeLongArray(testIds);
+        RawBinaryIo.writeDeltaIntArray(raw, testActualBuildIds);
+        raw.writeByteArray(testDetails);
+        RawBinaryIo.writeDeltaIntArray(raw, testDetailsOffs);
+
+        RawBinaryIo.writeDeltaIntArray(raw, snapshotDeps);
+
+        RawBinaryIo.writeLength(raw, problems == null ? -1 : problems.size());
+
+        if (problems != null) {
+            for (ProblemCompacted problem : problems)
+                problem.writeRaw(raw);
+        }
+
+        raw.writeBoolean(statistics != null);
+
+        if (statistics != null)
+            statistics.writeRaw(raw);
+
+        RawBinaryIo.writeDeltaIntArray(raw, changesIds);
+
+        RawBinaryIo.writeVarInt(raw, testNamesRef);
+        RawBinaryIo.writeIntArray(raw, testNamesDelta);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void readBinary(BinaryReader reader) throws BinaryObjectException {
+        super.readBinary(reader);
+
+        int wireVer = reader.readByte(RawBinaryIo.WIRE_VER_FIELD);
+
+        if (wireVer == 0) {
+            readLegacy(reader);
+
+            return;
+        }
+
+        RawBinaryIo.checkWireVersion(wireVer, WIRE_VER, FatBuildCompacted.class);
+
+        BinaryRawReader raw = reader.rawReader();
+
+        _ver = (short)RawBinaryIo.readVarInt(raw);
+        queuedDate = RawBinaryIo.readVarLong(raw);
+        projectId = RawBinaryIo.readVarInt(raw);
+        name = RawBinaryIo.readVarInt(raw);
+        flags = BitSet.valueOf(RawBinaryIo.readLongArray(raw));
+
+        int testsCnt = RawBinaryIo.readLength(raw);
+
+        tests = testsCnt < 0 ? null : new ArrayList<>(testsCnt);
+
+        for (int i = 0; i < testsCnt; i++) {
+            TestCompacted test = new TestCompacted();
+
+            test.readRaw(raw);
+
+            tests.add(test);
+        }
+
+        testIdsInBuild = RawBinaryIo.readDeltaIntArray(raw);
+        testNames = RawBinaryIo.readIntArray(raw);
+        testStatuses = RawBinaryIo.readIntArray(raw);
+        testDurations = RawBinaryIo.readIntArray(raw);
+        testFlags = RawBinaryIo.readShortArray(raw);
+        testIds = raw.readLongArray();
+        testActualBuildIds = RawBinaryIo.readDeltaIntArray(raw);
+        testDetails = raw.readByteArray();
+        testDetailsOffs = RawBinaryIo.readDeltaIntArray(raw);
+
+        snapshotDeps = RawBinaryIo.readDeltaIntArray(raw);
+
+        int problemsCnt = RawBinaryIo.readLength(raw);
+
+        problems = problemsCnt < 0 ? null : new ArrayList<>(problemsCnt);
+
+        for (int i = 0; i < problemsCnt; i++) {
+            ProblemCompacted problem = new ProblemCompacted();
+
+            problem.readRaw(raw);
+
+            problems.add(problem);
+        }
+
+        if (raw.readBoolean()) {
+            statistics = new StatisticsCompacted();
+
+            statistics.readRaw(raw);
+        }
+        else
+            statistics = null;
+
+        changesIds = RawBinaryIo.readDeltaIntArray(raw);
+
+        if (wireVer >= 2) {
+            testNamesRef = RawBinaryIo.readVarInt(raw);
+            testNamesDelta = RawBinaryIo.readIntArray(raw);
+        }
+        else {
+            testNamesRef = -1;
+            testNamesDelta = null;
+        }
+    }
+
+    /**
+     * Reads build written by reflection, nested objects are read by its own compatibility readers.
+     *
+     * @param reader Reader.
+     */
+    private void readLegacy(BinaryReader reader) {
+        _ver = reader.readShort("_ver");
+        queuedDate = reader.readLong("queuedDate");
+        projectId = reader.readInt("projectId");
+        name = reader.readInt("name");
+
+        Collection<TestCompacted> legacyTests = reader.readCollection("tests");
+        tests = legacyTests == null ? null : new ArrayList<>(legacyTests);
+
+        testIdsInBuild = reader.readIntArray("testIdsInBuild");
+        testNames = reader.readIntArray("testNames");
+        testStatuses = reader.readIntArray("testStatuses");
+        testDurations = reader.readIntArray("testDurations");
+        testFlags = reader.readShortArray("testFlags");
+        testIds = reader.readLongArray("testIds");
+        testActualBuildIds = reader.readIntArray("testActualBuildIds");
+        testDetails = reader.readByteArray("testDetails");
+        testDetailsOffs = reader.readIntArray("testDetailsOffs");
+
+        snapshotDeps = reader.readIntArray("snapshotDeps");
+
+        BitSet legacyFlags = reader.readObject("flags");
+        flags = legacyFlags == null ? new BitSet() : legacyFlags;
+
+        Collection<ProblemCompacted> legacyProblems = reader.readCollection("problems");
+        problems = legacyProblems == null ? null : new ArrayList<>(legacyProblems);
+
+        statistics = reader.readObject("statistics");
+        changesIds = reader.readIntArray("changesIds");
     }
 
     /**
@@ -329,27 +932,60 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
         return flag != null && flag;
     }
 
-    public Stream<TestCompacted> getFailedNotMutedTests(IStringCompactor compactor) {
-        if (tests == null)
-            return Stream.of();
+    /**
+     * @param compactor Compactor.
+     * @return Failed tests, tests are filtered by columns data, views are created only for tests returned. Details of
+     * these tests are loaded by one request, because failures are going to be shown.
+     */
+    public Stream<ITest> getFailedNotMutedTests(IStringCompactor compactor) {
+        if (tests != null)
+            return getAllTests().filter(t -> t.isFailedButNotMuted(compactor));
+
+        int[] idxs = failedNotMutedIdxs(compactor);
 
-        return tests.stream()
-                .filter(t -> t.isFailedButNotMuted(compactor));
+        prefetchDetails(idxs);
+
+        return Arrays.stream(idxs).mapToObj(TestView::new);
     }
 
     public Stream<String> getFailedNotMutedTestNames(IStringCompactor compactor) {
-        return getFailedNotMutedTests(compactor).map(t -> t.testName(compactor));
+        if (tests != null)
+            return getFailedNotMutedTests(compactor).map(t -> t.testName(compactor));
+
+        int[] names = testNameIds();
+
+        return Arrays.stream(failedNotMutedIdxs(compactor)).mapToObj(idx -> compactor.getStringFromId(names[idx]));
     }
 
-    public Stream<TestCompacted> getAllTests() {
-        if (tests == null)
-            return Stream.of();
+    /**
+     * @param compactor Compactor.
+     * @return Indexes of failed tests in columns.
+     */
+    private int[] failedNotMutedIdxs(IStringCompactor compactor) {
+        int successStatus = compactor.getStringId(TestOccurrence.STATUS_SUCCESS);
+
+        return IntStream.range(0, testsCount())
+            .filter(idx -> isFailedButNotMuted(idx, successStatus))
+            .toArray();
+    }
+
+    /**
+     * @return All tests, for entity of latest version each test is lightweight view over tests columns.
+     */
+    public Stream<ITest> getAllTests() {
+        if (tests != null)
+            return Collections.<ITest>unmodifiableList(tests).stream();
 
-        return tests.stream();
+        return IntStream.range(0, testsCount()).mapToObj(TestView::new);
     }
 
     public Stream<String> getAllTestNames(IStringCompactor compactor) {
-        return getAllTests().map(t -> t.testName(compactor));
+        if (tests != null)
+            return getAllTests().map(t -> t.testName(compactor));
+
+        int[] names = testNameIds();
+
+        return IntStream.range(0, testsCount()).mapToObj(idx -> compactor.getStringFromId(names[idx]));
     }
 
     public String buildTypeName(IStringCompactor compactor) {
@@ -419,12 +1055,12 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
         return MoreObjects.toStringHelper(this)
             .add("_", super.toString())
             .add("_ver", _ver)
-            .add("startDate", startDate)
-            .add("finishDate", finishDate)
             .add("queuedDate", queuedDate)
             .add("projectId", projectId)
             .add("name", name)
             .add("tests", tests)
+            .add("testsCnt", testsCount())
+            .add("testNamesRef", testNamesRef())
             .add("snapshotDeps", snapshotDeps)
             .add("flags", flags)
             .add("problems", problems)
@@ -432,4 +1068,91 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
             .add("changesIds", changesIds)
             .toString();
     }
+
+    /**
+     * Lightweight view of one test, only test index is kept in the view, data is read from columns of the build.
+     */
+    private class TestView implements ITest {
+        /** Test index in columns. */
+        private final int idx;
+
+        /**
+         * @param idx Test index in columns.
+         */
+        TestView(int idx) {
+            this.idx = idx;
+        }
+
+        /** {@inheritDoc} */
+        @Override public int testName() {
+            return testNameIds()[idx];
+        }
+
+        /** {@inheritDoc} */
+        @Override public String testName(IStringCompactor compactor) {
+            return compactor.getStringFromId(testNameIds()[idx]);
+        }
+
+        /** {@inheritDoc} */
+        @Override public int idInBuild() {
+            return testIdsInBuild[idx];
+        }
+
+        /** {@inheritDoc} */
+        @Override public int status() {
+            return testStatuses[idx];
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public Integer getDuration() {
+            int duration = testDurations[idx];
+
+            return duration < 0 ? null : duration;
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public Boolean getMutedFlag() {
+            return testFlag(testFlags[idx], TestCompacted.MUTED_F);
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public Boolean getIgnoredFlag() {
+            return testFlag(testFlags[idx], TestCompacted.IGNORED_F);
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public Boolean getCurrInvestigatedFlag() {
+            return testFlag(testFlags[idx], TestCompacted.CUR_INV_F);
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean isInvestigated() {
+            return Boolean.TRUE.equals(getCurrInvestigatedFlag());
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean isFailedTest(IStringCompactor compactor) {
+            return compactor.getStringId(TestOccurrence.STATUS_SUCCESS) != testStatuses[idx];
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean isFailedButNotMuted(IStringCompactor compactor) {
+            return FatBuildCompacted.this.isFailedButNotMuted(idx, compactor.getStringId(TestOccurrence.STATUS_SUCCESS));
+        }
+
+        /** {@inheritDoc} */
+        @Nullable @Override public String getDetailsText() {
+            return testCompacted(idx).getDetailsText();
+        }
+
+        /** {@inheritDoc} */
+        @Override public TestOccurrenceFull toTestOccurrence(IStringCompactor compactor, int buildId) {
+            return testCompacted(idx).toTestOccurrence(compactor, buildId);
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return testCompacted(idx).toString();
+        }
+    }
 }
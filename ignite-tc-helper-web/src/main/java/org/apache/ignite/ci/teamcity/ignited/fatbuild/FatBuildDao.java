@@ -18,24 +18,33 @@
 package org.apache.ignite.ci.teamcity.ignited.fatbuild;
 
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
+import javax.cache.Cache;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.validation.constraints.NotNull;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
+import org.apache.ignite.ci.teamcity.ignited.BuildRefDao;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildIdsBitmap;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,20 +59,110 @@ public class FatBuildDao {
     /** Cache name */
     public static final String TEAMCITY_FAT_BUILD_CACHE_NAME = "teamcityFatBuild";
 
+    /** Cache name for persisted bitmaps of fat build IDs saved, key is server ID. */
+    public static final String TEAMCITY_FAT_BUILD_IDS_CACHE_NAME = "teamcityFatBuildIds";
+
     /** Ignite provider. */
     @Inject private Provider<Ignite> igniteProvider;
 
     /** Builds cache. */
     private IgniteCache<Long, FatBuildCompacted> buildsCache;
 
+    /** Persisted bitmaps of fat build IDs. */
+    private IgniteCache<Integer, BuildIdsBitmap> buildIdsCache;
+
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
+    /** Test details storage. */
+    @Inject private TestDetailsDao testDetailsDao;
+
+    /** Reference test names storage. */
+    @Inject private TestNamesRefDao testNamesRefDao;
+
+    /**
+     * Server ID -> IDs of fat builds saved. Bitmap may be persisted with some delay, so persisted version may miss
+     * several recent builds, but never contains IDs which were not saved.
+     */
+    private final ConcurrentMap<Integer, BuildIdsBitmap> buildIds = new ConcurrentHashMap<>();
+
+    /** Listeners of builds saved. */
+    private final List<IFatBuildSaveListener> saveListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     *
+     */
+    public synchronized void init() {
+        if (buildsCache != null)
+            return;
+
+        Ignite ignite = igniteProvider.get();
+
+        buildsCache = ignite.getOrCreateCache(TcHelperDb.getCacheV2Config(TEAMCITY_FAT_BUILD_CACHE_NAME));
+        buildIdsCache = ignite.getOrCreateCache(TcHelperDb.getCacheV2Config(TEAMCITY_FAT_BUILD_IDS_CACHE_NAME));
+
+        testDetailsDao.init();
+        testNamesRefDao.init();
+
+        loadBuildIds();
+    }
+
+    /**
+     * Loads persisted bitmaps of build IDs, or fills it using scan over cache keys if bitmaps were not saved before.
+     */
+    private void loadBuildIds() {
+        long start = System.currentTimeMillis();
+
+        buildIdsCache.forEach(entry -> buildIds.put(entry.getKey(), entry.getValue()));
+
+        if (!buildIds.isEmpty() || buildsCache.size() == 0)
+            return;
+
+        // Values are kept in binary form to avoid unmarshalling of builds.
+        for (Cache.Entry<Long, BinaryObject> entry : buildsCache.<Long, BinaryObject>withKeepBinary()) {
+            Long key = entry.getKey();
+
+            if (key != null)
+                idsBitmap((int)(key >> 32)).add(BuildRefDao.cacheKeyToBuildId(key));
+        }
+
+        buildIds.keySet().forEach(this::saveBuildIds);
+
+        logger.info("Fat build IDs bitmaps were built for " + buildIds.size() + " servers in "
+            + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * @param srvId Server id.
+     */
+    private BuildIdsBitmap idsBitmap(int srvId) {
+        return buildIds.computeIfAbsent(srvId, k -> new BuildIdsBitmap());
+    }
+
     /**
+     * @param srvId Server id.
+     * @return Copy of IDs of fat builds saved for server.
+     */
+    public BuildIdsBitmap getAllIds(int srvId) {
+        return new BuildIdsBitmap(idsBitmap(srvId));
+    }
+
+    /**
+     * Persists current bitmap of fat build IDs for server.
      *
+     * @param srvId Server id.
      */
-    public void init() {
-        buildsCache = igniteProvider.get().getOrCreateCache(TcHelperDb.getCacheV2Config(TEAMCITY_FAT_BUILD_CACHE_NAME));
+    public void saveBuildIds(int srvId) {
+        Preconditions.checkNotNull(buildIdsCache, "init() was not called");
+
+        buildIdsCache.put(srvId, getAllIds(srvId));
+    }
+
+    /**
+     * @param lsnr Listener to be notified about new or modified builds saved.
+     */
+    public void addSaveListener(IFatBuildSaveListener lsnr) {
+        saveListeners.add(lsnr);
     }
 
     /**
@@ -85,13 +184,44 @@ public class FatBuildDao {
                                        @Nullable Statistics statistics,
                                        @Nullable ChangesList changesList,
                                        @Nullable FatBuildCompacted existingBuild) {
+        List<TestOccurrenceFull> occurrences = new ArrayList<>();
+
+        for (TestOccurrencesFull next : tests)
+            occurrences.addAll(next.getTests());
+
+        List<TestCompacted> compactedTests = TestCompacted.compactAll(compactor, occurrences);
+
+        return saveBuildCompacted(srvIdMaskHigh, buildId, build, compactedTests, problems, statistics, changesList,
+            existingBuild);
+    }
+
+    /**
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildId
+     * @param build Build data.
+     * @param tests Tests already converted to compacted form.
+     * @param problems
+     * @param statistics
+     * @param changesList
+     * @param existingBuild existing version of build in the DB.
+     * @return Fat Build saved (if modifications detected), otherwise null.
+     */
+    public FatBuildCompacted saveBuildCompacted(long srvIdMaskHigh,
+                                                int buildId,
+                                                @NotNull Build build,
+                                                @NotNull List<TestCompacted> tests,
+                                                @Nullable List<ProblemOccurrence> problems,
+                                                @Nullable Statistics statistics,
+                                                @Nullable ChangesList changesList,
+                                                @Nullable FatBuildCompacted existingBuild) {
         Preconditions.checkNotNull(buildsCache, "init() was not called");
         Preconditions.checkNotNull(build, "build can't be null");
 
         FatBuildCompacted newBuild = new FatBuildCompacted(compactor, build);
 
-        for (TestOccurrencesFull next : tests)
-            newBuild.addTests(compactor, next.getTests());
+        testDetailsDao.compress((int)srvIdMaskHigh, tests);
+
+        newBuild.addTests(tests);
 
         if (problems != null)
             newBuild.addProblems(compactor, problems);
@@ -102,15 +232,44 @@ public class FatBuildDao {
         if (changesList != null)
             newBuild.changes(extractChangeIds(changesList));
 
+        if (existingBuild != null)
+            newBuild.sameTestNamesAs(existingBuild);
+
         if (existingBuild == null || !existingBuild.equals(newBuild)) {
+            // Details are saved first, so build is never visible without details of its tests.
+            testDetailsDao.saveAll((int)srvIdMaskHigh, buildId, tests, existingBuild);
+
+            testNamesRefDao.encode((int)srvIdMaskHigh, newBuild);
+
             buildsCache.put(buildIdToCacheKey(srvIdMaskHigh, buildId), newBuild);
 
+            idsBitmap((int)srvIdMaskHigh).add(buildId);
+
+            withDetailsLoader((int)srvIdMaskHigh, newBuild);
+
+            notifySaved((int)srvIdMaskHigh, newBuild);
+
             return newBuild;
         }
 
         return null;
     }
 
+    /**
+     * @param srvId Server id.
+     * @param build Build saved.
+     */
+    private void notifySaved(int srvId, FatBuildCompacted build) {
+        for (IFatBuildSaveListener lsnr : saveListeners) {
+            try {
+                lsnr.onBuildSaved(srvId, build);
+            }
+            catch (Exception e) {
+                logger.error("Processing of saved build [" + build.id() + "] failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
     public static int[] extractChangeIds(@NotNull ChangesList changesList) {
         return changesList.changes().stream().mapToInt(
                         ch -> {
@@ -139,7 +298,7 @@ public class FatBuildDao {
     public FatBuildCompacted getFatBuild(int srvIdMaskHigh, int buildId) {
         Preconditions.checkNotNull(buildsCache, "init() was not called");
 
-        return buildsCache.get(buildIdToCacheKey(srvIdMaskHigh, buildId));
+        return withDetailsLoader(srvIdMaskHigh, buildsCache.get(buildIdToCacheKey(srvIdMaskHigh, buildId)));
     }
 
     /**
@@ -154,7 +313,25 @@ public class FatBuildDao {
             .map(buildId -> buildIdToCacheKey(srvIdMaskHigh, buildId))
             .collect(Collectors.toSet());
 
-        return buildsCache.getAll(ids);
+        Map<Long, FatBuildCompacted> res = buildsCache.getAll(ids);
+
+        res.values().forEach(build -> withDetailsLoader(srvIdMaskHigh, build));
+
+        return res;
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param build Build loaded from cache.
+     * @return Same build, able to load details and names of tests on demand.
+     */
+    private FatBuildCompacted withDetailsLoader(int srvId, @Nullable FatBuildCompacted build) {
+        if (build != null) {
+            build.detailsLoader(testDetailsDao.loader(srvId, build.id()));
+            build.testNamesLoader(testNamesRefDao.loader(srvId));
+        }
+
+        return build;
     }
 
     /**
@@ -165,7 +342,22 @@ public class FatBuildDao {
         return key!=null && key >> 32 == srvId;
     }
 
-    public boolean containsKey(int srvIdMaskHigh, int buildRefKey) {
-        return buildsCache.containsKey(buildIdToCacheKey(srvIdMaskHigh, buildRefKey));
+    /**
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildId Build id.
+     */
+    public boolean containsKey(int srvIdMaskHigh, int buildId) {
+        BuildIdsBitmap ids = idsBitmap(srvIdMaskHigh);
+
+        if (ids.contains(buildId))
+            return true;
+
+        if (!buildsCache.containsKey(buildIdToCacheKey(srvIdMaskHigh, buildId)))
+            return false;
+
+        // Build was saved, but persisted bitmap was not updated before restart.
+        ids.add(buildId);
+
+        return true;
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Test occurrence in a fat build. It may be either standalone {@link TestCompacted} or lightweight view over columnar
+ * tests data of {@link FatBuildCompacted}.
+ */
+public interface ITest {
+    /**
+     * @return Test name (compacted string).
+     */
+    public int testName();
+
+    /**
+     * @param compactor Compactor.
+     */
+    public String testName(IStringCompactor compactor);
+
+    /**
+     * @return Test ID in build.
+     */
+    public int idInBuild();
+
+    /**
+     * @return Test status (compacted string).
+     */
+    public int status();
+
+    /**
+     * @return Duration in milliseconds or null if unknown.
+     */
+    @Nullable public Integer getDuration();
+
+    /**
+     *
+     */
+    @Nullable public Boolean getMutedFlag();
+
+    /**
+     *
+     */
+    @Nullable public Boolean getIgnoredFlag();
+
+    /**
+     *
+     */
+    @Nullable public Boolean getCurrInvestigatedFlag();
+
+    /**
+     *
+     */
+    public boolean isInvestigated();
+
+    /**
+     * @param compactor Compactor.
+     */
+    public boolean isFailedTest(IStringCompactor compactor);
+
+    /**
+     * @param compactor Compactor.
+     */
+    public boolean isFailedButNotMuted(IStringCompactor compactor);
+
+    /**
+     * @return Uncompressed test details.
+     */
+    @Nullable public String getDetailsText();
+
+    /**
+     * @param compactor Compactor.
+     * @param buildId Build id.
+     */
+    public TestOccurrenceFull toTestOccurrence(IStringCompactor compactor, int buildId);
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.Map;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Loads details of tests kept separately from fat build.
+ */
+public interface ITestDetailsLoader {
+    /**
+     * @param testIdsInBuild Test IDs in build.
+     * @return Test ID in build -> compressed details, tests without details are absent in result.
+     */
+    public Map<Integer, byte[]> loadDetails(int[] testIdsInBuild);
+
+    /**
+     * @param dictId Dictionary ID.
+     * @return Shared dictionary used to compress details or null if dictionary is not found.
+     */
+    @Nullable public DetailsDictionary dictionary(int dictId);
+}
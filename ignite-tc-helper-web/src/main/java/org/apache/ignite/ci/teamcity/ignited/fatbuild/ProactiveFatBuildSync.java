@@ -21,33 +21,59 @@ import com.google.common.base.Throwables;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.MonitoredTask;
 import org.apache.ignite.ci.di.scheduler.IScheduler;
+import org.apache.ignite.ci.tcbot.TcBotSystemProperties;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
+import org.apache.ignite.ci.teamcity.ignited.BuildRefCompacted;
 import org.apache.ignite.ci.teamcity.ignited.BuildRefDao;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.apache.ignite.ci.teamcity.ignited.ITeamcityIgnited;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeSync;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityConn;
+import org.apache.ignite.ci.teamcity.pure.IXmlResponseParser;
 import org.apache.ignite.ci.util.ExceptionUtil;
+import org.apache.ignite.ci.util.FutureUtil;
+import org.apache.ignite.ci.util.XmlUtil;
+import org.apache.ignite.internal.util.GridIntList;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
+import javax.xml.stream.XMLStreamException;
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class ProactiveFatBuildSync {
     public static final int FAT_BUILD_PROACTIVE_TASKS = 5;
 
+    /** Threads to request build data from each server. */
+    public static final int BUILD_IO_THREADS = 8;
+
+    /** Test occurrences page size used if count of tests is known. */
+    public static final int TESTS_PAGE_SIZE = 1000;
+
+    /** Maximum count of builds queued for loading for each server, lowest priority builds are dropped on overflow. */
+    public static final int MAX_QUEUED_BUILDS = 100_000;
+
+    /** Count of builds taken from load queue at once. */
+    public static final int LOAD_BATCH_SIZE = 100;
+
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(ProactiveFatBuildSync.class);
 
@@ -65,30 +91,40 @@ public class ProactiveFatBuildSync {
 
     @Inject private ChangeSync changeSync;
 
-    @GuardedBy("this")
-    private Map<String, SyncTask> buildToLoad = new HashMap<>();
+    /** Server name -> queue of builds to be loaded. */
+    private final ConcurrentMap<String, BuildLoadQueue> loadQueues = new ConcurrentHashMap<>();
 
-    private static class SyncTask {
-        ITeamcityConn conn;
-        Set<Integer> ids = new HashSet<>();
-    }
+    /** Server name -> connection to load queued builds. */
+    private final ConcurrentMap<String, ITeamcityConn> loadConns = new ConcurrentHashMap<>();
+
+    /** Cache key of build (server and build ID) -> future for result of reload, which is in progress now. */
+    private final ConcurrentMap<Long, CompletableFuture<FatBuildCompacted>> buildsInFlight = new ConcurrentHashMap<>();
+
+    /** Count of build reloads skipped because the same build was being reloaded concurrently. */
+    private final AtomicLong duplicatesAvoided = new AtomicLong();
+
+    /** Server name -> pool for requests of build data. */
+    private final ConcurrentMap<String, ExecutorService> ioPools = new ConcurrentHashMap<>();
 
     /**
      * Invoke load fat builds later, re-load provided builds.
      * @param conn
      * @param buildsToAskFromTc Builds to ask from tc.
+     * @param priority Load priority.
      */
-    public void scheduleBuildsLoad(ITeamcityConn conn, Collection<Integer> buildsToAskFromTc) {
+    public void scheduleBuildsLoad(ITeamcityConn conn, Collection<Integer> buildsToAskFromTc, LoadPriority priority) {
         if (buildsToAskFromTc.isEmpty())
             return;
 
+        final String serverId = conn.serverId();
 
-        synchronized (this) {
-            final String serverId = conn.serverId();
-            final SyncTask syncTask = buildToLoad.computeIfAbsent(serverId, s -> new SyncTask());
-            syncTask.conn = conn;
-            syncTask.ids.addAll(buildsToAskFromTc);
-        }
+        loadConns.put(serverId, conn);
+
+        int added = loadQueues.computeIfAbsent(serverId, s -> new BuildLoadQueue(MAX_QUEUED_BUILDS))
+            .addAll(buildsToAskFromTc, priority);
+
+        if (added == 0)
+            return;
 
         int ldrToActivate = ThreadLocalRandom.current().nextInt(FAT_BUILD_PROACTIVE_TASKS);
 
@@ -103,55 +139,59 @@ public class ProactiveFatBuildSync {
     protected String findMissingBuildsFromBuildRef(String srvId, ITeamcityConn conn) {
         int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvId);
 
-        final int[] buildRefKeys = buildRefDao.getAllIds(srvIdMaskHigh);
+        // References without fat builds, persisted bitmap of fat builds may miss the most recent builds.
+        final int[] missingCandidates = buildRefDao.getAllIdsExcept(srvIdMaskHigh, fatBuildDao.getAllIds(srvIdMaskHigh));
 
         List<Integer> buildsIdsToLoad = new ArrayList<>();
         int totalAskedToLoad = 0;
 
-        for (int buildRefKey : buildRefKeys) {
-            if (!fatBuildDao.containsKey(srvIdMaskHigh, buildRefKey))
-                buildsIdsToLoad.add(buildRefKey);
+        for (int buildId : missingCandidates) {
+            if (!fatBuildDao.containsKey(srvIdMaskHigh, buildId))
+                buildsIdsToLoad.add(buildId);
 
             if (buildsIdsToLoad.size() >= 100) {
                 totalAskedToLoad += buildsIdsToLoad.size();
-                scheduleBuildsLoad(conn, buildsIdsToLoad);
+                scheduleBuildsLoad(conn, buildsIdsToLoad, LoadPriority.BACKFILL);
                 buildsIdsToLoad.clear();
             }
         }
 
         if (!buildsIdsToLoad.isEmpty()) {
             totalAskedToLoad += buildsIdsToLoad.size();
-            scheduleBuildsLoad(conn, buildsIdsToLoad);
+            scheduleBuildsLoad(conn, buildsIdsToLoad, LoadPriority.BACKFILL);
         }
 
+        fatBuildDao.saveBuildIds(srvIdMaskHigh);
+
         return "Invoked later load for " + totalAskedToLoad + " builds from " + srvId;
     }
 
-    /** */
+    /**
+     * Loads queued builds in batches, highest priority first, until queue is empty.
+     *
+     * @param ldrNo Loader number.
+     * @param serverId Server id.
+     */
     private void loadFatBuilds(int ldrNo, String serverId) {
-        Set<Integer> load;
-        ITeamcityConn conn;
-        synchronized (this) {
-            final SyncTask syncTask = buildToLoad.get(serverId);
-            if (syncTask == null)
-                return;
+        BuildLoadQueue queue = loadQueues.get(serverId);
+        ITeamcityConn conn = loadConns.get(serverId);
 
-            if (syncTask.ids.isEmpty()) {
-                syncTask.conn = null;
-                return;
-            }
+        if (queue == null || conn == null)
+            return;
+
+        while (true) {
+            GridIntList batch = queue.poll(LOAD_BATCH_SIZE);
 
-            if (syncTask.conn == null)
+            if (batch.isEmpty())
                 return;
 
-            load = syncTask.ids;
-            syncTask.ids = new HashSet<>();
+            Set<Integer> load = new LinkedHashSet<>();
 
-            conn = syncTask.conn;
-            syncTask.conn = null;
-        }
+            for (int i = 0; i < batch.size(); i++)
+                load.add(batch.get(i));
 
-        doLoadBuilds(ldrNo, serverId, conn, load);
+            doLoadBuilds(ldrNo, serverId, conn, load);
+        }
     }
 
     @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
@@ -199,6 +239,8 @@ public class ProactiveFatBuildSync {
     }
 
     /**
+     * Reloads build from TC. If the same build is being reloaded by another thread, waits for its result instead of
+     * sending the same requests to TC.
      *
      * @param conn
      * @param buildId
@@ -208,47 +250,233 @@ public class ProactiveFatBuildSync {
     @SuppressWarnings({"WeakerAccess"})
     @AutoProfiling
     public FatBuildCompacted reloadBuild(ITeamcityConn conn, int buildId, @Nullable FatBuildCompacted existingBuild) {
-        //  System.err.println(Thread.currentThread().getName()+ ": Build " + buildId);
-        //todo some sort of locking to avoid double requests
+        final int srvIdMask = ITeamcityIgnited.serverIdToInt(conn.serverId());
+        final long key = FatBuildDao.buildIdToCacheKey(srvIdMask, buildId);
+
+        CompletableFuture<FatBuildCompacted> fut = new CompletableFuture<>();
+        CompletableFuture<FatBuildCompacted> inFlight = buildsInFlight.putIfAbsent(key, fut);
+
+        if (inFlight != null) {
+            duplicatesAvoided.incrementAndGet();
+
+            return FutureUtil.getResult(inFlight);
+        }
+
+        try {
+            FatBuildCompacted savedVer = doReloadBuild(conn, buildId, existingBuild);
+
+            fut.complete(savedVer);
+
+            return savedVer;
+        }
+        catch (Throwable e) {
+            fut.completeExceptionally(e);
+
+            throw e;
+        }
+        finally {
+            buildsInFlight.remove(key, fut);
+        }
+    }
+
+    /**
+     * Loads test occurrences of build. If total count of tests is known, all pages are requested concurrently. Tests
+     * are converted to compacted form during parsing of each page.
+     *
+     * @param conn Connection.
+     * @param buildId Build id.
+     * @param build Build.
+     * @param pool Pool to request pages.
+     */
+    private List<TestCompacted> loadTests(ITeamcityConn conn, int buildId, Build build, ExecutorService pool) {
+        boolean testDtls = !build.isComposite(); // don't query test details for compoite
+        Integer cnt = build.testOccurrences.count;
+        List<TestCompacted> tests = new ArrayList<>();
+
+        if (cnt == null || cnt <= 0) {
+            String nextHref = null;
+            do {
+                String href = nextHref;
+                TestCompactedPage page = loadTestsPage(parser -> conn.getTestsPage(buildId, href, testDtls, parser));
+                nextHref = page.nextHref();
+
+                tests.addAll(page.tests());
+            }
+            while (!Strings.isNullOrEmpty(nextHref));
+
+            return tests;
+        }
+
+        int pages = (cnt + TESTS_PAGE_SIZE - 1) / TESTS_PAGE_SIZE;
+        List<CompletableFuture<TestCompactedPage>> pageFuts = new ArrayList<>();
+
+        for (int i = 0; i < pages; i++) {
+            int start = i * TESTS_PAGE_SIZE;
+
+            pageFuts.add(CompletableFuture.supplyAsync(
+                () -> loadTestsPage(parser -> conn.getTestsPage(buildId, start, TESTS_PAGE_SIZE, testDtls, parser)),
+                pool));
+        }
+
+        TestCompactedPage last = null;
+
+        try {
+            for (CompletableFuture<TestCompactedPage> fut : pageFuts) {
+                last = fut.join();
+
+                tests.addAll(last.tests());
+            }
+        }
+        catch (RuntimeException e) {
+            // Build is not saved anyway, so pages not requested yet should not take TC connections.
+            pageFuts.forEach(fut -> fut.cancel(false));
+
+            throw e;
+        }
+
+        // Count may be outdated for running build, so continue while pages are full.
+        int start = pages * TESTS_PAGE_SIZE;
 
+        while (last.tests().size() >= TESTS_PAGE_SIZE) {
+            int pageStart = start;
+
+            last = loadTestsPage(parser -> conn.getTestsPage(buildId, pageStart, TESTS_PAGE_SIZE, testDtls, parser));
+
+            tests.addAll(last.tests());
+
+            start += TESTS_PAGE_SIZE;
+        }
+
+        return tests;
+    }
+
+    /**
+     * Loads page of tests in compacted form. Page is parsed from TC response while it is read, streaming parser is
+     * used unless it is disabled by {@link TcBotSystemProperties#TEAMCITY_BOT_TESTS_JAXB}. If streaming parsing fails,
+     * page is requested again and parsed by JAXB as a fallback.
+     *
+     * @param req Request of page, parses response by provided parser.
+     */
+    private TestCompactedPage loadTestsPage(Function<IXmlResponseParser<TestCompactedPage>, TestCompactedPage> req) {
+        if (!Boolean.getBoolean(TcBotSystemProperties.TEAMCITY_BOT_TESTS_JAXB)) {
+            try {
+                return req.apply(reader -> TestOccurrencesStaxParser.parse(reader, compactor));
+            }
+            catch (RuntimeException e) {
+                if (Throwables.getCausalChain(e).stream().noneMatch(XMLStreamException.class::isInstance))
+                    throw e;
+
+                logger.error("Streaming parsing of tests failed, JAXB will be used", e);
+            }
+        }
+
+        return req.apply(reader -> {
+            TestOccurrencesFull tests = XmlUtil.load(TestOccurrencesFull.class, reader);
+            TestCompactedPage page = new TestCompactedPage();
+
+            page.nextHref(Strings.emptyToNull(tests.nextHref()));
+
+            page.tests().addAll(TestCompacted.compactAll(compactor, tests.getTests()));
+
+            return page;
+        });
+    }
+
+    /**
+     * @param srvNme Server name.
+     * @return Bounded pool for requests to the server.
+     */
+    private ExecutorService ioPool(String srvNme) {
+        return ioPools.computeIfAbsent(srvNme, srv -> {
+            ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+            return Executors.newFixedThreadPool(BUILD_IO_THREADS, r -> {
+                Thread thread = threadFactory.newThread(r);
+
+                thread.setName("build-io-" + srv + "-" + thread.getName());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        });
+    }
+
+    /**
+     * Stops pools for requests to servers.
+     */
+    public void stop() {
+        ioPools.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * @return Count of builds being reloaded now.
+     */
+    public int buildsInFlight() {
+        return buildsInFlight.size();
+    }
+
+    /**
+     * @return Count of build reloads skipped because the same build was being reloaded concurrently.
+     */
+    public long duplicatesAvoided() {
+        return duplicatesAvoided.get();
+    }
+
+    /**
+     * @return Server name -> queue of builds to be loaded.
+     */
+    public Map<String, BuildLoadQueue> loadQueues() {
+        return Collections.unmodifiableMap(loadQueues);
+    }
+
+    /**
+     * @param conn
+     * @param buildId
+     * @param existingBuild
+     * @return new build if it was updated or null if no updates detected
+     */
+    private FatBuildCompacted doReloadBuild(ITeamcityConn conn, int buildId,
+        @Nullable FatBuildCompacted existingBuild) {
         final String srvNme = conn.serverId();
         final int srvIdMask = ITeamcityIgnited.serverIdToInt(srvNme);
 
         Build build;
-        List<TestOccurrencesFull> tests = new ArrayList<>();
+        List<TestCompacted> tests = new ArrayList<>();
         List<ProblemOccurrence> problems = null;
         Statistics statistics = null;
         ChangesList changesList = null;
         try {
-            build = conn.getBuild(buildId);
+            final Build loadedBuild = conn.getBuild(buildId);
+            final ExecutorService pool = ioPool(srvNme);
 
-            if(build.testOccurrences!=null) {
-                String nextHref = null;
-                do {
-                    boolean testDtls = !build.isComposite(); // don't query test details for compoite
-                    TestOccurrencesFull page = conn.getTestsPage(buildId, nextHref, testDtls);
-                    nextHref = page.nextHref();
+            build = loadedBuild;
 
-                    tests.add(page);
-                }
-                while (!Strings.isNullOrEmpty(nextHref));
-            }
+            // Problems, statistics and changes do not depend on tests, so all these are requested concurrently.
+            CompletableFuture<List<ProblemOccurrence>> problemsFut = loadedBuild.problemOccurrences == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> conn.getProblems(buildId).getProblemsNonNull(), pool);
 
-            if (build.problemOccurrences != null)
-                problems = conn.getProblems(buildId).getProblemsNonNull();
+            CompletableFuture<Statistics> statisticsFut = loadedBuild.statisticsRef == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> conn.getStatistics(buildId), pool);
 
-            if (build.statisticsRef != null)
-                statistics = conn.getStatistics(buildId);
+            CompletableFuture<ChangesList> changesFut = loadedBuild.changesRef == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> {
+                    ChangesList list = conn.getChangesList(buildId);
 
-            if (build.changesRef != null) {
-                changesList = conn.getChangesList(buildId);
+                    // missing changes data is requested for whole build at once
+                    changeSync.buildChanges(srvIdMask, buildId, FatBuildDao.extractChangeIds(list), conn);
 
-                for (int changeId : FatBuildDao.extractChangeIds(changesList)) {
-                    // consult change sync for provided changes data
+                    return list;
+                }, pool);
 
-                    changeSync.change(srvIdMask, changeId, conn);
-                }
-            }
+            if (loadedBuild.testOccurrences != null)
+                tests = loadTests(conn, buildId, loadedBuild, pool);
+
+            problems = problemsFut.join();
+            statistics = statisticsFut.join();
+            changesList = changesFut.join();
         }
         catch (Exception e) {
             if (Throwables.getRootCause(e) instanceof FileNotFoundException) {
@@ -260,7 +488,7 @@ public class ProactiveFatBuildSync {
                     if(build.isRunning() || build.isQueued())
                         build.setCancelled();
 
-                    tests = Collections.singletonList(existingBuild.getTestOcurrences(compactor));
+                    tests = existingBuild.testsCompacted();
 
                     problems = existingBuild.problems(compactor);
                 }
@@ -278,6 +506,14 @@ public class ProactiveFatBuildSync {
 
         //if we are here because of some sort of outdated version of build,
         // new save will be performed with new entity version for compacted build
-        return fatBuildDao.saveBuild(srvIdMask, buildId, build, tests, problems, statistics, changesList, existingBuild);
+        FatBuildCompacted savedVer =
+            fatBuildDao.saveBuildCompacted(srvIdMask, buildId, build, tests, problems, statistics, changesList,
+                existingBuild);
+
+        //build was modified, probably we need also to update reference accordindly, including start and finish dates
+        if (savedVer != null && !savedVer.isFakeStub())
+            buildRefDao.save(srvIdMask, new BuildRefCompacted(savedVer));
+
+        return savedVer;
     }
 }
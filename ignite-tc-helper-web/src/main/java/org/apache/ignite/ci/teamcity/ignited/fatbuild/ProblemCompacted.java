@@ -20,6 +20,13 @@ package org.apache.ignite.ci.teamcity.ignited.fatbuild;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinaryWriter;
+import org.apache.ignite.binary.Binarylizable;
+import org.apache.ignite.ci.db.RawBinaryIo;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
@@ -31,7 +38,7 @@ import static org.apache.ignite.ci.analysis.RunStat.extractIdPrefixed;
 /**
  *
  */
-public class ProblemCompacted {
+public class ProblemCompacted implements Binarylizable {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(ProblemCompacted.class);
 
@@ -119,6 +126,50 @@ public class ProblemCompacted {
         return Objects.hashCode(id, type, identity, actualBuildId);
     }
 
+    /**
+     * Problem is written by named fields, because it may be nested into other objects, raw data of nested objects
+     * breaks reading of objects written by reflection. Compact layout is used when problems are embedded into fat
+     * build, see {@link #writeRaw(BinaryRawWriter)}.
+     *
+     * {@inheritDoc}
+     */
+    @Override public void writeBinary(BinaryWriter writer) throws BinaryObjectException {
+        writer.writeInt("id", id);
+        writer.writeInt("type", type);
+        writer.writeInt("identity", identity);
+        writer.writeInt("actualBuildId", actualBuildId);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void readBinary(BinaryReader reader) throws BinaryObjectException {
+        id = reader.readInt("id");
+        type = reader.readInt("type");
+        identity = reader.readInt("identity");
+        actualBuildId = reader.readInt("actualBuildId");
+    }
+
+    /**
+     * Writes problem without any headers, used for problems nested into other entities as well.
+     *
+     * @param writer Writer.
+     */
+    void writeRaw(BinaryRawWriter writer) {
+        RawBinaryIo.writeVarInt(writer, id);
+        RawBinaryIo.writeVarInt(writer, type);
+        RawBinaryIo.writeVarInt(writer, identity);
+        RawBinaryIo.writeVarInt(writer, actualBuildId);
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    void readRaw(BinaryRawReader reader) {
+        id = RawBinaryIo.readVarInt(reader);
+        type = RawBinaryIo.readVarInt(reader);
+        identity = RawBinaryIo.readVarInt(reader);
+        actualBuildId = RawBinaryIo.readVarInt(reader);
+    }
+
     public boolean isExecutionTimeout(IStringCompactor compactor) {
         return compactor.getStringId(ProblemOccurrence.TC_EXECUTION_TIMEOUT) == type;
     }
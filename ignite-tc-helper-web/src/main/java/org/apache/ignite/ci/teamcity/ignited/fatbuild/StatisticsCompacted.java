@@ -17,7 +17,11 @@
 
 package org.apache.ignite.ci.teamcity.ignited.fatbuild;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Strings;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.apache.ignite.ci.db.RawBinaryIo;
 import org.apache.ignite.ci.tcmodel.conf.bt.Property;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
@@ -68,6 +72,43 @@ public class StatisticsCompacted {
         }
     }
 
+    /**
+     * Writes statistics without any headers, used for statistics nested into fat build.
+     *
+     * @param writer Writer.
+     */
+    void writeRaw(BinaryRawWriter writer) {
+        RawBinaryIo.writeIntArray(writer, keys == null ? null : keys.array());
+        RawBinaryIo.writeLongArray(writer, values == null ? null : values.array());
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    void readRaw(BinaryRawReader reader) {
+        int[] keysArr = RawBinaryIo.readIntArray(reader);
+        long[] valuesArr = RawBinaryIo.readLongArray(reader);
+
+        keys = keysArr == null ? null : new GridIntList(keysArr);
+        values = valuesArr == null ? null : new GridLongList(valuesArr);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        StatisticsCompacted that = (StatisticsCompacted)o;
+        return Objects.equal(keys, that.keys) &&
+            Objects.equal(values, that.values);
+    }
+
+    /** {@inheritDoc} */
+    @Override public int hashCode() {
+        return Objects.hashCode(keys, values);
+    }
+
     public Long buildDuration(IStringCompactor compactor) {
         final Integer buildDurationId = compactor.getStringIdIfPresent(Statistics.BUILD_DURATION);
         if (buildDurationId == null)
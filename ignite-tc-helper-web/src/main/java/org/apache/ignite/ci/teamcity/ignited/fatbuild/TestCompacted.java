@@ -24,10 +24,22 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinaryWriter;
+import org.apache.ignite.binary.Binarylizable;
 import org.apache.ignite.ci.analysis.RunStat;
+import org.apache.ignite.ci.db.RawBinaryIo;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
@@ -41,7 +53,7 @@ import org.xerial.snappy.Snappy;
 /**
  *
  */
-public class TestCompacted {
+public class TestCompacted implements ITest, Binarylizable {
     public static final int MUTED_F = 0;
     public static final int CUR_MUTED_F = 2;
     public static final int CUR_INV_F = 4;
@@ -50,8 +62,11 @@ public class TestCompacted {
     public static final int COMPRESS_TYPE_FLAG1 = 8;
     /** true when kept gzip */
     public static final int COMPRESS_TYPE_FLAG2 = 9;
-    public static final int COMPRESS_TYPE_RFU3 = 10;
+    /** true when kept deflated with shared dictionary, dictionary id is in first bytes of details */
+    public static final int COMPRESS_TYPE_DICT_FLAG = 10;
     public static final int COMPRESS_TYPE_RFU4 = 11;
+    /** true when details are kept in {@link TestDetailsDao} instead of this object */
+    public static final int SEPARATE_DETAILS_F = 12;
 
     /** Id in this build only. Does not identify test for its history */
     private int idInBuild = -1;
@@ -71,6 +86,9 @@ public class TestCompacted {
     /** Uncompressesd/ZIP/Snappy compressed test log Details. */
     @Nullable private byte[] details;
 
+    /** Loader of details kept separately, not persisted. */
+    @Nullable private transient ITestDetailsLoader detailsLdr;
+
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(TestCompacted.class);
 
@@ -85,7 +103,90 @@ public class TestCompacted {
      * @param testOccurrence TestOccurrence.
      */
     public TestCompacted(IStringCompactor compactor, TestOccurrenceFull testOccurrence) {
-        String testOccurrenceId = testOccurrence.getId();
+        this(testOccurrence, compactor.getStringId(testOccurrence.name), compactor.getStringId(testOccurrence.status));
+    }
+
+    /**
+     * @param testOccurrence TestOccurrence.
+     * @param name Test name (compacted string).
+     * @param status Status (compacted string).
+     */
+    private TestCompacted(TestOccurrenceFull testOccurrence, int name, int status) {
+        this(testOccurrence.getId(), name, status, testOccurrence.duration, testOccurrence.muted,
+            testOccurrence.currentlyMuted, testOccurrence.currentlyInvestigated, testOccurrence.ignored);
+
+        if (testOccurrence.build != null && testOccurrence.build.getId() != null)
+            actualBuildId = testOccurrence.build.getId();
+
+        if (testOccurrence.test != null && testOccurrence.test.id != null)
+            testId = testOccurrence.test.id;
+
+        setDetails(testOccurrence.details);
+    }
+
+    /**
+     * Creates tests from occurrences, names and statuses of all tests are compacted by one call of compactor.
+     *
+     * @param compactor Compactor.
+     * @param occurrences Test occurrences.
+     */
+    public static List<TestCompacted> compactAll(IStringCompactor compactor,
+        Collection<TestOccurrenceFull> occurrences) {
+        List<String> strs = new ArrayList<>(occurrences.size() * 2);
+
+        for (TestOccurrenceFull occurrence : occurrences) {
+            strs.add(occurrence.name);
+            strs.add(occurrence.status);
+        }
+
+        int[] ids = compactor.getStringIds(strs);
+
+        List<TestCompacted> res = new ArrayList<>(occurrences.size());
+
+        int i = 0;
+
+        for (TestOccurrenceFull occurrence : occurrences) {
+            res.add(new TestCompacted(occurrence, ids[i], ids[i + 1]));
+
+            i += 2;
+        }
+
+        return res;
+    }
+
+    /**
+     * Creates test from attributes of test occurrence, used by streaming parser.
+     *
+     * @param compactor Compactor.
+     * @param testOccurrenceId Test occurrence id, e.g. 'id:15666,build:(id:1093907)'.
+     * @param name Test name.
+     * @param status Status.
+     * @param duration Duration.
+     * @param muted Muted.
+     * @param currentlyMuted Currently muted.
+     * @param currentlyInvestigated Currently investigated.
+     * @param ignored Ignored.
+     */
+    TestCompacted(IStringCompactor compactor, String testOccurrenceId, String name, String status,
+        Integer duration, Boolean muted, Boolean currentlyMuted, Boolean currentlyInvestigated, Boolean ignored) {
+        this(testOccurrenceId, compactor.getStringId(name), compactor.getStringId(status), duration, muted,
+            currentlyMuted, currentlyInvestigated, ignored);
+    }
+
+    /**
+     * Creates test from attributes of test occurrence with name and status already compacted.
+     *
+     * @param testOccurrenceId Test occurrence id, e.g. 'id:15666,build:(id:1093907)'.
+     * @param name Test name (compacted string).
+     * @param status Status (compacted string).
+     * @param duration Duration.
+     * @param muted Muted.
+     * @param currentlyMuted Currently muted.
+     * @param currentlyInvestigated Currently investigated.
+     * @param ignored Ignored.
+     */
+    TestCompacted(String testOccurrenceId, int name, int status, Integer duration, Boolean muted,
+        Boolean currentlyMuted, Boolean currentlyInvestigated, Boolean ignored) {
         if (!Strings.isNullOrEmpty(testOccurrenceId)) {
             try {
                 final RunStat.TestId testId = RunStat.extractFullId(testOccurrenceId);
@@ -96,22 +197,119 @@ public class TestCompacted {
             }
         }
 
-        name = compactor.getStringId(testOccurrence.name);
-        status = compactor.getStringId(testOccurrence.status);
-        duration = testOccurrence.duration == null ? -1 : testOccurrence.duration;
+        this.name = name;
+        this.status = status;
+        this.duration = duration == null ? -1 : duration;
 
-        setFlag(MUTED_F, testOccurrence.muted);
-        setFlag(CUR_MUTED_F, testOccurrence.currentlyMuted);
-        setFlag(CUR_INV_F, testOccurrence.currentlyInvestigated);
-        setFlag(IGNORED_F, testOccurrence.ignored);
+        setFlag(MUTED_F, muted);
+        setFlag(CUR_MUTED_F, currentlyMuted);
+        setFlag(CUR_INV_F, currentlyInvestigated);
+        setFlag(IGNORED_F, ignored);
+    }
 
-        if (testOccurrence.build != null && testOccurrence.build.getId() != null)
-            actualBuildId = testOccurrence.build.getId();
+    /**
+     * Creates test from columnar data of fat build.
+     *
+     * @param idInBuild Id in build.
+     * @param name Test name (compacted string).
+     * @param status Status (compacted string).
+     * @param duration Duration, negative if unknown.
+     * @param flags Flags bits, see {@link #flagsBits()}.
+     * @param testId Test global id.
+     * @param actualBuildId Actual build id.
+     * @param details Details in compressed form.
+     */
+    TestCompacted(int idInBuild, int name, int status, int duration, int flags, long testId, int actualBuildId,
+        @Nullable byte[] details) {
+        this.idInBuild = idInBuild;
+        this.name = name;
+        this.status = status;
+        this.duration = duration;
+        this.flags = BitSet.valueOf(new long[] {flags & 0xFFFFFFFFL});
+        this.testId = testId;
+        this.actualBuildId = actualBuildId;
+        this.details = details;
+    }
 
-        if (testOccurrence.test != null && testOccurrence.test.id != null)
-            testId = testOccurrence.test.id;
+    /**
+     * @return All flags packed into int, bit offsets are the same as in flags bitset.
+     */
+    int flagsBits() {
+        long[] words = flags.toLongArray();
 
-        setDetails(testOccurrence.details);
+        return words.length == 0 ? 0 : (int)words[0];
+    }
+
+    /**
+     * @return Duration, negative if unknown.
+     */
+    int duration() {
+        return duration;
+    }
+
+    /**
+     * @return Test global id.
+     */
+    long testId() {
+        return testId;
+    }
+
+    /**
+     * @return Actual build id.
+     */
+    int actualBuildId() {
+        return actualBuildId;
+    }
+
+    /**
+     * @return Details in compressed form.
+     */
+    @Nullable byte[] details() {
+        return details;
+    }
+
+    /**
+     * @param detailsLdr Loader of details kept separately.
+     */
+    void detailsLoader(@Nullable ITestDetailsLoader detailsLdr) {
+        this.detailsLdr = detailsLdr;
+    }
+
+    /**
+     * @return {@code True} if details are kept in {@link TestDetailsDao}.
+     */
+    boolean isSeparateDetails() {
+        return flags.get(SEPARATE_DETAILS_F);
+    }
+
+    /**
+     * @return {@code True} if details are compressed by shared dictionary.
+     */
+    boolean isDictionaryCompressed() {
+        return flags.get(COMPRESS_TYPE_DICT_FLAG);
+    }
+
+    /**
+     * @param name Test name (compacted string).
+     * @param status Status (compacted string).
+     */
+    void nameAndStatus(int name, int status) {
+        this.name = name;
+        this.status = status;
+    }
+
+    /**
+     * @param actualBuildId Actual build id.
+     */
+    void actualBuildId(int actualBuildId) {
+        this.actualBuildId = actualBuildId;
+    }
+
+    /**
+     * @param testId Test global id.
+     */
+    void testId(long testId) {
+        this.testId = testId;
     }
 
     private void setFlag(int off, Boolean val) {
@@ -182,33 +380,72 @@ public class TestCompacted {
      *
      */
     @Nullable public String getDetailsText() {
-        if (details == null)
+        byte[] dtls = details;
+
+        if (dtls == null && isSeparateDetails() && detailsLdr != null)
+            dtls = detailsLdr.loadDetails(new int[] {idInBuild}).get(idInBuild);
+
+        if (dtls == null)
             return "";
 
+        byte[] uncompressed = uncompress(dtls);
+
+        return uncompressed == null ? null : new String(uncompressed, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Uncompressed details kept in this object, null if there are no details or details can't be decoded.
+     */
+    @Nullable byte[] uncompressedDetails() {
+        return details == null ? null : uncompress(details);
+    }
+
+    /**
+     * @param dtls Details compressed according to compress type flags.
+     * @return Uncompressed details or null if details can't be decoded.
+     */
+    @Nullable private byte[] uncompress(byte[] dtls) {
+        if (flags.get(COMPRESS_TYPE_DICT_FLAG)) {
+            int dictId = DetailsDictionary.dictionaryId(dtls);
+            DetailsDictionary dict = detailsLdr == null ? null : detailsLdr.dictionary(dictId);
+
+            if (dict == null) {
+                logger.error("Dictionary [" + dictId + "] is not available to uncompress test details");
+
+                return null;
+            }
+
+            try {
+                return dict.decompress(dtls);
+            } catch (DataFormatException e) {
+                logger.error("Dictionary uncompress failed: " + e.getMessage(), e);
+                return null;
+            }
+        }
+
         final boolean flag1 = flags.get(COMPRESS_TYPE_FLAG1);
         final boolean flag2 = flags.get(COMPRESS_TYPE_FLAG2);
         if(!flag1 && !flag2) {
             try {
-                byte[] uncompressed = Snappy.uncompress(details);
-                return new String(uncompressed, StandardCharsets.UTF_8);
+                return Snappy.uncompress(dtls);
             } catch (IOException e) {
                 logger.error("Snappy.uncompress failed: " + e.getMessage(), e);
                 return null;
             }
         } else if(flag1 && !flag2)
-            return new String(details, StandardCharsets.UTF_8);
+            return dtls;
         else if (!flag1 && flag2) {
             try {
-                final ByteArrayInputStream in = new ByteArrayInputStream(details);
+                final ByteArrayInputStream in = new ByteArrayInputStream(dtls);
                 ByteArrayOutputStream bos = new ByteArrayOutputStream();
                 try (final GZIPInputStream gzi = new GZIPInputStream(in)) {
-                    byte[] outbuf = new byte[details.length];
+                    byte[] outbuf = new byte[dtls.length];
                     int len;
                     while ((len = gzi.read(outbuf, 0, outbuf.length)) != -1)
                         bos.write(outbuf, 0, len);
                 }
 
-                return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+                return bos.toByteArray();
             } catch (Exception e) {
                 logger.error("GZip.uncompress failed: " + e.getMessage(), e);
                 return null;
@@ -217,6 +454,19 @@ public class TestCompacted {
             return null;
     }
 
+    /**
+     * Replaces details with ones compressed by shared dictionary.
+     *
+     * @param compressed Details compressed by {@link DetailsDictionary#compress(byte[])}.
+     */
+    void dictionaryDetails(byte[] compressed) {
+        details = compressed;
+
+        flags.set(COMPRESS_TYPE_FLAG1, false);
+        flags.set(COMPRESS_TYPE_FLAG2, false);
+        flags.set(COMPRESS_TYPE_DICT_FLAG, true);
+    }
+
     public void setDetails(String dtlsStr) {
         if (Strings.isNullOrEmpty(dtlsStr)) {
             this.details = null;
@@ -256,6 +506,7 @@ public class TestCompacted {
 
         flags.set(COMPRESS_TYPE_FLAG1, true);
         flags.set(COMPRESS_TYPE_FLAG2, false);
+        flags.set(COMPRESS_TYPE_DICT_FLAG, false);
         //uncompressed
         details = uncompressed;
 
@@ -285,7 +536,8 @@ public class TestCompacted {
         return getFlag(MUTED_F);
     }
 
-    private int idInBuild() {
+    /** {@inheritDoc} */
+    @Override public int idInBuild() {
         return idInBuild;
     }
 
@@ -303,12 +555,79 @@ public class TestCompacted {
             testId == compacted.testId &&
             actualBuildId == compacted.actualBuildId &&
             Objects.equal(flags, compacted.flags) &&
-            Objects.equal(details, compacted.details);
+            Arrays.equals(details, compacted.details);
     }
 
     /** {@inheritDoc} */
     @Override public int hashCode() {
-        return Objects.hashCode(idInBuild, name, status, duration, flags, testId, actualBuildId, details);
+        return Objects.hashCode(idInBuild, name, status, duration, flags, testId, actualBuildId,
+            Arrays.hashCode(details));
+    }
+
+    /**
+     * Test is written by named fields, because it may be nested into other objects, raw data of nested objects breaks
+     * reading of objects written by reflection. Compact layout is used when tests are embedded into fat build, see
+     * {@link #writeRaw(BinaryRawWriter)}.
+     *
+     * {@inheritDoc}
+     */
+    @Override public void writeBinary(BinaryWriter writer) throws BinaryObjectException {
+        writer.writeInt("idInBuild", idInBuild);
+        writer.writeInt("name", name);
+        writer.writeInt("status", status);
+        writer.writeInt("duration", duration);
+        writer.writeInt("flagsBits", flagsBits());
+        writer.writeLong("testId", testId);
+        writer.writeInt("actualBuildId", actualBuildId);
+        writer.writeByteArray("details", details);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void readBinary(BinaryReader reader) throws BinaryObjectException {
+        idInBuild = reader.readInt("idInBuild");
+        name = reader.readInt("name");
+        status = reader.readInt("status");
+        duration = reader.readInt("duration");
+
+        // Tests written by reflection have bitset object instead of packed flags.
+        BitSet legacyFlags = reader.readObject("flags");
+        flags = legacyFlags != null
+            ? legacyFlags
+            : BitSet.valueOf(new long[] {reader.readInt("flagsBits") & 0xFFFFFFFFL});
+
+        testId = reader.readLong("testId");
+        actualBuildId = reader.readInt("actualBuildId");
+        details = reader.readByteArray("details");
+    }
+
+    /**
+     * Writes test without any headers, used for tests nested into other entities as well.
+     *
+     * @param writer Writer.
+     */
+    void writeRaw(BinaryRawWriter writer) {
+        RawBinaryIo.writeVarInt(writer, idInBuild);
+        RawBinaryIo.writeVarInt(writer, name);
+        RawBinaryIo.writeVarInt(writer, status);
+        RawBinaryIo.writeVarInt(writer, duration);
+        RawBinaryIo.writeVarInt(writer, flagsBits());
+        writer.writeLong(testId);
+        RawBinaryIo.writeVarInt(writer, actualBuildId);
+        writer.writeByteArray(details);
+    }
+
+    /**
+     * @param reader Reader.
+     */
+    void readRaw(BinaryRawReader reader) {
+        idInBuild = RawBinaryIo.readVarInt(reader);
+        name = RawBinaryIo.readVarInt(reader);
+        status = RawBinaryIo.readVarInt(reader);
+        duration = RawBinaryIo.readVarInt(reader);
+        flags = BitSet.valueOf(new long[] {RawBinaryIo.readVarInt(reader) & 0xFFFFFFFFL});
+        testId = reader.readLong();
+        actualBuildId = RawBinaryIo.readVarInt(reader);
+        details = reader.readByteArray();
     }
 
     public boolean isFailedButNotMuted(IStringCompactor compactor) {
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.Preconditions;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.TcHelperDb;
+import org.apache.ignite.ci.di.AutoProfiling;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Storage of test details (failure stack traces). Details are the biggest part of test data, but these are required
+ * only for failures rendered, so details are not kept in fat build.
+ */
+public class TestDetailsDao {
+    /** Cache name. */
+    public static final String TEAMCITY_TEST_DETAILS_CACHE_NAME = "teamcityTestDetails";
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** Details cache: (server, build, test ID in build) -> compressed details. */
+    private IgniteCache<TestDetailsKey, byte[]> detailsCache;
+
+    /** Shared dictionaries. */
+    @Inject private TestDetailsDictionaries dictionaries;
+
+    /**
+     *
+     */
+    public synchronized void init() {
+        if (detailsCache != null)
+            return;
+
+        detailsCache = igniteProvider.get().getOrCreateCache(
+            TcHelperDb.getCacheV2Config(TEAMCITY_TEST_DETAILS_CACHE_NAME));
+
+        dictionaries.init();
+    }
+
+    /**
+     * Recompresses details of tests, which are going to be saved separately, by shared dictionary of server. Should be
+     * called before tests are added to the build, because compression type is kept in test flags.
+     *
+     * @param srvId Server id.
+     * @param tests Tests of the build.
+     */
+    @AutoProfiling
+    public void compress(int srvId, List<TestCompacted> tests) {
+        for (TestCompacted test : tests) {
+            if (test.idInBuild() >= 0 && test.details() != null && !test.isDictionaryCompressed())
+                dictionaries.compress(srvId, test);
+        }
+    }
+
+    /**
+     * Saves details of tests, which have it, by one cache operation. Details of previous version of the build, which
+     * are neither overwritten nor still referenced by tests copied from that version, are removed.
+     *
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @param tests Tests of the build.
+     * @param prevBuild Previous version of the build.
+     */
+    @AutoProfiling
+    public void saveAll(int srvId, int buildId, List<TestCompacted> tests, @Nullable FatBuildCompacted prevBuild) {
+        Preconditions.checkNotNull(detailsCache, "init() was not called");
+
+        Map<TestDetailsKey, byte[]> entries = new TreeMap<>();
+        Set<Integer> kept = new HashSet<>();
+
+        for (TestCompacted test : tests) {
+            if (test.idInBuild() < 0)
+                continue;
+
+            byte[] details = test.details();
+
+            if (details != null)
+                entries.put(new TestDetailsKey(srvId, buildId, test.idInBuild()), details);
+            else if (test.isSeparateDetails())
+                kept.add(test.idInBuild()); // Copied from previous version, details are still in the cache.
+        }
+
+        if (!entries.isEmpty())
+            detailsCache.putAll(entries);
+
+        if (prevBuild != null) {
+            Set<TestDetailsKey> stale = new TreeSet<>();
+
+            for (int testIdInBuild : prevBuild.separateDetailsTestIds()) {
+                if (kept.contains(testIdInBuild))
+                    continue;
+
+                TestDetailsKey key = new TestDetailsKey(srvId, buildId, testIdInBuild);
+
+                if (!entries.containsKey(key))
+                    stale.add(key);
+            }
+
+            if (!stale.isEmpty())
+                detailsCache.removeAll(stale);
+        }
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @param testIdsInBuild Test IDs in build.
+     * @return Test ID in build -> compressed details, tests without details are absent in result.
+     */
+    @AutoProfiling
+    public Map<Integer, byte[]> getAll(int srvId, int buildId, int[] testIdsInBuild) {
+        Preconditions.checkNotNull(detailsCache, "init() was not called");
+
+        Set<TestDetailsKey> keys = new TreeSet<>();
+
+        for (int testIdInBuild : testIdsInBuild)
+            keys.add(new TestDetailsKey(srvId, buildId, testIdInBuild));
+
+        Map<Integer, byte[]> res = new HashMap<>();
+
+        detailsCache.getAll(keys).forEach((key, details) -> res.put(key.testIdInBuild(), details));
+
+        return res;
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @return Loader of details for tests of the build.
+     */
+    public ITestDetailsLoader loader(int srvId, int buildId) {
+        return new ITestDetailsLoader() {
+            @Override public Map<Integer, byte[]> loadDetails(int[] testIdsInBuild) {
+                return getAll(srvId, buildId, testIdsInBuild);
+            }
+
+            @Nullable @Override public DetailsDictionary dictionary(int dictId) {
+                return dictionaries.dictionary(srvId, dictId);
+            }
+        };
+    }
+}
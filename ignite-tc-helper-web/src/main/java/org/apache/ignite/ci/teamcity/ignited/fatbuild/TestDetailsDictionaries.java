@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.Preconditions;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.concurrent.GuardedBy;
+import javax.cache.Cache;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.TcHelperDb;
+import org.apache.ignite.ci.di.AutoProfiling;
+import org.apache.ignite.ci.di.MonitoredTask;
+import org.apache.ignite.ci.di.scheduler.IScheduler;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shared dictionaries for test details compression, one current dictionary for each server. Stack traces of tests
+ * contain the same frames, so dictionary made from frequent lines of recent details makes compression of short
+ * details much better. Dictionary is rebuilt periodically, previous dictionaries are kept for decoding.
+ */
+public class TestDetailsDictionaries {
+    /** Cache name. */
+    public static final String TEAMCITY_TEST_DETAILS_DICT_CACHE_NAME = "teamcityTestDetailsDict";
+
+    /** Details kept in sample for each server. */
+    public static final int SAMPLE_SIZE = 500;
+
+    /** Minimal count of details in sample to train dictionary. */
+    public static final int MIN_SAMPLE_SIZE = 50;
+
+    /** Period of dictionary rebuild. */
+    public static final int REBUILD_PERIOD_HOURS = 24;
+
+    /** Maximal bytes of one details taken into sample. */
+    private static final int MAX_SAMPLE_DETAILS_BYTES = 16 * 1024;
+
+    /** Minimal count of details in sample having fragment to include the fragment into dictionary. */
+    private static final int MIN_FRAGMENT_OCCURRENCES = 2;
+
+    /** Minimal length of fragment to be included into dictionary, deflate can't use shorter matches efficiently. */
+    private static final int MIN_FRAGMENT_LEN = 4;
+
+    /** Maximal count of fragments considered for dictionary. */
+    private static final int MAX_CANDIDATES = 5000;
+
+    /** Splits details into lines and stack frames. */
+    private static final Pattern FRAME_SPLIT = Pattern.compile("\\r?\\n|(?=\\sat\\s)");
+
+    /** Splits line into words. */
+    private static final Pattern WORD_SPLIT = Pattern.compile("\\s+");
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** Scheduler. */
+    @Inject private IScheduler scheduler;
+
+    /** Dictionaries cache, key is dictionary ID combined with server ID. */
+    private IgniteCache<Long, DetailsDictionary> dictCache;
+
+    /** Server ID -> current dictionary. */
+    private final ConcurrentMap<Integer, DetailsDictionary> current = new ConcurrentHashMap<>();
+
+    /** Cache key -> dictionary loaded for decoding. */
+    private final ConcurrentMap<Long, DetailsDictionary> loaded = new ConcurrentHashMap<>();
+
+    /** Server ID -> sample of recent details. */
+    private final ConcurrentMap<Integer, Sample> samples = new ConcurrentHashMap<>();
+
+    /** Server ID -> compression statistics of details since start. */
+    private final ConcurrentMap<Integer, CompressionStatistics> stats = new ConcurrentHashMap<>();
+
+    /**
+     *
+     */
+    public synchronized void init() {
+        if (dictCache != null)
+            return;
+
+        dictCache = igniteProvider.get().getOrCreateCache(
+            TcHelperDb.getCacheV2Config(TEAMCITY_TEST_DETAILS_DICT_CACHE_NAME));
+
+        for (Cache.Entry<Long, DetailsDictionary> entry : dictCache) {
+            DetailsDictionary dict = entry.getValue();
+
+            loaded.put(entry.getKey(), dict);
+            current.merge((int)(entry.getKey() >> 32), dict, (d1, d2) -> d1.id() > d2.id() ? d1 : d2);
+        }
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param dictId Dictionary id.
+     */
+    private static long cacheKey(int srvId, int dictId) {
+        return (long)dictId | (long)srvId << 32;
+    }
+
+    /**
+     * @param srvId Server id.
+     * @return Dictionary to be used for compression of new details.
+     */
+    @Nullable public DetailsDictionary current(int srvId) {
+        return current.get(srvId);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param dictId Dictionary id.
+     * @return Dictionary to decode details or null if dictionary is not found.
+     */
+    @Nullable public DetailsDictionary dictionary(int srvId, int dictId) {
+        if (dictId < 0)
+            return null;
+
+        long key = cacheKey(srvId, dictId);
+        DetailsDictionary dict = loaded.get(key);
+
+        if (dict != null)
+            return dict;
+
+        Preconditions.checkNotNull(dictCache, "init() was not called");
+
+        dict = dictCache.get(key);
+
+        if (dict != null)
+            loaded.put(key, dict);
+
+        return dict;
+    }
+
+    /**
+     * Compresses details by current dictionary of server, if it gives better result than per record compression.
+     *
+     * @param srvId Server id.
+     * @param test Test with details compressed per record.
+     */
+    public void compress(int srvId, TestCompacted test) {
+        byte[] perRecord = test.details();
+        byte[] raw = test.uncompressedDetails();
+
+        if (perRecord == null || raw == null)
+            return;
+
+        Sample sample = samples.computeIfAbsent(srvId, k -> new Sample());
+
+        sample.add(raw, perRecord.length);
+
+        DetailsDictionary dict = current(srvId);
+        long stored = perRecord.length;
+
+        if (dict != null) {
+            byte[] compressed = dict.compress(raw);
+
+            if (compressed.length < perRecord.length) {
+                test.dictionaryDetails(compressed);
+
+                stored = compressed.length;
+            }
+        }
+
+        stats.computeIfAbsent(srvId, k -> new CompressionStatistics()).add(raw.length, perRecord.length, stored);
+
+        // Rebuild is requested only when it can succeed, otherwise the first dictionary would wait for whole period.
+        if (sample.size() >= MIN_SAMPLE_SIZE) {
+            scheduler.sheduleNamed(TestDetailsDictionaries.class.getSimpleName() + ".rebuild." + srvId,
+                () -> rebuild(srvId), REBUILD_PERIOD_HOURS, TimeUnit.HOURS);
+        }
+    }
+
+    /**
+     * Trains new dictionary from recent details sample and makes it current for the server.
+     *
+     * @param srvId Server id.
+     */
+    @SuppressWarnings("WeakerAccess")
+    @MonitoredTask(name = "Rebuild test details dictionary", nameExtArgIndex = 0)
+    @AutoProfiling
+    protected String rebuild(int srvId) {
+        Preconditions.checkNotNull(dictCache, "init() was not called");
+
+        Sample sample = samples.get(srvId);
+        List<byte[]> raws = new ArrayList<>();
+        long perRecordBytes = sample == null ? 0 : sample.copy(raws);
+
+        if (raws.size() < MIN_SAMPLE_SIZE)
+            return "Sample is too small: " + raws.size();
+
+        DetailsDictionary prev = current(srvId);
+        int id = prev == null ? 1 : prev.id() + 1;
+
+        if (id > DetailsDictionary.MAX_ID)
+            return "Dictionary IDs are exhausted";
+
+        DetailsDictionary dict = new DetailsDictionary(id, train(raws));
+
+        long rawBytes = 0;
+        long dictBytes = 0;
+
+        for (byte[] raw : raws) {
+            rawBytes += raw.length;
+            dictBytes += dict.compress(raw).length;
+        }
+
+        dict.sampleStatistics(rawBytes, perRecordBytes, dictBytes);
+
+        long key = cacheKey(srvId, id);
+
+        dictCache.put(key, dict);
+        loaded.put(key, dict);
+        current.put(srvId, dict);
+
+        return "Dictionary " + id + " created, size " + dict.size() + ", sample " + rawBytes + " bytes, "
+            + "per record " + perRecordBytes + " bytes, with dictionary " + dictBytes + " bytes";
+    }
+
+    /**
+     * Makes dictionary from fragments which are frequent in sample. Fragments are lines (or stack frames, if frames
+     * are not on separate lines) and words of details. Fragments giving more savings are placed closer to the end of
+     * dictionary, because deflate encodes closer matches by shorter codes.
+     *
+     * @param sample Raw details.
+     * @return Dictionary data.
+     */
+    static byte[] train(List<byte[]> sample) {
+        Map<String, Integer> occurrences = new HashMap<>();
+
+        for (byte[] raw : sample) {
+            Set<String> fragments = new HashSet<>();
+
+            for (String line : FRAME_SPLIT.split(new String(raw, StandardCharsets.UTF_8))) {
+                if (line.length() >= MIN_FRAGMENT_LEN)
+                    fragments.add(line);
+
+                for (String word : WORD_SPLIT.split(line)) {
+                    if (word.length() >= MIN_FRAGMENT_LEN)
+                        fragments.add(word);
+                }
+            }
+
+            fragments.forEach(fragment -> occurrences.merge(fragment, 1, Integer::sum));
+        }
+
+        List<String> candidates = occurrences.entrySet().stream()
+            .filter(e -> e.getValue() >= MIN_FRAGMENT_OCCURRENCES)
+            .sorted(Comparator.comparingLong(
+                (Map.Entry<String, Integer> e) -> (long)e.getKey().length() * (e.getValue() - 1)).reversed())
+            .limit(MAX_CANDIDATES)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+
+        List<String> selected = new ArrayList<>();
+        StringBuilder selectedText = new StringBuilder();
+        int size = 0;
+
+        for (String candidate : candidates) {
+            // Fragment already present in dictionary as part of longer one.
+            if (selectedText.indexOf(candidate) >= 0)
+                continue;
+
+            int len = candidate.getBytes(StandardCharsets.UTF_8).length + 1;
+
+            if (size + len > DetailsDictionary.MAX_SIZE)
+                continue;
+
+            selected.add(candidate);
+            selectedText.append(candidate).append('\n');
+            size += len;
+        }
+
+        Collections.reverse(selected);
+
+        return String.join("\n", selected).concat("\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Server ID -> compression statistics since start.
+     */
+    public Map<Integer, CompressionStatistics> statistics() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * @return Server ID -> current dictionary.
+     */
+    public Map<Integer, DetailsDictionary> currentDictionaries() {
+        return Collections.unmodifiableMap(current);
+    }
+
+    /**
+     * Compression statistics of details.
+     */
+    public static class CompressionStatistics {
+        /** Count of details. */
+        private final AtomicLong cnt = new AtomicLong();
+
+        /** Raw bytes. */
+        private final AtomicLong rawBytes = new AtomicLong();
+
+        /** Bytes compressed per record. */
+        private final AtomicLong perRecordBytes = new AtomicLong();
+
+        /** Bytes stored, compressed with dictionary if it was better. */
+        private final AtomicLong storedBytes = new AtomicLong();
+
+        /**
+         * @param raw Raw bytes.
+         * @param perRecord Bytes compressed per record.
+         * @param stored Bytes stored.
+         */
+        void add(long raw, long perRecord, long stored) {
+            cnt.incrementAndGet();
+            rawBytes.addAndGet(raw);
+            perRecordBytes.addAndGet(perRecord);
+            storedBytes.addAndGet(stored);
+        }
+
+        /** */
+        public long count() {
+            return cnt.get();
+        }
+
+        /** */
+        public long rawBytes() {
+            return rawBytes.get();
+        }
+
+        /** */
+        public long perRecordBytes() {
+            return perRecordBytes.get();
+        }
+
+        /** */
+        public long storedBytes() {
+            return storedBytes.get();
+        }
+    }
+
+    /**
+     * Recent details, ring buffer.
+     */
+    private static class Sample {
+        /** Raw details. */
+        @GuardedBy("this")
+        private final byte[][] raws = new byte[SAMPLE_SIZE][];
+
+        /** Sizes of details compressed per record. */
+        @GuardedBy("this")
+        private final int[] perRecordSizes = new int[SAMPLE_SIZE];
+
+        /** Count of details added. */
+        @GuardedBy("this")
+        private long added;
+
+        /**
+         * @param raw Raw details.
+         * @param perRecordSize Size of details compressed per record.
+         */
+        synchronized void add(byte[] raw, int perRecordSize) {
+            if (raw.length > MAX_SAMPLE_DETAILS_BYTES)
+                return;
+
+            int idx = (int)(added++ % SAMPLE_SIZE);
+
+            raws[idx] = raw;
+            perRecordSizes[idx] = perRecordSize;
+        }
+
+        /**
+         * @return Count of details in sample.
+         */
+        synchronized int size() {
+            return (int)Math.min(added, SAMPLE_SIZE);
+        }
+
+        /**
+         * @param res Raw details to fill.
+         * @return Total size of details compressed per record.
+         */
+        synchronized long copy(List<byte[]> res) {
+            long perRecord = 0;
+
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                if (raws[i] != null) {
+                    res.add(raws[i]);
+                    perRecord += perRecordSizes[i];
+                }
+            }
+
+            return perRecord;
+        }
+    }
+}
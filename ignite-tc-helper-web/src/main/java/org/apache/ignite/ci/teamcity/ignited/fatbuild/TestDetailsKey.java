@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.MoreObjects;
+import org.apache.ignite.ci.db.Persisted;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Key of test details in {@link TestDetailsDao} cache.
+ */
+@Persisted
+public class TestDetailsKey implements Comparable<TestDetailsKey> {
+    /** Server ID. */
+    private int srvId;
+
+    /** Build ID. */
+    private int buildId;
+
+    /** Test ID in build. */
+    private int testIdInBuild;
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @param testIdInBuild Test id in build.
+     */
+    public TestDetailsKey(int srvId, int buildId, int testIdInBuild) {
+        this.srvId = srvId;
+        this.buildId = buildId;
+        this.testIdInBuild = testIdInBuild;
+    }
+
+    /**
+     * @return Test ID in build.
+     */
+    public int testIdInBuild() {
+        return testIdInBuild;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int compareTo(@NotNull TestDetailsKey o) {
+        int res = Integer.compare(srvId, o.srvId);
+
+        if (res != 0)
+            return res;
+
+        res = Integer.compare(buildId, o.buildId);
+
+        return res != 0 ? res : Integer.compare(testIdInBuild, o.testIdInBuild);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        TestDetailsKey key = (TestDetailsKey)o;
+        return srvId == key.srvId &&
+            buildId == key.buildId &&
+            testIdInBuild == key.testIdInBuild;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int hashCode() {
+        return 31 * (31 * srvId + buildId) + testIdInBuild;
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("srvId", srvId)
+            .add("buildId", buildId)
+            .add("testIdInBuild", testIdInBuild)
+            .toString();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.ignite.internal.util.GridIntList;
+
+/**
+ * Delta of test names sequence against reference sequence. Delta is a list of operations, each operation is
+ * {@code [copy count, skip count, insert count, inserted names...]}: copy names from reference, skip names of
+ * reference, insert new names.
+ */
+class TestNamesDelta {
+    /** Max distance of nearest match lookup, bigger gaps are found using positions of names. */
+    private static final int RESYNC_WINDOW = 32;
+
+    /**
+     * @param ref Reference names.
+     * @param names Names to encode.
+     * @return Delta, {@link #decode(int[], int[])} of the delta returns names.
+     */
+    static int[] encode(int[] ref, int[] names) {
+        Map<Integer, int[]> refPositions = positions(ref);
+        Map<Integer, int[]> namesPositions = positions(names);
+
+        GridIntList ops = new GridIntList();
+        GridIntList inserted = new GridIntList();
+
+        int i = 0;
+        int j = 0;
+
+        while (i < ref.length || j < names.length) {
+            int copy = 0;
+
+            while (matches(ref, i, names, j)) {
+                i++;
+                j++;
+                copy++;
+            }
+
+            int skip = 0;
+
+            inserted.clear();
+
+            while ((i < ref.length || j < names.length) && !matches(ref, i, names, j)) {
+                if (i >= ref.length) {
+                    inserted.add(names[j++]);
+
+                    continue;
+                }
+
+                if (j >= names.length) {
+                    i++;
+                    skip++;
+
+                    continue;
+                }
+
+                int resync = nearestMatch(ref, i, names, j);
+
+                if (resync >= 0) {
+                    // Replaced names in small window: skip names of reference and insert names till the match.
+                    int dj = resync & 0xFFFF;
+
+                    skip += resync >>> 16;
+                    i += resync >>> 16;
+
+                    for (int c = 0; c < dj; c++)
+                        inserted.add(names[j++]);
+
+                    continue;
+                }
+
+                // Either next name was moved closer (skip reference names) or was added (insert names till next
+                // reference name), shorter operation is chosen.
+                int refPos = nextPosition(refPositions, names[j], i);
+                int namesPos = nextPosition(namesPositions, ref[i], j);
+
+                if (refPos < 0 && namesPos < 0) {
+                    i++;
+                    skip++;
+                    inserted.add(names[j++]);
+                }
+                else if (namesPos < 0 || (refPos >= 0 && refPos - i <= namesPos - j)) {
+                    skip += refPos - i;
+                    i = refPos;
+                }
+                else {
+                    while (j < namesPos)
+                        inserted.add(names[j++]);
+                }
+            }
+
+            ops.add(copy);
+            ops.add(skip);
+            ops.add(inserted.size());
+            ops.addAll(inserted);
+        }
+
+        return ops.array();
+    }
+
+    /**
+     * @param ref Reference names.
+     * @param delta Delta.
+     * @return Names.
+     * @throws IllegalArgumentException If delta doesn't match reference.
+     */
+    static int[] decode(int[] ref, int[] delta) {
+        GridIntList res = new GridIntList(Math.max(ref.length, 16));
+
+        int i = 0;
+        int k = 0;
+
+        while (k < delta.length) {
+            if (k + 3 > delta.length)
+                throw new IllegalArgumentException("Malformed delta of test names");
+
+            int copy = delta[k++];
+            int skip = delta[k++];
+            int insert = delta[k++];
+
+            if (copy < 0 || skip < 0 || insert < 0 || i + copy + skip > ref.length || k + insert > delta.length)
+                throw new IllegalArgumentException("Delta of test names doesn't match reference");
+
+            for (int c = 0; c < copy; c++)
+                res.add(ref[i++]);
+
+            i += skip;
+
+            for (int c = 0; c < insert; c++)
+                res.add(delta[k++]);
+        }
+
+        return res.array();
+    }
+
+    /**
+     * Finds nearest position where names match again.
+     *
+     * @param ref Reference names.
+     * @param i Position in reference.
+     * @param names Names.
+     * @param j Position in names.
+     * @return Offsets of match packed as {@code (refOffset << 16) | namesOffset}, {@code -1} if there is no match in
+     * window.
+     */
+    private static int nearestMatch(int[] ref, int i, int[] names, int j) {
+        for (int k = 1; k <= RESYNC_WINDOW; k++) {
+            for (int di = 0; di <= k; di++) {
+                if (matches(ref, i + di, names, j + k - di))
+                    return di << 16 | (k - di);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param ref Reference names.
+     * @param i Position in reference.
+     * @param names Names.
+     * @param j Position in names.
+     */
+    private static boolean matches(int[] ref, int i, int[] names, int j) {
+        return i < ref.length && j < names.length && ref[i] == names[j];
+    }
+
+    /**
+     * @param names Names.
+     * @return Name -> positions of name in ascending order.
+     */
+    private static Map<Integer, int[]> positions(int[] names) {
+        Map<Integer, GridIntList> lists = new HashMap<>();
+
+        for (int i = 0; i < names.length; i++)
+            lists.computeIfAbsent(names[i], k -> new GridIntList(1)).add(i);
+
+        Map<Integer, int[]> res = new HashMap<>(lists.size() * 2);
+
+        lists.forEach((name, list) -> res.put(name, list.array()));
+
+        return res;
+    }
+
+    /**
+     * @param positions Name -> positions.
+     * @param name Name.
+     * @param from Minimal position, inclusive.
+     * @return Position of name, {@code -1} if there is no such name at or after minimal position.
+     */
+    private static int nextPosition(Map<Integer, int[]> positions, int name, int from) {
+        int[] pos = positions.get(name);
+
+        if (pos == null)
+            return -1;
+
+        int idx = Arrays.binarySearch(pos, from);
+
+        if (idx < 0)
+            idx = -(idx + 1);
+
+        return idx < pos.length ? pos[idx] : -1;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.TcHelperDb;
+import org.apache.ignite.ci.di.AutoProfiling;
+import org.apache.ignite.ci.tcbot.TcBotSystemProperties;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefIndex;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Storage of reference test names. Consecutive builds of the same suite and branch usually run the same tests, so
+ * names of such builds are kept as delta against names of reference build. Reference names are saved as immutable
+ * snapshot, so later update of reference build doesn't affect builds depending on it.
+ */
+public class TestNamesRefDao {
+    /** Cache name. */
+    public static final String TEAMCITY_TEST_NAMES_REF_CACHE_NAME = "teamcityTestNamesRef";
+
+    /** Max size of delta relative to size of names, new reference is created for bigger delta. */
+    private static final int MAX_DELTA_RATIO = 4;
+
+    /**
+     * Max count of current references kept for each server. Reference of a suite and branch not built recently is
+     * evicted, next build of it becomes new reference.
+     */
+    private static final int MAX_CURRENT_REFS = 2048;
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** References cache: (server, reference build) -> test names. */
+    private IgniteCache<Long, int[]> refsCache;
+
+    /** Server ID -> current reference for each suite: (build type, branch) -> reference. */
+    private final ConcurrentMap<Integer, Cache<Long, Reference>> current = new ConcurrentHashMap<>();
+
+    /** Recently used reference names. */
+    private final Cache<Long, int[]> loaded = CacheBuilder.newBuilder().maximumSize(512).build();
+
+    /**
+     *
+     */
+    public synchronized void init() {
+        if (refsCache != null)
+            return;
+
+        refsCache = igniteProvider.get().getOrCreateCache(
+            TcHelperDb.getCacheV2Config(TEAMCITY_TEST_NAMES_REF_CACHE_NAME));
+    }
+
+    /**
+     * Replaces test names of build with delta against current reference of the suite if delta is small enough,
+     * otherwise names of the build become new reference. Does nothing unless
+     * {@link TcBotSystemProperties#TEAMCITY_BOT_TEST_NAMES_DELTA} is set.
+     *
+     * @param srvId Server id.
+     * @param build Build to be saved.
+     */
+    @AutoProfiling
+    public void encode(int srvId, FatBuildCompacted build) {
+        Preconditions.checkNotNull(refsCache, "init() was not called");
+
+        if (!Boolean.getBoolean(TcBotSystemProperties.TEAMCITY_BOT_TEST_NAMES_DELTA))
+            return;
+
+        int[] names = build.testNameIds();
+
+        if (names == null || names.length == 0 || build.testNamesRef() >= 0)
+            return;
+
+        Cache<Long, Reference> srvRefs = current.computeIfAbsent(srvId,
+            k -> CacheBuilder.newBuilder().maximumSize(MAX_CURRENT_REFS).build());
+        long suiteKey = BuildRefIndex.historyKey(build.buildTypeId(), build.branchName());
+
+        Reference ref = srvRefs.getIfPresent(suiteKey);
+
+        if (ref != null && ref.buildId != build.id()) {
+            int[] delta = TestNamesDelta.encode(ref.names, names);
+
+            if (delta.length * MAX_DELTA_RATIO <= names.length) {
+                build.testNamesDelta(ref.buildId, delta);
+
+                return;
+            }
+        }
+
+        long refKey = FatBuildDao.buildIdToCacheKey(srvId, build.id());
+
+        int[] refNames = refsCache.getAndPutIfAbsent(refKey, names);
+
+        if (refNames == null)
+            refNames = names;
+
+        loaded.put(refKey, refNames);
+        srvRefs.put(suiteKey, new Reference(build.id(), refNames));
+
+        if (!Arrays.equals(refNames, names)) {
+            // Snapshot of previous names of this build is kept, build still may be encoded against it.
+            build.testNamesDelta(build.id(), TestNamesDelta.encode(refNames, names));
+        }
+    }
+
+    /**
+     * @param srvId Server id.
+     * @return Loader of reference names of the server.
+     */
+    public ITestNamesLoader loader(int srvId) {
+        return refId -> referenceNames(FatBuildDao.buildIdToCacheKey(srvId, refId));
+    }
+
+    /**
+     * @param refKey Reference key.
+     */
+    @Nullable private int[] referenceNames(long refKey) {
+        int[] names = loaded.getIfPresent(refKey);
+
+        if (names != null)
+            return names;
+
+        names = refsCache.get(refKey);
+
+        if (names != null)
+            loaded.put(refKey, names);
+
+        return names;
+    }
+
+    /**
+     * Current reference of the suite.
+     */
+    private static class Reference {
+        /** Build ID. */
+        private final int buildId;
+
+        /** Test names. */
+        private final int[] names;
+
+        /**
+         * @param buildId Build ID.
+         * @param names Test names.
+         */
+        Reference(int buildId, int[] names) {
+            this.buildId = buildId;
+            this.names = names;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.Strings;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+
+/**
+ * Streaming parser of TC test occurrences XML. Each test occurrence is converted to {@link TestCompacted} as soon as
+ * its element is read, so intermediate test occurrence objects are not created.
+ */
+public class TestOccurrencesStaxParser {
+    /** Factory, thread safe after configuration. */
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    /**
+     * @param reader Reader of 'testOccurrences' XML.
+     * @param compactor Compactor.
+     * @return Tests page.
+     * @throws XMLStreamException If XML is not valid.
+     */
+    public static TestCompactedPage parse(Reader reader, IStringCompactor compactor) throws XMLStreamException {
+        TestCompactedPage page = new TestCompactedPage();
+        XMLStreamReader xml = FACTORY.createXMLStreamReader(reader);
+        List<String> strs = new ArrayList<>();
+
+        try {
+            TestCompacted test = null;
+
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+
+                switch (xml.getLocalName()) {
+                    case "testOccurrences":
+                        page.nextHref(Strings.emptyToNull(xml.getAttributeValue(null, "nextHref")));
+
+                        break;
+
+                    case "testOccurrence":
+                        strs.add(xml.getAttributeValue(null, "name"));
+                        strs.add(xml.getAttributeValue(null, "status"));
+
+                        // Name and status are compacted for whole page at once.
+                        test = new TestCompacted(
+                            xml.getAttributeValue(null, "id"),
+                            -1,
+                            -1,
+                            parseInt(xml.getAttributeValue(null, "duration")),
+                            parseBoolean(xml.getAttributeValue(null, "muted")),
+                            parseBoolean(xml.getAttributeValue(null, "currentlyMuted")),
+                            parseBoolean(xml.getAttributeValue(null, "currentlyInvestigated")),
+                            parseBoolean(xml.getAttributeValue(null, "ignored")));
+
+                        page.tests().add(test);
+
+                        break;
+
+                    case "test":
+                        String testId = xml.getAttributeValue(null, "id");
+
+                        if (test != null && testId != null)
+                            test.testId(Long.parseLong(testId.trim()));
+
+                        break;
+
+                    case "build":
+                        Integer buildId = parseInt(xml.getAttributeValue(null, "id"));
+
+                        if (test != null && buildId != null)
+                            test.actualBuildId(buildId);
+
+                        break;
+
+                    case "details":
+                        String details = xml.getElementText();
+
+                        if (test != null)
+                            test.setDetails(details);
+
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        }
+        finally {
+            xml.close();
+        }
+
+        int[] ids = compactor.getStringIds(strs);
+        List<TestCompacted> tests = page.tests();
+
+        for (int i = 0; i < tests.size(); i++)
+            tests.get(i).nameAndStatus(ids[2 * i], ids[2 * i + 1]);
+
+        return page;
+    }
+
+    /**
+     * @param val Attribute value.
+     */
+    private static Integer parseInt(String val) {
+        return val == null ? null : Integer.valueOf(val.trim());
+    }
+
+    /**
+     * @param val Attribute value.
+     */
+    private static Boolean parseBoolean(String val) {
+        if (val == null)
+            return null;
+
+        String trimmed = val.trim();
+
+        return "true".equals(trimmed) || "1".equals(trimmed);
+    }
+
+    /**
+     * Creates factory not resolving external entities.
+     */
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        return factory;
+    }
+}
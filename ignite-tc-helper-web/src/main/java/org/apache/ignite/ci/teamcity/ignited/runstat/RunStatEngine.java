@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.runstat;
+
+import com.google.common.base.Strings;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.MutableEntry;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.analysis.RunStat;
+import org.apache.ignite.ci.analysis.RunStat.RunStatus;
+import org.apache.ignite.ci.analysis.SuiteInBranch;
+import org.apache.ignite.ci.analysis.TestInBranch;
+import org.apache.ignite.ci.db.TcHelperDb;
+import org.apache.ignite.ci.di.AutoProfiling;
+import org.apache.ignite.ci.di.MonitoredTask;
+import org.apache.ignite.ci.di.scheduler.IScheduler;
+import org.apache.ignite.ci.tcmodel.hist.BuildRef;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.ITeamcityIgnited;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.IFatBuildSaveListener;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ITest;
+import org.apache.ignite.internal.util.GridIntList;
+
+import static org.apache.ignite.ci.IgnitePersistentTeamcity.BUILDS_FAILURE_RUN_STAT;
+import static org.apache.ignite.ci.IgnitePersistentTeamcity.CALCULATED_STATISTIC;
+import static org.apache.ignite.ci.IgnitePersistentTeamcity.TESTS_RUN_STAT;
+import static org.apache.ignite.ci.IgnitePersistentTeamcity.ignCacheNme;
+import static org.apache.ignite.ci.tcbot.chain.BuildChainProcessor.normalizeBranch;
+
+/**
+ * Statistics engine: updates test and suite run statistics as soon as finished fat build is saved, so statistics
+ * doesn't depend on pages opened by users. Runs are taken directly from compacted build, updates of all tests of
+ * build are applied in one batch.
+ *
+ * Build is counted once, builds counted are marked in the same cache as builds counted by legacy
+ * {@link org.apache.ignite.ci.ITcAnalytics#calculateBuildStatistic}.
+ */
+public class RunStatEngine implements IFatBuildSaveListener {
+    /** Count of builds to be checked and counted at once during backfill. */
+    private static final int BACKFILL_CHUNK_SIZE = 100;
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** Compactor. */
+    @Inject private IStringCompactor compactor;
+
+    /** Fat builds storage. */
+    @Inject private FatBuildDao fatBuildDao;
+
+    /** Scheduler. */
+    @Inject private IScheduler scheduler;
+
+    /** Server ID -> server name, for servers initialized. */
+    private final ConcurrentMap<Integer, String> srvNames = new ConcurrentHashMap<>();
+
+    /** Server name -> statistics caches of server. */
+    private final ConcurrentMap<String, StatCaches> caches = new ConcurrentHashMap<>();
+
+    /** Listener is registered. */
+    private boolean subscribed;
+
+    /**
+     * Subscribes to builds saved for server and schedules counting of builds saved before.
+     *
+     * @param srvName Server name.
+     */
+    public void init(String srvName) {
+        caches(srvName);
+
+        srvNames.put(ITeamcityIgnited.serverIdToInt(srvName), srvName);
+
+        synchronized (this) {
+            if (!subscribed) {
+                fatBuildDao.addSaveListener(this);
+
+                subscribed = true;
+            }
+        }
+
+        scheduler.sheduleNamed(RunStatEngine.class.getSimpleName() + ".backfill." + srvName,
+            () -> backfill(srvName), 360, TimeUnit.MINUTES);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void onBuildSaved(int srvId, FatBuildCompacted build) {
+        String srvName = srvNames.get(srvId);
+
+        if (srvName != null)
+            countBuilds(srvName, Collections.singletonList(build));
+    }
+
+    /**
+     * Counts fat builds which were saved, but not counted in statistics yet.
+     *
+     * @param srvName Server name.
+     */
+    @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
+    @MonitoredTask(name = "Backfill run statistics", nameExtArgIndex = 0)
+    @AutoProfiling
+    protected String backfill(String srvName) {
+        int srvId = ITeamcityIgnited.serverIdToInt(srvName);
+        int[] buildIds = fatBuildDao.getAllIds(srvId).toArray();
+        IgniteCache<Integer, Boolean> calculated = caches(srvName).calculated;
+
+        int cnt = 0;
+        List<Integer> chunk = new ArrayList<>();
+
+        for (int i = 0; i < buildIds.length; i++) {
+            chunk.add(buildIds[i]);
+
+            if (chunk.size() >= BACKFILL_CHUNK_SIZE || i == buildIds.length - 1) {
+                Set<Integer> counted = calculated.getAll(new HashSet<>(chunk)).keySet();
+
+                List<Integer> notCounted = chunk.stream()
+                    .filter(id -> !counted.contains(id))
+                    .collect(Collectors.toList());
+
+                if (!notCounted.isEmpty())
+                    cnt += countBuilds(srvName, fatBuildDao.getAllFatBuilds(srvId, notCounted).values());
+
+                chunk.clear();
+            }
+        }
+
+        return "Builds counted " + cnt + " from " + buildIds.length + " for " + srvName;
+    }
+
+    /**
+     * Adds runs of finished builds to test and suite statistics. Each build is claimed in the cache of counted builds
+     * before its runs are applied, claims are released if runs were not applied, so build is counted once even if
+     * it is counted concurrently.
+     *
+     * @param srvName Server name.
+     * @param builds Builds.
+     * @return Count of builds counted, builds not finished or already counted are skipped.
+     */
+    @AutoProfiling
+    public int countBuilds(String srvName, Collection<FatBuildCompacted> builds) {
+        StatCaches caches = caches(srvName);
+
+        Map<Integer, FatBuildCompacted> finished = new LinkedHashMap<>();
+
+        for (FatBuildCompacted build : builds) {
+            if (build == null || build.isFakeStub() || !build.isFinished(compactor))
+                continue;
+
+            if (!Strings.isNullOrEmpty(build.buildTypeId(compactor)))
+                finished.putIfAbsent(build.id(), build);
+        }
+
+        if (finished.isEmpty())
+            return 0;
+
+        Set<Integer> claimed = new HashSet<>();
+
+        caches.calculated.invokeAll(finished.keySet(), new ClaimProcessor()).forEach((buildId, res) -> {
+            if (Boolean.TRUE.equals(res.get()))
+                claimed.add(buildId);
+        });
+
+        if (claimed.isEmpty())
+            return 0;
+
+        Map<TestInBranch, TestRunsProcessor> testRuns = new HashMap<>();
+        Map<SuiteInBranch, SuiteRunsProcessor> suiteRuns = new HashMap<>();
+
+        try {
+            for (FatBuildCompacted build : finished.values()) {
+                if (!claimed.contains(build.id()))
+                    continue;
+
+                String branch = normalizeBranch(build.branchName(compactor));
+
+                collectTestRuns(testRuns, build, branch);
+
+                suiteRuns.computeIfAbsent(new SuiteInBranch(build.buildTypeId(compactor), branch),
+                    k -> new SuiteRunsProcessor())
+                    .add(build.id(), suiteStatus(build));
+            }
+
+            if (!testRuns.isEmpty())
+                caches.testsStat.invokeAll(testRuns);
+
+            if (!suiteRuns.isEmpty())
+                caches.suitesStat.invokeAll(suiteRuns);
+        }
+        catch (Throwable e) {
+            caches.calculated.removeAll(claimed);
+
+            throw e;
+        }
+
+        return claimed.size();
+    }
+
+    /**
+     * @param build Build.
+     * @return Status of suite run.
+     */
+    private RunStatus suiteStatus(FatBuildCompacted build) {
+        boolean critical = build.problems().stream()
+            .anyMatch(p -> p.isExecutionTimeout(compactor) || p.isJvmCrash(compactor));
+
+        if (critical)
+            return RunStatus.RES_CRITICAL_FAILURE;
+
+        return build.status() == compactor.getStringId(BuildRef.STATUS_SUCCESS) ? RunStatus.RES_OK
+            : RunStatus.RES_FAILURE;
+    }
+
+    /**
+     * Collects runs of tests of build, muted and ignored tests are skipped. Any status except SUCCESS is counted as
+     * failure, same as by {@link RunStat#addTestRun(TestOccurrence, Boolean)}.
+     *
+     * @param res Updates of test statistics.
+     * @param build Build.
+     * @param branch Normalized branch.
+     */
+    private void collectTestRuns(Map<TestInBranch, TestRunsProcessor> res, FatBuildCompacted build, String branch) {
+        List<ITest> tests = build.getAllTests()
+            .filter(t -> !Boolean.TRUE.equals(t.getMutedFlag()) && !Boolean.TRUE.equals(t.getIgnoredFlag()))
+            .collect(Collectors.toList());
+
+        int[] nameIds = new int[tests.size()];
+
+        for (int i = 0; i < nameIds.length; i++)
+            nameIds[i] = tests.get(i).testName();
+
+        String[] names = compactor.getStringsFromIds(nameIds);
+        int successStatus = compactor.getStringId(TestOccurrence.STATUS_SUCCESS);
+        int changes = build.changes().length > 0 ? 1 : 0;
+
+        for (int i = 0; i < names.length; i++) {
+            if (Strings.isNullOrEmpty(names[i]))
+                continue;
+
+            ITest test = tests.get(i);
+            Integer duration = test.getDuration();
+
+            res.computeIfAbsent(new TestInBranch(names[i], branch), k -> new TestRunsProcessor())
+                .add(build.id(),
+                    test.idInBuild(),
+                    test.status() == successStatus ? RunStatus.RES_OK : RunStatus.RES_FAILURE,
+                    duration == null ? -1 : duration,
+                    changes);
+        }
+    }
+
+    /**
+     * @param srvName Server name.
+     * @return Statistics caches of server, resolved once.
+     */
+    private StatCaches caches(String srvName) {
+        return caches.computeIfAbsent(srvName, StatCaches::new);
+    }
+
+    /**
+     * Statistics caches of one server.
+     */
+    private class StatCaches {
+        /** Builds counted. */
+        private final IgniteCache<Integer, Boolean> calculated;
+
+        /** Test statistics. */
+        private final IgniteCache<TestInBranch, RunStat> testsStat;
+
+        /** Suite statistics. */
+        private final IgniteCache<SuiteInBranch, RunStat> suitesStat;
+
+        /**
+         * @param srvName Server name.
+         */
+        StatCaches(String srvName) {
+            calculated = cache(srvName, CALCULATED_STATISTIC);
+            testsStat = cache(srvName, TESTS_RUN_STAT);
+            suitesStat = cache(srvName, BUILDS_FAILURE_RUN_STAT);
+        }
+
+        /**
+         * @param srvName Server name.
+         * @param cacheName Cache name without server prefix.
+         */
+        private <K, V> IgniteCache<K, V> cache(String srvName, String cacheName) {
+            return igniteProvider.get().getOrCreateCache(TcHelperDb.getCacheV2Config(ignCacheNme(cacheName, srvName)));
+        }
+    }
+
+    /**
+     * Claims build for counting: marks build as counted, if it was not marked before.
+     */
+    private static class ClaimProcessor implements EntryProcessor<Integer, Boolean, Boolean> {
+        /** {@inheritDoc} */
+        @Override public Boolean process(MutableEntry<Integer, Boolean> entry, Object... args) {
+            if (entry.exists())
+                return false;
+
+            entry.setValue(true);
+
+            return true;
+        }
+    }
+
+    /**
+     * Adds runs of test to test statistics.
+     */
+    private static class TestRunsProcessor implements EntryProcessor<TestInBranch, RunStat, Object> {
+        /** Fields of one run. */
+        private static final int RUN_FIELDS = 5;
+
+        /** Runs: build ID, test ID in build, status code, duration and changes flag for each run. */
+        private final GridIntList runs = new GridIntList(RUN_FIELDS);
+
+        /**
+         * @param buildId Build ID.
+         * @param testId Test ID in build.
+         * @param status Status.
+         * @param durationMs Duration, negative if unknown.
+         * @param changes {@code 1} if changes exist in build, {@code 0} otherwise.
+         */
+        void add(int buildId, int testId, RunStatus status, int durationMs, int changes) {
+            runs.add(buildId);
+            runs.add(testId);
+            runs.add(status.getCode());
+            runs.add(durationMs);
+            runs.add(changes);
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object process(MutableEntry<TestInBranch, RunStat> entry, Object... args) {
+            RunStat val = entry.getValue();
+
+            if (val == null)
+                val = new RunStat(entry.getKey().getName());
+
+            for (int i = 0; i < runs.size(); i += RUN_FIELDS) {
+                val.addTestRun(runs.get(i), runs.get(i + 1), RunStatus.byCode(runs.get(i + 2)), runs.get(i + 3),
+                    runs.get(i + 4) != 0);
+            }
+
+            entry.setValue(val);
+
+            return null;
+        }
+    }
+
+    /**
+     * Adds runs of suite to suite statistics.
+     */
+    private static class SuiteRunsProcessor implements EntryProcessor<SuiteInBranch, RunStat, Object> {
+        /** Runs: build ID and status code for each run. */
+        private final GridIntList runs = new GridIntList(2);
+
+        /**
+         * @param buildId Build ID.
+         * @param status Status of suite run.
+         */
+        void add(int buildId, RunStatus status) {
+            runs.add(buildId);
+            runs.add(status.getCode());
+        }
+
+        /** {@inheritDoc} */
+        @Override public Object process(MutableEntry<SuiteInBranch, RunStat> entry, Object... args) {
+            RunStat val = entry.getValue();
+
+            if (val == null)
+                val = new RunStat(entry.getKey().getSuiteId());
+
+            for (int i = 0; i < runs.size(); i += 2)
+                val.addBuildRun(runs.get(i), RunStatus.byCode(runs.get(i + 1)));
+
+            entry.setValue(val);
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.pure;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.concurrent.GuardedBy;
+import javax.ws.rs.BadRequestException;
+import org.apache.ignite.ci.web.rest.exception.ServiceUnauthorizedException;
+
+/**
+ * Limit of concurrent requests to one server, adjusted using additive increase / multiplicative decrease (AIMD). Limit
+ * grows while requests succeed and latency is healthy, and is decreased on server errors, timeouts or if recent latency
+ * becomes significantly higher than long term latency.
+ */
+public class AdaptiveConcurrencyLimit {
+    /** Minimal limit. */
+    public static final int MIN_LIMIT = 1;
+
+    /** Maximal limit. */
+    public static final int MAX_LIMIT = 64;
+
+    /** Initial limit. */
+    public static final int INITIAL_LIMIT = 8;
+
+    /** Limit is multiplied to this ratio on overload. */
+    public static final double BACKOFF_RATIO = 0.75;
+
+    /** Recent latency exceeding long term latency more than this times is considered as overload. */
+    public static final double LATENCY_TOLERANCE = 2.0;
+
+    /** Minimal difference of recent and long term latency to be considered as overload, milliseconds. */
+    public static final double MIN_LATENCY_RISE_MS = 100;
+
+    /** Weight of last request in recent latency. */
+    private static final double RECENT_ALPHA = 0.1;
+
+    /** Weight of last request in long term latency. */
+    private static final double LONG_TERM_ALPHA = 0.01;
+
+    /** Minimal interval between decreases: requests started before overload should not collapse limit. */
+    private static final long DECREASE_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Lock. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Permit released or limit increased. */
+    private final Condition permitAvailable = lock.newCondition();
+
+    /** Current limit, fractional part is accumulated by additive increase. */
+    @GuardedBy("lock")
+    private double limit = INITIAL_LIMIT;
+
+    /** Requests in progress. */
+    @GuardedBy("lock")
+    private int inFlight;
+
+    /** Threads waiting for permit. */
+    @GuardedBy("lock")
+    private int waiting;
+
+    /** Recent latency, milliseconds, negative if unknown. */
+    @GuardedBy("lock")
+    private double recentLatencyMs = -1;
+
+    /** Long term latency, milliseconds, negative if unknown. */
+    @GuardedBy("lock")
+    private double longTermLatencyMs = -1;
+
+    /** Recent wait for permit, milliseconds. */
+    @GuardedBy("lock")
+    private double recentWaitMs;
+
+    /** Time of last decrease, {@link System#nanoTime()}. */
+    @GuardedBy("lock")
+    private long lastDecreaseNs = System.nanoTime() - DECREASE_INTERVAL_NS;
+
+    /** Count of overloads detected. */
+    @GuardedBy("lock")
+    private long overloads;
+
+    /**
+     * Waits until request may be sent.
+     *
+     * @return Start timestamp of request, to be provided to {@link #release(long, boolean)}.
+     * @throws InterruptedException If interrupted.
+     */
+    public long acquire() throws InterruptedException {
+        long waitStartNs = System.nanoTime();
+
+        lock.lock();
+
+        try {
+            waiting++;
+
+            try {
+                while (inFlight >= (int)limit)
+                    permitAvailable.await();
+            }
+            finally {
+                waiting--;
+            }
+
+            inFlight++;
+
+            long startNs = System.nanoTime();
+
+            recentWaitMs = ewma(recentWaitMs, nanosToMs(startNs - waitStartNs), RECENT_ALPHA);
+
+            return startNs;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases permit and adjusts limit.
+     *
+     * @param startNs Start timestamp returned by {@link #acquire()}.
+     * @param failedByOverload {@code True} if request failed because server is overloaded.
+     */
+    public void release(long startNs, boolean failedByOverload) {
+        long nowNs = System.nanoTime();
+        double latencyMs = nanosToMs(nowNs - startNs);
+
+        lock.lock();
+
+        try {
+            boolean saturated = inFlight >= (int)limit;
+
+            inFlight--;
+
+            recentLatencyMs = recentLatencyMs < 0 ? latencyMs : ewma(recentLatencyMs, latencyMs, RECENT_ALPHA);
+            longTermLatencyMs = longTermLatencyMs < 0 ? latencyMs : ewma(longTermLatencyMs, latencyMs, LONG_TERM_ALPHA);
+
+            boolean latencyRising = recentLatencyMs > longTermLatencyMs * LATENCY_TOLERANCE
+                && recentLatencyMs - longTermLatencyMs > MIN_LATENCY_RISE_MS;
+
+            if (failedByOverload || latencyRising) {
+                if (nowNs - lastDecreaseNs >= DECREASE_INTERVAL_NS) {
+                    limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+                    lastDecreaseNs = nowNs;
+                    overloads++;
+                }
+            }
+            else if (saturated) {
+                // Grows by 1 after limit of successful requests, only if limit was really reached.
+                limit = Math.min(MAX_LIMIT, limit + 1.0 / limit);
+            }
+
+            permitAvailable.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param e Error of request.
+     * @return {@code True} if error is caused by server overload or network, {@code false} for client errors.
+     */
+    public static boolean isOverload(Throwable e) {
+        return !(e instanceof FileNotFoundException
+            || e instanceof BadRequestException
+            || e instanceof ServiceUnauthorizedException);
+    }
+
+    /**
+     * @return Current limit.
+     */
+    public int limit() {
+        lock.lock();
+
+        try {
+            return (int)limit;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Requests in progress.
+     */
+    public int inFlight() {
+        lock.lock();
+
+        try {
+            return inFlight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Threads waiting for permit.
+     */
+    public int waiting() {
+        lock.lock();
+
+        try {
+            return waiting;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Recent wait for permit, milliseconds.
+     */
+    public long recentWaitMs() {
+        lock.lock();
+
+        try {
+            return Math.round(recentWaitMs);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Recent latency of requests, milliseconds.
+     */
+    public long recentLatencyMs() {
+        lock.lock();
+
+        try {
+            return Math.max(0, Math.round(recentLatencyMs));
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Long term latency of requests, milliseconds.
+     */
+    public long longTermLatencyMs() {
+        lock.lock();
+
+        try {
+            return Math.max(0, Math.round(longTermLatencyMs));
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Count of overloads detected.
+     */
+    public long overloads() {
+        lock.lock();
+
+        try {
+            return overloads;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param avg Average.
+     * @param val New value.
+     * @param alpha Weight of new value.
+     */
+    private static double ewma(double avg, double val, double alpha) {
+        return avg + alpha * (val - avg);
+    }
+
+    /**
+     * @param nanos Nanoseconds.
+     */
+    private static double nanosToMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
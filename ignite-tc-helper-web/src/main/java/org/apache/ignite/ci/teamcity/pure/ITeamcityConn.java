@@ -24,6 +24,7 @@ import javax.annotation.Nullable;
 
 import org.apache.ignite.ci.tcmodel.changes.Change;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
+import org.apache.ignite.ci.tcmodel.changes.ChangesListFull;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrences;
@@ -55,6 +56,36 @@ public interface ITeamcityConn {
      */
     public TestOccurrencesFull getTestsPage(int buildId, @Nullable String href, boolean testDtls);
 
+    /**
+     * @param buildId Build id.
+     * @param start Index of the first test occurrence in the page.
+     * @param cnt Maximum count of test occurrences in the page.
+     * @param testDtls Query test details.
+     */
+    public TestOccurrencesFull getTestsPage(int buildId, int start, int cnt, boolean testDtls);
+
+    /**
+     * Same as {@link #getTestsPage(int, String, boolean)}, but response is parsed by provided parser while it is read,
+     * so the page is neither buffered nor converted to occurrence objects.
+     *
+     * @param buildId Build id.
+     * @param href Href. Null activates first page loaded.
+     * @param testDtls Query test details.
+     * @param parser Parser of test occurrences page.
+     */
+    public <T> T getTestsPage(int buildId, @Nullable String href, boolean testDtls, IXmlResponseParser<T> parser);
+
+    /**
+     * Same as {@link #getTestsPage(int, int, int, boolean)}, but response is parsed by provided parser while it is read.
+     *
+     * @param buildId Build id.
+     * @param start Index of the first test occurrence in the page.
+     * @param cnt Maximum count of test occurrences in the page.
+     * @param testDtls Query test details.
+     * @param parser Parser of test occurrences page.
+     */
+    public <T> T getTestsPage(int buildId, int start, int cnt, boolean testDtls, IXmlResponseParser<T> parser);
+
     /**
      * Trigger build.
      *
@@ -71,5 +102,11 @@ public interface ITeamcityConn {
 
     ChangesList getChangesList(int buildId);
 
+    /**
+     * @param buildId Build id.
+     * @return Changes of build including change details.
+     */
+    ChangesListFull getChangesFull(int buildId);
+
     Change getChange(int changeId);
 }
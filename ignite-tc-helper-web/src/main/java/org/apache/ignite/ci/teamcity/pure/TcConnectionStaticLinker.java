@@ -29,6 +29,7 @@ public class TcConnectionStaticLinker {
         final IgniteTeamcityConnection conn = new IgniteTeamcityConnection();
 
         conn.setHttpConn(new TeamcityRecordingConnection());
+        conn.setRequestLimiter(new TcRequestLimiter());
         conn.init(srv);
 
         return conn;
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.pure;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Adaptive limits of concurrent requests for each TeamCity server.
+ */
+public class TcRequestLimiter {
+    /** Server ID -> limit. */
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param srvId Server id.
+     */
+    public AdaptiveConcurrencyLimit limit(String srvId) {
+        return limits.computeIfAbsent(String.valueOf(srvId), k -> new AdaptiveConcurrencyLimit());
+    }
+
+    /**
+     * @return Server ID -> limit.
+     */
+    public Map<String, AdaptiveConcurrencyLimit> limits() {
+        return Collections.unmodifiableMap(limits);
+    }
+}
@@ -36,6 +36,7 @@ import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.IgniteTcBotModule;
 import org.apache.ignite.ci.di.scheduler.IScheduler;
 import org.apache.ignite.ci.observer.BuildObserver;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
 import org.apache.ignite.ci.teamcity.pure.TeamcityRecorder;
 import org.apache.ignite.ci.user.ICredentialsProv;
 import org.jetbrains.annotations.Nullable;
@@ -107,6 +108,7 @@ public class CtxListener implements ServletContextListener {
 
         try {
             injector.getInstance(TcUpdatePool.class).stop();
+            injector.getInstance(ProactiveFatBuildSync.class).stop();
             injector.getInstance(BuildObserver.class).stop();
 
             injector.getInstance(IScheduler.class).stop();
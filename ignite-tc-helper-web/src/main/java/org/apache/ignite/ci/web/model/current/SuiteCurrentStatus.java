@@ -21,6 +21,7 @@ import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -148,7 +149,12 @@ import static org.apache.ignite.ci.util.UrlUtil.escape;
             return apply == null ? 0f : apply.getFailRate();
         };
 
-        tests.sort(Comparator.comparing(function).reversed());
+        // Rate is calculated once for each test, not for each comparison.
+        Map<ITestFailures, Float> sortKeys = new IdentityHashMap<>();
+
+        tests.forEach(test -> sortKeys.put(test, function.apply(test)));
+
+        tests.sort(Comparator.comparing(sortKeys::get).reversed());
 
         tests.forEach(occurrence -> {
             final TestFailure failure = new TestFailure();
@@ -243,14 +249,14 @@ import static org.apache.ignite.ci.util.UrlUtil.escape;
             latestRunsSrc = stat;
 
         if (latestRunsSrc != null) {
-            RunStat.TestId testId = latestRunsSrc.detectTemplate(EventTemplates.newFailureForFlakyTest); //extended runs required for suite
+            RunStat.TestId[] detected = latestRunsSrc.detectTemplates(
+                EventTemplates.newFailureForFlakyTest, //extended runs required for suite
+                EventTemplates.newCriticalFailure);
 
-            if (testId != null)
+            if (detected[0] != null)
                 problemRef = new ProblemRef("New Failure");
 
-            RunStat.TestId buildIdCritical = latestRunsSrc.detectTemplate(EventTemplates.newCriticalFailure);
-
-            if (buildIdCritical != null)
+            if (detected[1] != null)
                 problemRef = new ProblemRef("New Critical Failure");
         }
     }
@@ -218,14 +218,13 @@ import static org.apache.ignite.ci.web.model.current.SuiteCurrentStatus.branchFo
             statForProblemsDetection = stat;
 
         if (statForProblemsDetection != null) {
-            RunStat.TestId testId = statForProblemsDetection.detectTemplate(EventTemplates.newFailure);
+            RunStat.TestId[] detected = statForProblemsDetection.detectTemplates(EventTemplates.newFailure,
+                EventTemplates.newContributedTestFailure);
 
-            if (testId != null)
+            if (detected[0] != null)
                 problemRef = new ProblemRef("New Failure");
 
-            RunStat.TestId recentContributedTestId = statForProblemsDetection.detectTemplate(EventTemplates.newContributedTestFailure);
-
-            if (recentContributedTestId != null)
+            if (detected[1] != null)
                 problemRef = new ProblemRef("Recently contributed test failure");
 
         }
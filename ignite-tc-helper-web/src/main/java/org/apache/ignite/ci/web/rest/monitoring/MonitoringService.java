@@ -23,7 +23,15 @@ import org.apache.ignite.cache.CacheMetrics;
 import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.ci.di.AutoProfilingInterceptor;
 import org.apache.ignite.ci.di.MonitoredTaskInterceptor;
+import org.apache.ignite.ci.teamcity.ignited.buildref.FullReindexStateDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.DetailsDictionary;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.LoadPriority;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestDetailsDictionaries;
+import org.apache.ignite.ci.teamcity.pure.AdaptiveConcurrencyLimit;
+import org.apache.ignite.ci.teamcity.pure.TcRequestLimiter;
 import org.apache.ignite.ci.teamcity.pure.TeamcityRecorder;
+import org.apache.ignite.ci.util.TimeUtil;
 import org.apache.ignite.ci.web.CtxListener;
 
 import javax.annotation.security.PermitAll;
@@ -132,6 +140,119 @@ public class MonitoringService {
     }
 
 
+    @GET
+    @PermitAll
+    @Path("fullReindex")
+    public List<FullReindexUi> getFullReindexStatus() {
+        FullReindexStateDao dao = CtxListener.getInjector(ctx).getInstance(FullReindexStateDao.class);
+
+        return dao.getAll().stream().map(state -> {
+            final FullReindexUi res = new FullReindexUi();
+            res.srvName = state.srvName;
+            res.status = state.isInProgress() ? "In progress" : (state.finishTs > 0 ? "Finished" : "Started");
+            res.start = TimeUtil.timestampToDateTimePrintable(state.startTs);
+            res.update = TimeUtil.timestampToDateTimePrintable(state.updateTs);
+            res.finish = TimeUtil.timestampToDateTimePrintable(state.finishTs);
+            res.buildsChecked = state.buildsChecked;
+            res.entriesSaved = state.entriesSaved;
+            res.lastBuildId = state.lastBuildId;
+            res.resumedCnt = state.resumedCnt;
+            res.nextHref = state.nextHref;
+            return res;
+        }).sorted(Comparator.comparing(ui -> ui.srvName)).collect(Collectors.toList());
+    }
+
+    @GET
+    @PermitAll
+    @Path("tcLimits")
+    public List<TcRequestLimitUi> getTcLimits() {
+        TcRequestLimiter limiter = CtxListener.getInjector(ctx).getInstance(TcRequestLimiter.class);
+
+        return limiter.limits().entrySet().stream().map(e -> {
+            AdaptiveConcurrencyLimit limit = e.getValue();
+
+            final TcRequestLimitUi res = new TcRequestLimitUi();
+            res.srvName = e.getKey();
+            res.limit = limit.limit();
+            res.inFlight = limit.inFlight();
+            res.waiting = limit.waiting();
+            res.waitMs = limit.recentWaitMs();
+            res.latencyMs = limit.recentLatencyMs();
+            res.longTermLatencyMs = limit.longTermLatencyMs();
+            res.overloads = limit.overloads();
+            return res;
+        }).sorted(Comparator.comparing(ui -> ui.srvName)).collect(Collectors.toList());
+    }
+
+    @GET
+    @PermitAll
+    @Path("testDetailsCompression")
+    public List<TestDetailsCompressionUi> getTestDetailsCompression() {
+        TestDetailsDictionaries dicts = CtxListener.getInjector(ctx).getInstance(TestDetailsDictionaries.class);
+
+        Map<Integer, TestDetailsDictionaries.CompressionStatistics> stats = dicts.statistics();
+        Map<Integer, DetailsDictionary> current = dicts.currentDictionaries();
+
+        Set<Integer> srvIds = new TreeSet<>(stats.keySet());
+        srvIds.addAll(current.keySet());
+
+        return srvIds.stream().map(srvId -> {
+            final TestDetailsCompressionUi res = new TestDetailsCompressionUi();
+            res.srvId = srvId;
+
+            DetailsDictionary dict = current.get(srvId);
+            if (dict != null) {
+                res.dictId = dict.id();
+                res.dictSize = dict.size();
+                res.dictCreated = TimeUtil.timestampToDateTimePrintable(dict.createdTs());
+                res.sampleRawBytes = dict.sampleRawBytes();
+                res.samplePerRecordBytes = dict.samplePerRecordBytes();
+                res.sampleDictBytes = dict.sampleDictBytes();
+            }
+
+            TestDetailsDictionaries.CompressionStatistics stat = stats.get(srvId);
+            if (stat != null) {
+                res.detailsCnt = stat.count();
+                res.rawBytes = stat.rawBytes();
+                res.perRecordBytes = stat.perRecordBytes();
+                res.storedBytes = stat.storedBytes();
+                res.perRecordRatio = ratio(stat.rawBytes(), stat.perRecordBytes());
+                res.storedRatio = ratio(stat.rawBytes(), stat.storedBytes());
+            }
+
+            return res;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * @param raw Raw bytes.
+     * @param compressed Compressed bytes.
+     */
+    private static String ratio(long raw, long compressed) {
+        return compressed == 0 ? "" : String.format("%.2f", (double)raw / compressed);
+    }
+
+    @GET
+    @PermitAll
+    @Path("buildsSync")
+    public List<BuildsSyncUi> getBuildsSync() {
+        ProactiveFatBuildSync buildSync = CtxListener.getInjector(ctx).getInstance(ProactiveFatBuildSync.class);
+
+        final List<BuildsSyncUi> res = new ArrayList<>();
+
+        res.add(new BuildsSyncUi("Builds reloading now", buildSync.buildsInFlight()));
+        res.add(new BuildsSyncUi("Duplicate build reloads avoided", buildSync.duplicatesAvoided()));
+
+        new TreeMap<>(buildSync.loadQueues()).forEach((srvName, queue) -> {
+            for (LoadPriority priority : LoadPriority.values())
+                res.add(new BuildsSyncUi("Load queue " + srvName + " " + priority, queue.depth(priority)));
+
+            res.add(new BuildsSyncUi("Load queue " + srvName + " dropped on overflow", queue.dropped()));
+        });
+
+        return res;
+    }
+
     @GET
     @PermitAll
     @Path("urlsUsed")
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.apache.ignite.ci.analysis.RunStat.ChangesState;
+import org.apache.ignite.ci.analysis.RunStat.RunInfo;
+import org.apache.ignite.ci.analysis.RunStat.RunStatus;
+import org.apache.ignite.ci.analysis.RunStat.TestId;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks ring buffer of latest runs and its counters against sorted map used before.
+ */
+public class LatestRunsTest {
+    /** */
+    @Test
+    public void testSameAsSortedMap() {
+        Random rnd = new Random(42);
+
+        LatestRuns runs = new LatestRuns();
+        TreeMap<TestId, RunInfo> map = new TreeMap<>();
+
+        int buildId = 1000;
+
+        for (int i = 0; i < 1000; i++) {
+            // Mostly newer builds, sometimes older builds and repeated runs.
+            int id = rnd.nextInt(10) == 0 ? buildId - rnd.nextInt(200) : (buildId += rnd.nextInt(3));
+            int testId = rnd.nextInt(3);
+            RunStatus status = RunStatus.values()[rnd.nextInt(RunStatus.values().length)];
+            ChangesState changes = ChangesState.values()[rnd.nextInt(ChangesState.values().length)];
+
+            runs.add(id, testId, status, changes);
+
+            map.put(new TestId(id, testId), new RunInfo(status, changes));
+
+            if (map.size() > RunStat.MAX_LATEST_RUNS)
+                map.remove(map.firstKey());
+
+            assertSame(map, runs);
+        }
+    }
+
+    /** */
+    @Test
+    public void testMigrationFromMaps() {
+        RunStat stat = new RunStat("test");
+
+        stat.latestRunResults = new TreeMap<>();
+        stat.latestRunResults.put(new TestId(2, 1), RunStatus.RES_FAILURE.getCode());
+        stat.latestRunResults.put(new TestId(1, 1), RunStatus.RES_OK.getCode());
+
+        assertEquals(2, stat.getRunsCount());
+        assertEquals(1, stat.getFailuresCount());
+        assertNull(stat.latestRunResults);
+
+        stat = new RunStat("test");
+
+        stat.latestRunResults = new TreeMap<>();
+        stat.latestRunResults.put(new TestId(1, 1), RunStatus.RES_OK.getCode());
+        stat.latestRuns = new TreeMap<>();
+        stat.latestRuns.put(new TestId(1, 1), new RunInfo(RunStatus.RES_OK, ChangesState.NONE));
+        stat.latestRuns.put(new TestId(2, 1), new RunInfo(RunStatus.RES_MUTED_FAILURE, ChangesState.NONE));
+
+        stat.migrateLatestRuns();
+
+        List<Integer> expected = new ArrayList<>();
+
+        expected.add(RunStatus.RES_OK.getCode());
+        expected.add(RunStatus.RES_MUTED_FAILURE.getCode());
+
+        assertEquals(expected, stat.getLatestRunResults());
+        assertNull(stat.latestRuns);
+        assertNull(stat.latestRunResults);
+    }
+
+    /**
+     * @param exp Expected runs.
+     * @param runs Runs.
+     */
+    private static void assertSame(TreeMap<TestId, RunInfo> exp, LatestRuns runs) {
+        assertEquals(exp.size(), runs.size());
+
+        assertEquals(exp.values().stream().filter(r -> r.status != RunStatus.RES_OK).count(), runs.failures());
+        assertEquals(exp.values().stream().filter(r -> r.status == RunStatus.RES_CRITICAL_FAILURE).count(),
+            runs.criticalFailures());
+
+        int i = 0;
+
+        for (Map.Entry<TestId, RunInfo> entry : exp.entrySet()) {
+            assertEquals(entry.getKey().getBuildId(), runs.buildId(i));
+            assertEquals(entry.getKey().getTestId(), runs.testId(i));
+            assertEquals(entry.getValue().status, runs.status(i));
+            assertEquals(entry.getValue().changesState, runs.changesState(i));
+
+            i++;
+        }
+    }
+}
@@ -192,4 +192,35 @@ public class DetectingFailureTest {
         assertEquals(testId, testId2);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void detectAllTemplatesInOnePass() {
+        RunStat stat = new RunStat("");
+
+        TestOccurrence occurrence = new TestOccurrence();
+
+        final int[] results = {0, 0, 0, 0, 0, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0};
+
+        for (int i = 0; i < results.length; i++) {
+            stat.addTestRunToLatest(occurrence
+                .setStatus(results[i] == 0 ? Build.STATUS_SUCCESS : "FAILURE")
+                .setId(fakeTestId(100 + i)), UNKNOWN);
+        }
+
+        EventTemplate[] templates = EventTemplates.templates.toArray(new EventTemplate[0]);
+
+        RunStat.TestId[] detected = stat.detectTemplates(templates);
+
+        assertEquals(templates.length, detected.length);
+
+        for (int i = 0; i < templates.length; i++)
+            assertEquals(stat.detectTemplate(templates[i]), detected[i]);
+
+        // Most recent occurrences are detected.
+        assertEquals(115, stat.detectTemplate(EventTemplates.newFailure).getBuildId());
+        assertEquals(115, stat.detectTemplate(EventTemplates.newFailureForFlakyTest).getBuildId());
+        assertEquals(123, stat.detectTemplate(EventTemplates.fixOfFailure).getBuildId());
+        assertNull(stat.detectTemplate(EventTemplates.newCriticalFailure));
+        assertNull(stat.detectTemplate(EventTemplates.newContributedTestFailure));
+    }
+}
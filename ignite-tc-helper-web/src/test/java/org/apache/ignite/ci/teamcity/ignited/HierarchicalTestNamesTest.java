@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks splitting of test names into parts.
+ */
+public class HierarchicalTestNamesTest {
+    /** */
+    @Test
+    public void testSplit() {
+        assertArrayEquals(new String[] {"org.apache.ignite.testsuites.IgniteBasicTestSuite",
+                "org.apache.ignite.internal.GridSelfTest", "testAsync"},
+            HierarchicalTestNames.split(
+                "org.apache.ignite.testsuites.IgniteBasicTestSuite: org.apache.ignite.internal.GridSelfTest.testAsync"));
+
+        assertArrayEquals(new String[] {null, "org.apache.ignite.SomeTest", "test[1.5]"},
+            HierarchicalTestNames.split("org.apache.ignite.SomeTest.test[1.5]"));
+
+        assertNull(HierarchicalTestNames.split("SUCCESS"));
+        assertNull(HierarchicalTestNames.split("refs/heads/ignite-2.7"));
+        assertNull(HierarchicalTestNames.split("SomeTest.testMethod"));
+        assertNull(HierarchicalTestNames.split("Suite: org.apache.ignite.SomeTest."));
+        assertNull(HierarchicalTestNames.split("Build duration: 1.5"));
+    }
+}
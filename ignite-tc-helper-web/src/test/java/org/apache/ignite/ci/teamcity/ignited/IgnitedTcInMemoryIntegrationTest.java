@@ -15,40 +15,80 @@
  * limitations under the License.
  */
 package org.apache.ignite.ci.teamcity.ignited;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Sets;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.internal.SingletonScope;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
+import org.apache.ignite.ci.ITeamcity;
+import org.apache.ignite.ci.IgnitePersistentTeamcity;
+import org.apache.ignite.ci.analysis.RunStat;
+import org.apache.ignite.ci.analysis.SuiteInBranch;
+import org.apache.ignite.ci.analysis.TestInBranch;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.scheduler.DirectExecNoWaitSheduler;
 import org.apache.ignite.ci.di.scheduler.IScheduler;
 import org.apache.ignite.ci.di.scheduler.NoOpSheduler;
+import org.apache.ignite.ci.tcbot.TcBotSystemProperties;
+import org.apache.ignite.ci.tcmodel.changes.Change;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
+import org.apache.ignite.ci.tcmodel.changes.ChangesListFull;
 import org.apache.ignite.ci.tcmodel.conf.BuildType;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrences;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
+import org.apache.ignite.ci.teamcity.ignited.buildref.FullReindexState;
+import org.apache.ignite.ci.teamcity.ignited.buildref.FullReindexStateDao;
+import org.apache.ignite.ci.teamcity.ignited.change.ChangeCompacted;
+import org.apache.ignite.ci.teamcity.ignited.change.ChangeDao;
+import org.apache.ignite.ci.teamcity.ignited.change.ChangeSync;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ITest;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
+import org.apache.ignite.ci.teamcity.ignited.runstat.RunStatEngine;
 import org.apache.ignite.ci.teamcity.pure.BuildHistoryEmulator;
+import org.apache.ignite.ci.teamcity.pure.ITeamcityConn;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityHttpConnection;
+import org.apache.ignite.ci.teamcity.pure.IXmlResponseParser;
 import org.apache.ignite.ci.user.ICredentialsProv;
 import org.apache.ignite.ci.util.XmlUtil;
 import org.apache.ignite.configuration.IgniteConfiguration;
@@ -59,12 +99,23 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertSame;
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 import static org.apache.ignite.ci.HelperConfig.ensureDirExist;
 import static org.apache.ignite.ci.teamcity.ignited.IgniteStringCompactor.STRINGS_CACHE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -239,6 +290,159 @@ public class IgnitedTcInMemoryIntegrationTest {
     }
 
 
+    /**
+     * Compares full reindex time for sequential and pipelined page loading, TC is emulated with delayed responses.
+     */
+    @Test
+    public void fullReindexPipelinedBenchmark() throws IOException {
+        ArrayList<BuildRef> tcBuilds = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            BuildRef e = new BuildRef();
+            e.state = BuildRef.STATE_FINISHED;
+            e.status = BuildRef.STATUS_SUCCESS;
+            e.buildTypeId = "IgniteTests24Java8_RunAll";
+            e.branchName = "refs/heads/master";
+            e.setId(i + 70000);
+            tcBuilds.add(e);
+        }
+
+        BuildHistoryEmulator emulator = new BuildHistoryEmulator(tcBuilds);
+
+        ITeamcityHttpConnection http = Mockito.mock(ITeamcityHttpConnection.class);
+
+        when(http.sendGet(anyString(), anyString())).thenAnswer(
+            (invocationOnMock) -> {
+                String url = invocationOnMock.getArgument(1);
+
+                InputStream stream = emulator.handleUrl(url);
+
+                if (stream == null)
+                    throw new FileNotFoundException(url);
+
+                // TC response latency.
+                Thread.sleep(20);
+
+                return stream;
+            }
+        );
+
+        TeamcityIgnitedModule module = new TeamcityIgnitedModule();
+
+        module.overrideHttp(http);
+
+        Injector injector = Guice.createInjector(module, new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        ITeamcityIgnitedProvider provider = injector.getInstance(ITeamcityIgnitedProvider.class);
+
+        for (boolean pipelined : new boolean[] {false, true}) {
+            String srvId = APACHE + (pipelined ? "pipelined" : "sequential");
+
+            TeamcityIgnitedImpl srv = (TeamcityIgnitedImpl)provider.server(srvId, creds());
+            srv.pipelinedSync(pipelined);
+
+            long start = System.currentTimeMillis();
+
+            srv.fullReindex();
+
+            System.out.println("Full reindex, pipelined=" + pipelined + ": " + (System.currentTimeMillis() - start) + "ms");
+
+            assertEquals(tcBuilds.size(), srv.getBuildHistory("IgniteTests24Java8_RunAll", "<default>").size());
+        }
+    }
+
+    /**
+     * Checks full reindex interrupted by TC failure is continued from the page it stopped.
+     */
+    @Test
+    public void fullReindexIsContinuedAfterFailure() throws IOException {
+        ArrayList<BuildRef> tcBuilds = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            BuildRef e = new BuildRef();
+            e.state = BuildRef.STATE_FINISHED;
+            e.status = BuildRef.STATUS_SUCCESS;
+            e.buildTypeId = "IgniteTests24Java8_RunAll";
+            e.branchName = "refs/heads/master";
+            e.setId(i + 90000);
+            tcBuilds.add(e);
+        }
+
+        BuildHistoryEmulator emulator = new BuildHistoryEmulator(tcBuilds);
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        Set<String> urlsRequested = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        ITeamcityHttpConnection http = Mockito.mock(ITeamcityHttpConnection.class);
+
+        when(http.sendGet(anyString(), anyString())).thenAnswer(
+            (invocationOnMock) -> {
+                String url = invocationOnMock.getArgument(1);
+
+                if (url.contains("start:1500") && failOnce.compareAndSet(true, false))
+                    throw new IOException("Emulated TC failure: " + url);
+
+                InputStream stream = emulator.handleUrl(url);
+
+                if (stream == null)
+                    throw new FileNotFoundException(url);
+
+                urlsRequested.add(url);
+
+                return stream;
+            }
+        );
+
+        TeamcityIgnitedModule module = new TeamcityIgnitedModule();
+
+        module.overrideHttp(http);
+
+        Injector injector = Guice.createInjector(module, new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        String srvId = APACHE + "resumed";
+        TeamcityIgnitedImpl srv = (TeamcityIgnitedImpl)injector.getInstance(ITeamcityIgnitedProvider.class)
+            .server(srvId, creds());
+
+        try {
+            srv.fullReindex();
+
+            fail("Reindex is expected to fail");
+        }
+        catch (Exception e) {
+            System.out.println("Expected failure: " + e.getMessage());
+        }
+
+        FullReindexStateDao stateDao = injector.getInstance(FullReindexStateDao.class);
+        FullReindexState state = stateDao.get(ITeamcityIgnited.serverIdToInt(srvId));
+
+        assertNotNull(state);
+        assertTrue(state.isInProgress());
+        assertEquals(1500, state.buildsChecked);
+
+        urlsRequested.clear();
+
+        srv.fullReindex();
+
+        // First page of history should not be requested again.
+        assertFalse(urlsRequested.isEmpty());
+        assertTrue(urlsRequested.stream().allMatch(url -> url.contains("start:")));
+
+        state = stateDao.get(ITeamcityIgnited.serverIdToInt(srvId));
+
+        assertFalse(state.isInProgress());
+        assertEquals(1, state.resumedCnt);
+        assertEquals(tcBuilds.size(), state.buildsChecked);
+        assertEquals(90000, state.lastBuildId);
+        assertEquals(tcBuilds.size(), srv.getBuildHistory("IgniteTests24Java8_RunAll", "<default>").size());
+    }
+
     /**
      *
      */
@@ -252,6 +456,149 @@ public class IgnitedTcInMemoryIntegrationTest {
         return mock;
     }
 
+    @Test
+    public void testQueuedAndRunningFollowBuildState() {
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(BuildRefDao.class).in(new SingletonScope());
+            }
+        });
+
+        BuildRefDao dao = injector.getInstance(BuildRefDao.class);
+        dao.init();
+
+        IStringCompactor compactor = injector.getInstance(IStringCompactor.class);
+        int srvId = ITeamcityIgnited.serverIdToInt("activeBuildsTest");
+
+        BuildRef queued = new BuildRef();
+        queued.setId(4000001);
+        queued.buildTypeId = "ActiveBuilds_RunAll";
+        queued.branchName = "refs/heads/master";
+        queued.state = BuildRef.STATE_QUEUED;
+
+        BuildRef other = new BuildRef();
+        other.setId(4000002);
+        other.buildTypeId = queued.buildTypeId;
+        other.branchName = queued.branchName;
+        other.state = BuildRef.STATE_RUNNING;
+
+        dao.save(srvId, new BuildRefCompacted(compactor, queued));
+        dao.save(srvId, new BuildRefCompacted(compactor, other));
+
+        assertEquals(Sets.newHashSet(4000001, 4000002), activeBuildIds(dao, srvId));
+
+        queued.state = BuildRef.STATE_RUNNING;
+        dao.save(srvId, new BuildRefCompacted(compactor, queued));
+
+        assertEquals(Sets.newHashSet(4000001, 4000002), activeBuildIds(dao, srvId));
+
+        queued.state = BuildRef.STATE_FINISHED;
+        queued.status = BuildRef.STATUS_SUCCESS;
+        dao.save(srvId, new BuildRefCompacted(compactor, queued));
+
+        assertEquals(Sets.newHashSet(4000002), activeBuildIds(dao, srvId));
+
+        // Entry is updated bypassing DAO, so index still has the build, but its stored state is checked.
+        other.state = BuildRef.STATE_FINISHED;
+
+        ignite.<Long, BuildRefCompacted>cache(BuildRefDao.TEAMCITY_BUILD_CACHE_NAME)
+            .put(BuildRefDao.buildIdToCacheKey(srvId, other.getId()), new BuildRefCompacted(compactor, other));
+
+        assertEquals(Collections.emptySet(), activeBuildIds(dao, srvId));
+    }
+
+    /**
+     * @param dao Dao.
+     * @param srvId Server id.
+     */
+    private Set<Integer> activeBuildIds(BuildRefDao dao, int srvId) {
+        return dao.getQueuedAndRunning(srvId).stream().map(BuildRefCompacted::id).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testStringCompactorBulkIds() {
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+            }
+        });
+
+        IStringCompactor compactor = injector.getInstance(IStringCompactor.class);
+
+        int existingId = compactor.getStringId("bulkExisting");
+
+        List<String> vals = Arrays.asList("bulkNew1", "bulkExisting", null, "bulkNew2", "bulkNew1");
+
+        int[] ids = compactor.getStringIds(vals);
+
+        assertEquals(existingId, ids[1]);
+        assertEquals(-1, ids[2]);
+        assertEquals(ids[0], ids[4]);
+        assertNotEquals(ids[0], ids[3]);
+        assertEquals(ids[0], compactor.getStringId("bulkNew1"));
+        assertEquals(ids[3], (int)compactor.getStringIdIfPresent("bulkNew2"));
+
+        assertArrayEquals(vals.toArray(), compactor.getStringsFromIds(ids));
+    }
+
+    @Test
+    public void testHierarchicalTestNames() {
+        String pkg = "org.apache.ignite.internal.processors.hierarchical";
+        List<String> names = Arrays.asList(
+            "org.apache.ignite.testsuites.IgniteCacheTestSuite: " + pkg + ".IgniteCacheSomeTest.testPut",
+            "org.apache.ignite.testsuites.IgniteCacheTestSuite: " + pkg + ".IgniteCacheSomeTest.testGet",
+            pkg + ".IgniteCacheOtherTest.testPut[mode=1.5]");
+
+        System.setProperty(TcBotSystemProperties.TEAMCITY_BOT_TEST_NAMES_HIERARCHICAL, "true");
+
+        int[] ids;
+
+        try {
+            IStringCompactor compactor = newStringCompactor();
+
+            ids = compactor.getStringIds(names);
+
+            assertEquals(ids[0], compactor.getStringId(names.get(0)));
+            assertEquals(ids[2], (int)compactor.getStringIdIfPresent(names.get(2)));
+            assertArrayEquals(names.toArray(), compactor.getStringsFromIds(ids));
+
+            int[] found = compactor.getTestNameIdsByClassPrefix(pkg + ".IgniteCacheSome");
+
+            assertEquals(2, found.length);
+            assertEquals(Sets.newHashSet(ids[0], ids[1]), Sets.newHashSet(found[0], found[1]));
+        }
+        finally {
+            System.clearProperty(TcBotSystemProperties.TEAMCITY_BOT_TEST_NAMES_HIERARCHICAL);
+        }
+
+        for (String name : names)
+            assertFalse(ignite.cache(STRINGS_CACHE).containsKey(name));
+
+        // Names are reconstructed by new compactor regardless of the property.
+        IStringCompactor compactor = newStringCompactor();
+
+        assertEquals(names.get(1), compactor.getStringFromId(ids[1]));
+        assertEquals(ids[2], compactor.getStringId(names.get(2)));
+        assertEquals(3, compactor.getTestNameIdsByClassPrefix(pkg).length);
+    }
+
+    /**
+     * @return New instance of Ignite based compactor, loading strings from caches.
+     */
+    private IStringCompactor newStringCompactor() {
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+            }
+        });
+
+        return injector.getInstance(IStringCompactor.class);
+    }
+
     @Test
     public void testFatBuild() throws JAXBException, IOException {
         Build refBuild = jaxbTestXml("/build.xml", Build.class);
@@ -264,6 +611,7 @@ public class IgnitedTcInMemoryIntegrationTest {
             @Override protected void configure() {
                 bind(Ignite.class).toInstance(ignite);
                 bind(IStringCompactor.class).to(IgniteStringCompactor.class);
+                bind(IScheduler.class).to(NoOpSheduler.class);
             }
         });
 
@@ -309,6 +657,14 @@ public class IgnitedTcInMemoryIntegrationTest {
         testsRef.getTests().forEach(testOccurrence -> testNamesRef.add(testOccurrence.name));
         assertEquals(testNamesRef, testNamesAct);
 
+        Map<String, String> detailsAct = new TreeMap<>();
+        testsAct.getTests().forEach(testOccurrence -> detailsAct.put(testOccurrence.name, testOccurrence.details));
+
+        Map<String, String> detailsRef = new TreeMap<>();
+        testsRef.getTests().forEach(testOccurrence ->
+            detailsRef.put(testOccurrence.name, Strings.nullToEmpty(testOccurrence.details)));
+        assertEquals(detailsRef, detailsAct);
+
         final List<ProblemOccurrence> problems = buildCompacted.problems(compactor);
         assertEquals(2, problems.size());
 
@@ -325,6 +681,644 @@ public class IgnitedTcInMemoryIntegrationTest {
         assertEquals(6, ch.length);
     }
 
+    @Test
+    public void testFinishedBuildsAreFilteredByStartDate() throws JAXBException, IOException {
+        ITeamcityHttpConnection http = Mockito.mock(ITeamcityHttpConnection.class);
+
+        when(http.sendGet(anyString(), anyString())).thenAnswer(
+            (invocationOnMock) -> {
+                throw new FileNotFoundException(invocationOnMock.getArgument(1));
+            }
+        );
+
+        TeamcityIgnitedModule module = new TeamcityIgnitedModule();
+
+        module.overrideHttp(http);
+
+        Injector injector = Guice.createInjector(module, new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        String srvName = "datesFilterTest";
+        ITeamcityIgnited srv = injector.getInstance(ITeamcityIgnitedProvider.class).server(srvName, creds());
+
+        IStringCompactor compactor = injector.getInstance(IStringCompactor.class);
+        FatBuildDao fatBuildDao = injector.getInstance(FatBuildDao.class);
+        BuildRefDao buildRefDao = injector.getInstance(BuildRefDao.class);
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvName);
+
+        String buildTypeId = "DatesFilter_RunAll";
+        long day = TimeUnit.DAYS.toMillis(1);
+        long oct1 = 1538352000000L;
+
+        Build known = jaxbTestXml("/build.xml", Build.class);
+        known.setId(3000001);
+        known.buildTypeId = buildTypeId;
+        known.setStartDateTs(oct1);
+        known.setFinishDateTs(oct1 + 1000);
+
+        // Reference to be saved with dates.
+        buildRefDao.save(srvIdMaskHigh, new BuildRefCompacted(
+            fatBuildDao.saveBuild(srvIdMaskHigh, known.getId(), known, Collections.emptyList(), null, null, null,
+                null)));
+
+        Build unknown = jaxbTestXml("/build.xml", Build.class);
+        unknown.setId(3000002);
+        unknown.buildTypeId = buildTypeId;
+        unknown.setStartDateTs(oct1 + 10 * day);
+        unknown.setFinishDateTs(oct1 + 10 * day + 1000);
+
+        // Reference was saved before dates were introduced, dates are known by fat build only.
+        fatBuildDao.saveBuild(srvIdMaskHigh, unknown.getId(), unknown, Collections.emptyList(), null, null, null,
+            null);
+        buildRefDao.save(srvIdMaskHigh, new BuildRefCompacted(compactor, unknown));
+
+        BuildRef notLoaded = new BuildRef();
+        notLoaded.setId(3000003);
+        notLoaded.buildTypeId = buildTypeId;
+        notLoaded.branchName = known.branchName();
+        notLoaded.state = BuildRef.STATE_FINISHED;
+        notLoaded.status = BuildRef.STATUS_SUCCESS;
+
+        // Fat build is not available, so start date is unknown.
+        buildRefDao.save(srvIdMaskHigh, new BuildRefCompacted(compactor, notLoaded));
+
+        assertEquals(Sets.newHashSet(3000001, 3000002, 3000003),
+            finishedBuildIds(srv, buildTypeId, null, null));
+
+        assertEquals(Sets.newHashSet(3000002),
+            finishedBuildIds(srv, buildTypeId, new Date(oct1 + 5 * day), null));
+
+        assertEquals(Sets.newHashSet(3000001),
+            finishedBuildIds(srv, buildTypeId, null, new Date(oct1 + 5 * day)));
+
+        assertEquals(Sets.newHashSet(3000001, 3000002),
+            finishedBuildIds(srv, buildTypeId, new Date(oct1), new Date(oct1 + 10 * day)));
+
+        assertEquals(Collections.emptySet(),
+            finishedBuildIds(srv, buildTypeId, new Date(oct1 + 11 * day), null));
+    }
+
+    /**
+     * @param srv Server.
+     * @param buildTypeId Build type id.
+     * @param sinceDate Since date.
+     * @param untilDate Until date.
+     */
+    private Set<Integer> finishedBuildIds(ITeamcityIgnited srv, String buildTypeId, Date sinceDate, Date untilDate) {
+        return srv.getFinishedBuildsCompacted(buildTypeId, ITeamcity.DEFAULT, sinceDate, untilDate).stream()
+            .map(BuildRefCompacted::id)
+            .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testStaleDetailsAreRemovedOnBuildResave() throws JAXBException, IOException {
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        TestOccurrencesFull testsRef = jaxbTestXml("/testList.xml", TestOccurrencesFull.class);
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        FatBuildDao stor = injector.getInstance(FatBuildDao.class);
+        stor.init();
+
+        IStringCompactor compactor = injector.getInstance(IStringCompactor.class);
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt("staleDetailsTest");
+
+        FatBuildCompacted saved = stor.saveBuild(srvIdMaskHigh, refBuild.getId(), refBuild,
+            Collections.singletonList(testsRef), null, null, null, null);
+
+        assertNotNull(saved);
+
+        FatBuildCompacted loaded = stor.getFatBuild(srvIdMaskHigh, refBuild.getId());
+
+        assertTrue(loaded.getAllTests().anyMatch(t -> !Strings.isNullOrEmpty(t.getDetailsText())));
+
+        // Build is saved again without tests, so details of its previous version are not needed anymore.
+        assertNotNull(stor.saveBuild(srvIdMaskHigh, refBuild.getId(), refBuild, Collections.emptyList(), null, null,
+            null, saved));
+
+        assertTrue(saved.getAllTests().allMatch(t -> Strings.isNullOrEmpty(t.getDetailsText())));
+    }
+
+    @Test
+    public void testDetailsAreKeptOnResaveOfBuildNotFoundInTc() throws JAXBException, IOException {
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        TestOccurrencesFull testsRef = jaxbTestXml("/testList.xml", TestOccurrencesFull.class);
+
+        refBuild.state = BuildRef.STATE_RUNNING;
+
+        String srvName = "notFoundResaveTest";
+
+        ITeamcityConn conn = Mockito.mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(srvName);
+        when(conn.getBuild(anyInt())).thenThrow(new UncheckedIOException(new FileNotFoundException("build")));
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(BuildRefDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        FatBuildDao stor = injector.getInstance(FatBuildDao.class);
+        stor.init();
+        injector.getInstance(BuildRefDao.class).init();
+
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvName);
+
+        FatBuildCompacted saved = stor.saveBuild(srvIdMaskHigh, refBuild.getId(), refBuild,
+            Collections.singletonList(testsRef), null, null, null, null);
+
+        assertNotNull(saved);
+
+        Map<Integer, String> detailsBefore = new TreeMap<>();
+        stor.getFatBuild(srvIdMaskHigh, refBuild.getId()).getAllTests()
+            .forEach(t -> detailsBefore.put(t.idInBuild(), t.getDetailsText()));
+
+        assertTrue(detailsBefore.values().stream().anyMatch(d -> !Strings.isNullOrEmpty(d)));
+
+        // Build is absent in TC now, so it is saved again as cancelled with tests copied from the stored version.
+        FatBuildCompacted resaved = injector.getInstance(ProactiveFatBuildSync.class)
+            .reloadBuild(conn, refBuild.getId(), saved);
+
+        assertNotNull(resaved);
+        assertFalse(resaved.isNotCancelled(injector.getInstance(IStringCompactor.class)));
+
+        Map<Integer, String> detailsAfter = new TreeMap<>();
+        stor.getFatBuild(srvIdMaskHigh, refBuild.getId()).getAllTests()
+            .forEach(t -> detailsAfter.put(t.idInBuild(), t.getDetailsText()));
+
+        assertEquals(detailsBefore, detailsAfter);
+    }
+
+    @Test
+    public void testConcurrentReloadsOfBuildShareOneRequest() throws Exception {
+        String srvName = "reloadInFlightTest";
+
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        refBuild.testOccurrences = null;
+        refBuild.problemOccurrences = null;
+        refBuild.statisticsRef = null;
+        refBuild.changesRef = null;
+
+        CountDownLatch requestStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        AtomicBoolean fail = new AtomicBoolean();
+
+        ITeamcityConn conn = Mockito.mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(srvName);
+        when(conn.getBuild(anyInt())).thenAnswer(inv -> {
+            requests.incrementAndGet();
+            requestStarted.countDown();
+
+            release.await();
+
+            if (fail.get())
+                throw new IllegalStateException("Build request failed");
+
+            return refBuild;
+        });
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(BuildRefDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        injector.getInstance(FatBuildDao.class).init();
+        injector.getInstance(BuildRefDao.class).init();
+
+        ProactiveFatBuildSync sync = injector.getInstance(ProactiveFatBuildSync.class);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<FatBuildCompacted> first = pool.submit(() -> sync.reloadBuild(conn, refBuild.getId(), null));
+
+            assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+
+            Future<FatBuildCompacted> second = pool.submit(() -> sync.reloadBuild(conn, refBuild.getId(), null));
+
+            // Second caller waits for reload in progress instead of requesting the build.
+            long deadline = System.currentTimeMillis() + 10_000;
+
+            while (sync.duplicatesAvoided() == 0 && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+
+            assertEquals(1, sync.duplicatesAvoided());
+            assertEquals(1, sync.buildsInFlight());
+
+            release.countDown();
+
+            FatBuildCompacted build = first.get(10, TimeUnit.SECONDS);
+
+            assertNotNull(build);
+            assertSame(build, second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, requests.get());
+            assertEquals(0, sync.buildsInFlight());
+
+            // Failed reload is not kept in registry, so the next reload requests the build again.
+            fail.set(true);
+
+            try {
+                sync.reloadBuild(conn, refBuild.getId(), build);
+
+                fail("Reload failure is expected");
+            }
+            catch (RuntimeException e) {
+                assertTrue(Throwables.getCausalChain(e).stream().anyMatch(IllegalStateException.class::isInstance));
+            }
+
+            assertEquals(2, requests.get());
+            assertEquals(0, sync.buildsInFlight());
+
+            fail.set(false);
+
+            sync.reloadBuild(conn, refBuild.getId(), build);
+
+            assertEquals(3, requests.get());
+            assertEquals(0, sync.buildsInFlight());
+        }
+        finally {
+            release.countDown();
+
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTestsPagesAreLoadedConcurrentlyWhileCountIsOutdated() throws JAXBException, IOException {
+        String srvName = "testsPagingTest";
+        int testsCnt = 2 * ProactiveFatBuildSync.TESTS_PAGE_SIZE + 500;
+
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        refBuild.testOccurrences.count = ProactiveFatBuildSync.TESTS_PAGE_SIZE + 1; // Count is outdated.
+        refBuild.problemOccurrences = null;
+        refBuild.statisticsRef = null;
+        refBuild.changesRef = null;
+
+        List<Integer> starts = Collections.synchronizedList(new ArrayList<>());
+
+        ITeamcityConn conn = Mockito.mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(srvName);
+        when(conn.getBuild(anyInt())).thenReturn(refBuild);
+        when(conn.getTestsPage(anyInt(), anyInt(), anyInt(), anyBoolean(), any())).thenAnswer(inv -> {
+            int start = inv.getArgument(1);
+
+            starts.add(start);
+
+            return parseTestsPage(inv.getArgument(4), refBuild.getId(), start,
+                Math.min(inv.getArgument(2), testsCnt - start));
+        });
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(BuildRefDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        injector.getInstance(FatBuildDao.class).init();
+        injector.getInstance(BuildRefDao.class).init();
+
+        FatBuildCompacted build = injector.getInstance(ProactiveFatBuildSync.class)
+            .reloadBuild(conn, refBuild.getId(), null);
+
+        assertNotNull(build);
+        assertEquals(testsCnt, build.getAllTests().count());
+        assertEquals(testsCnt, build.getAllTests().map(ITest::idInBuild).distinct().count());
+
+        Collections.sort(starts);
+
+        assertEquals(Arrays.asList(0, ProactiveFatBuildSync.TESTS_PAGE_SIZE, 2 * ProactiveFatBuildSync.TESTS_PAGE_SIZE),
+            starts);
+    }
+
+    @Test
+    public void testTestsPagesNotRequestedYetAreCancelledOnFailure() throws Exception {
+        String srvName = "testsPagingFailureTest";
+        int pages = 5 * ProactiveFatBuildSync.BUILD_IO_THREADS;
+
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        refBuild.testOccurrences.count = pages * ProactiveFatBuildSync.TESTS_PAGE_SIZE;
+        refBuild.problemOccurrences = null;
+        refBuild.statisticsRef = null;
+        refBuild.changesRef = null;
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requested = new AtomicInteger();
+        AtomicInteger inProgress = new AtomicInteger();
+
+        ITeamcityConn conn = Mockito.mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(srvName);
+        when(conn.getBuild(anyInt())).thenReturn(refBuild);
+        when(conn.getTestsPage(anyInt(), anyInt(), anyInt(), anyBoolean(), any())).thenAnswer(inv -> {
+            int start = inv.getArgument(1);
+
+            requested.incrementAndGet();
+            inProgress.incrementAndGet();
+
+            try {
+                if (start == 0)
+                    throw new IllegalStateException("Page failed");
+
+                release.await();
+
+                return parseTestsPage(inv.getArgument(4), refBuild.getId(), start, inv.getArgument(2));
+            }
+            finally {
+                inProgress.decrementAndGet();
+            }
+        });
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(BuildRefDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        injector.getInstance(FatBuildDao.class).init();
+        injector.getInstance(BuildRefDao.class).init();
+
+        try {
+            injector.getInstance(ProactiveFatBuildSync.class).reloadBuild(conn, refBuild.getId(), null);
+
+            fail("Failure of page is expected");
+        }
+        catch (RuntimeException e) {
+            assertTrue(Throwables.getCausalChain(e).stream().anyMatch(IllegalStateException.class::isInstance));
+        }
+        finally {
+            release.countDown();
+        }
+
+        // Pages running now are completed, pages not requested yet should not be requested at all.
+        long deadline = System.currentTimeMillis() + 10_000;
+
+        do {
+            Thread.sleep(100);
+        }
+        while (inProgress.get() > 0 && System.currentTimeMillis() < deadline);
+
+        assertEquals(0, inProgress.get());
+        assertTrue("Requested " + requested.get() + " of " + pages, requested.get() < pages);
+    }
+
+    /**
+     * @param parser Parser.
+     * @param buildId Build id.
+     * @param start Index of the first test in page.
+     * @param cnt Count of tests in page.
+     */
+    private static <T> T parseTestsPage(IXmlResponseParser<T> parser, int buildId, int start, int cnt)
+        throws JAXBException, XMLStreamException {
+        StringBuilder xml = new StringBuilder("<testOccurrences count=\"" + cnt + "\">");
+
+        for (int i = start; i < start + cnt; i++) {
+            xml.append("<testOccurrence id=\"id:").append(i).append(",build:(id:").append(buildId)
+                .append(")\" name=\"PagingSuite: PagingTest.test").append(i)
+                .append("\" status=\"SUCCESS\" duration=\"1\"/>");
+        }
+
+        xml.append("</testOccurrences>");
+
+        return parser.parse(new InputStreamReader(new ByteArrayInputStream(xml.toString().getBytes(UTF_8)), UTF_8));
+    }
+
+    @Test
+    public void testRepeatedBuildIsCountedOnce() throws JAXBException, IOException {
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        TestOccurrencesFull testsRef = jaxbTestXml("/testList.xml", TestOccurrencesFull.class);
+        ProblemOccurrences problemsList = jaxbTestXml("/problemList.xml", ProblemOccurrences.class);
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        String srvName = "runStatMultiTest";
+
+        FatBuildDao stor = injector.getInstance(FatBuildDao.class);
+        stor.init();
+
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvName);
+
+        stor.saveBuild(srvIdMaskHigh, refBuild.getId(), refBuild, Collections.singletonList(testsRef),
+            problemsList.getProblemsNonNull(), null, null, null);
+
+        FatBuildCompacted build = stor.getFatBuild(srvIdMaskHigh, refBuild.getId());
+        assertNotNull(build);
+
+        RunStatEngine engine = injector.getInstance(RunStatEngine.class);
+
+        assertEquals(1, engine.countBuilds(srvName, Arrays.asList(build, build)));
+        assertEquals(0, engine.countBuilds(srvName, Collections.singletonList(build)));
+
+        IgniteCache<SuiteInBranch, RunStat> suitesStat = ignite.cache(
+            IgnitePersistentTeamcity.ignCacheNme(IgnitePersistentTeamcity.BUILDS_FAILURE_RUN_STAT, srvName));
+
+        RunStat suiteStat = suitesStat.get(new SuiteInBranch(refBuild.buildTypeId(), ITeamcity.DEFAULT));
+
+        assertNotNull(suiteStat);
+        assertEquals(1, suiteStat.getRunsCount());
+
+        IgniteCache<TestInBranch, RunStat> testsStat =
+            ignite.cache(IgnitePersistentTeamcity.ignCacheNme(IgnitePersistentTeamcity.TESTS_RUN_STAT, srvName));
+
+        TestOccurrenceFull test = testsRef.getTests().stream()
+            .filter(TestOccurrence::isNotMutedOrIgnoredTest)
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+
+        RunStat testStat = testsStat.get(new TestInBranch(test.getName(), ITeamcity.DEFAULT));
+
+        assertNotNull(testStat);
+        assertEquals(testsRef.getTests().stream().filter(t -> t.getName().equals(test.getName())).count(),
+            (long)testStat.getRunsCount());
+    }
+
+    @Test
+    public void testRunStatIsUpdatedOnBuildSave() throws JAXBException, IOException {
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        TestOccurrencesFull testsRef = jaxbTestXml("/testList.xml", TestOccurrencesFull.class);
+        ProblemOccurrences problemsList = jaxbTestXml("/problemList.xml", ProblemOccurrences.class);
+        ChangesList changesList = jaxbTestXml("/changeList.xml", ChangesList.class);
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        String srvName = "runStatTest";
+
+        FatBuildDao stor = injector.getInstance(FatBuildDao.class);
+        stor.init();
+
+        injector.getInstance(RunStatEngine.class).init(srvName);
+
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvName);
+        List<TestOccurrencesFull> occurrences = Collections.singletonList(testsRef);
+
+        assertNotNull(stor.saveBuild(srvIdMaskHigh, refBuild.getId(), refBuild, occurrences,
+            problemsList.getProblemsNonNull(), null, changesList, null));
+
+        // Modified build is saved again, but runs are not counted twice.
+        assertNotNull(stor.saveBuild(srvIdMaskHigh, refBuild.getId(), refBuild, occurrences,
+            problemsList.getProblemsNonNull(), null, null, null));
+
+        IgniteCache<TestInBranch, RunStat> testsStat =
+            ignite.cache(IgnitePersistentTeamcity.ignCacheNme(IgnitePersistentTeamcity.TESTS_RUN_STAT, srvName));
+
+        Map<String, List<TestOccurrenceFull>> runsByName = testsRef.getTests().stream()
+            .filter(TestOccurrence::isNotMutedOrIgnoredTest)
+            .collect(Collectors.groupingBy(TestOccurrence::getName));
+
+        assertFalse(runsByName.isEmpty());
+
+        for (Map.Entry<String, List<TestOccurrenceFull>> e : runsByName.entrySet()) {
+            RunStat stat = testsStat.get(new TestInBranch(e.getKey(), ITeamcity.DEFAULT));
+
+            assertNotNull(e.getKey(), stat);
+            assertEquals(e.getValue().size(), stat.getRunsCount());
+            assertEquals(e.getValue().stream().filter(t -> !TestOccurrence.STATUS_SUCCESS.equals(t.status)).count(),
+                (long)stat.getFailuresCount());
+        }
+
+        IgniteCache<SuiteInBranch, RunStat> suitesStat = ignite.cache(
+            IgnitePersistentTeamcity.ignCacheNme(IgnitePersistentTeamcity.BUILDS_FAILURE_RUN_STAT, srvName));
+
+        RunStat suiteStat = suitesStat.get(new SuiteInBranch(refBuild.buildTypeId(), ITeamcity.DEFAULT));
+
+        assertNotNull(suiteStat);
+        assertEquals(1, suiteStat.getRunsCount());
+        assertEquals(Collections.singletonList(RunStat.RunStatus.RES_FAILURE.getCode()),
+            suiteStat.getLatestRunResults());
+    }
+
+    @Test
+    public void testUnknownTestStatusIsCountedAsFailure() throws JAXBException, IOException {
+        Build refBuild = jaxbTestXml("/build.xml", Build.class);
+        TestOccurrencesFull testsRef = jaxbTestXml("/testList.xml", TestOccurrencesFull.class);
+
+        TestOccurrenceFull unknown = testsRef.getTests().stream()
+            .filter(TestOccurrence::isNotMutedOrIgnoredTest)
+            .filter(t -> TestOccurrence.STATUS_SUCCESS.equals(t.status))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+
+        unknown.status = "UNKNOWN";
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(FatBuildDao.class).in(new SingletonScope());
+                bind(IScheduler.class).to(NoOpSheduler.class);
+            }
+        });
+
+        String srvName = "runStatUnknownTest";
+
+        FatBuildDao stor = injector.getInstance(FatBuildDao.class);
+        stor.init();
+
+        injector.getInstance(RunStatEngine.class).init(srvName);
+
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvName);
+
+        assertNotNull(stor.saveBuild(srvIdMaskHigh, refBuild.getId(), refBuild, Collections.singletonList(testsRef),
+            null, null, null, null));
+
+        IgniteCache<TestInBranch, RunStat> testsStat =
+            ignite.cache(IgnitePersistentTeamcity.ignCacheNme(IgnitePersistentTeamcity.TESTS_RUN_STAT, srvName));
+
+        RunStat stat = testsStat.get(new TestInBranch(unknown.getName(), ITeamcity.DEFAULT));
+
+        assertNotNull(stat);
+        assertEquals(testsRef.getTests().stream()
+            .filter(t -> t.getName().equals(unknown.getName()))
+            .filter(t -> !TestOccurrence.STATUS_SUCCESS.equals(t.status))
+            .count(), (long)stat.getFailuresCount());
+        assertTrue(stat.getFailuresCount() > 0);
+    }
+
+    @Test
+    public void testBuildChangesAreRequestedOnce() throws JAXBException, IOException {
+        Change change = jaxbTestXml("/change.xml", Change.class);
+        Change change2 = jaxbTestXml("/change2.xml", Change.class);
+
+        ChangesListFull buildChanges = new ChangesListFull();
+        buildChanges.changes = new ArrayList<>();
+        buildChanges.changes.add(change);
+        buildChanges.changes.add(change2);
+
+        ITeamcityConn conn = Mockito.mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.getChangesFull(anyInt())).thenReturn(buildChanges);
+        when(conn.getChange(anyInt())).thenReturn(new Change());
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+                bind(IStringCompactor.class).to(IgniteStringCompactor.class).in(new SingletonScope());
+                bind(ChangeDao.class).in(new SingletonScope());
+            }
+        });
+
+        injector.getInstance(ChangeDao.class).init();
+
+        ChangeSync changeSync = injector.getInstance(ChangeSync.class);
+
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(APACHE);
+        int[] changeIds = {834843, 834837, 834000};
+
+        Map<Integer, ChangeCompacted> changes = changeSync.buildChanges(srvIdMaskHigh, 2153237, changeIds, conn);
+
+        assertEquals(3, changes.size());
+        assertEquals("Pavel Kovalenko", changes.get(834843).tcUserFullName(injector.getInstance(IStringCompactor.class)));
+
+        // Change absent in build changes list is requested separately.
+        verify(conn, times(1)).getChangesFull(2153237);
+        verify(conn, times(1)).getChange(834000);
+
+        assertEquals(3, changeSync.buildChanges(srvIdMaskHigh, 2153238, changeIds, conn).size());
+
+        verify(conn, times(1)).getChangesFull(anyInt());
+        verify(conn, times(1)).getChange(anyInt());
+    }
+
     public void saveTmpFile(Object obj, String name) throws IOException, JAXBException {
         ensureDirExist(new File(name).getParentFile());
 
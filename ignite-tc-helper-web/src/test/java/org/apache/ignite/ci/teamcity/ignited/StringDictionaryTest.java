@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks local dictionary of compacted strings.
+ */
+public class StringDictionaryTest {
+    /** */
+    @Test
+    public void testLookupsInBothDirections() {
+        StringDictionary dict = new StringDictionary();
+
+        int cnt = 100_000;
+
+        // Sparse IDs like ones reserved by atomic sequence after restarts.
+        for (int i = 0; i < cnt; i++)
+            dict.put(i * 3 + 1, "org.apache.ignite.SomeTest.test" + i);
+
+        assertEquals(cnt, dict.size());
+
+        for (int i = 0; i < cnt; i++) {
+            String val = "org.apache.ignite.SomeTest.test" + i;
+
+            assertEquals(val, dict.byId(i * 3 + 1));
+            assertEquals(i * 3 + 1, dict.idOf(val));
+        }
+
+        assertNull(dict.byId(0));
+        assertNull(dict.byId(-1));
+        assertNull(dict.byId(StringDictionary.MAX_ID + 1));
+        assertEquals(-1, dict.idOf("org.apache.ignite.SomeTest.test" + cnt));
+    }
+
+    /** */
+    @Test
+    public void testExistingIdIsNotReplaced() {
+        StringDictionary dict = new StringDictionary();
+
+        dict.put(5, "a");
+        dict.put(5, "b");
+        dict.put(StringDictionary.MAX_ID, "c");
+        dict.put(-1, "d");
+
+        assertEquals(1, dict.size());
+        assertEquals("a", dict.byId(5));
+        assertEquals(5, dict.idOf("a"));
+        assertEquals(-1, dict.idOf("b"));
+        assertEquals(-1, dict.idOf("c"));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.ignite.internal.util.GridIntList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/** */
+public class ActiveBuildsIndexTest {
+    /** */
+    @Test
+    public void testQueuedRunningFinishedTransitions() {
+        ActiveBuildsIndex idx = new ActiveBuildsIndex();
+
+        // Queued.
+        idx.update(1, 100, true);
+        idx.update(1, 101, true);
+
+        assertArrayEquals(new int[] {100, 101}, sorted(idx.getBuildIds(1)));
+
+        // Running, build is still active.
+        idx.update(1, 100, true);
+
+        assertArrayEquals(new int[] {100, 101}, sorted(idx.getBuildIds(1)));
+
+        // Finished.
+        idx.update(1, 100, false);
+
+        assertArrayEquals(new int[] {101}, sorted(idx.getBuildIds(1)));
+
+        // Finished build of unknown server.
+        idx.update(2, 101, false);
+
+        assertArrayEquals(new int[] {101}, sorted(idx.getBuildIds(1)));
+        assertArrayEquals(new int[0], idx.getBuildIds(2));
+    }
+
+    /** */
+    @Test
+    public void testResetReplacesAllData() {
+        ActiveBuildsIndex idx = new ActiveBuildsIndex();
+
+        idx.update(1, 100, true);
+        idx.update(2, 200, true);
+
+        GridIntList ids = new GridIntList(2);
+
+        ids.add(102);
+        ids.add(101);
+
+        idx.reset(Collections.singletonMap(1, ids));
+
+        assertArrayEquals(new int[] {101, 102}, sorted(idx.getBuildIds(1)));
+        assertArrayEquals(new int[0], idx.getBuildIds(2));
+
+        idx.update(1, 101, false);
+
+        assertArrayEquals(new int[] {102}, sorted(idx.getBuildIds(1)));
+    }
+
+    /**
+     * @param ids IDs.
+     */
+    private static int[] sorted(int[] ids) {
+        Arrays.sort(ids);
+
+        return ids;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** */
+public class BuildIdsBitmapTest {
+    /** */
+    @Test
+    public void testAddAndContains() {
+        BuildIdsBitmap ids = new BuildIdsBitmap();
+
+        ids.add(2200135);
+        ids.add(5);
+        ids.add(65536);
+        ids.add(5);
+        ids.add(-1);
+
+        assertTrue(ids.contains(5));
+        assertTrue(ids.contains(65536));
+        assertTrue(ids.contains(2200135));
+        assertFalse(ids.contains(6));
+        assertFalse(ids.contains(65535));
+        assertFalse(ids.contains(-1));
+
+        assertEquals(3, ids.size());
+        assertArrayEquals(new int[] {5, 65536, 2200135}, ids.toArray());
+    }
+
+    /** */
+    @Test
+    public void testAndNot() {
+        BuildIdsBitmap refs = new BuildIdsBitmap();
+        BuildIdsBitmap fatBuilds = new BuildIdsBitmap();
+
+        for (int i = 50000; i < 250000; i++) {
+            refs.add(i);
+
+            if (i % 1000 != 0)
+                fatBuilds.add(i);
+        }
+
+        fatBuilds.add(300000);
+
+        int[] missing = refs.andNot(fatBuilds);
+
+        assertEquals(200, missing.length);
+
+        for (int i = 0; i < missing.length; i++)
+            assertEquals(50000 + i * 1000, missing[i]);
+
+        BuildIdsBitmap cp = new BuildIdsBitmap(fatBuilds);
+
+        assertArrayEquals(new int[] {300000}, cp.andNot(refs));
+    }
+
+    /** */
+    @Test
+    public void testEmptyResult() {
+        BuildIdsBitmap ids = new BuildIdsBitmap();
+
+        assertArrayEquals(new int[0], ids.toArray());
+
+        ids.add(7);
+
+        assertArrayEquals(new int[0], ids.andNot(new BuildIdsBitmap(ids)));
+    }
+}
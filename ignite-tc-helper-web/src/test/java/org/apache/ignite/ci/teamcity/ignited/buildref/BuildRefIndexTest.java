@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/** */
+public class BuildRefIndexTest {
+    /** */
+    @Test
+    public void testHistoriesAreSeparatedByServerSuiteAndBranch() {
+        BuildRefIndex idx = new BuildRefIndex();
+
+        idx.add(1, 10, 20, 1002, 0);
+        idx.add(1, 10, 20, 1001, 0);
+        idx.add(1, 10, 21, 1003, 0);
+        idx.add(1, 11, 20, 1004, 0);
+        idx.add(2, 10, 20, 1005, 0);
+        idx.add(1, 10, 20, 1001, 0);
+
+        assertArrayEquals(new int[] {1001, 1002}, idx.getBuildIds(1, 10, 20));
+        assertArrayEquals(new int[] {1003}, idx.getBuildIds(1, 10, 21));
+        assertArrayEquals(new int[] {1004}, idx.getBuildIds(1, 11, 20));
+        assertArrayEquals(new int[] {1005}, idx.getBuildIds(2, 10, 20));
+        assertArrayEquals(new int[0], idx.getBuildIds(3, 10, 20));
+
+        idx.remove(1, 10, 20, 1002);
+        idx.remove(3, 10, 20, 1002);
+
+        assertArrayEquals(new int[] {1001}, idx.getBuildIds(1, 10, 20));
+    }
+
+    /** */
+    @Test
+    public void testHistoryKeyKeepsNegativeBranch() {
+        assertNotEquals(BuildRefIndex.historyKey(1, -1), BuildRefIndex.historyKey(0, -1));
+        assertNotEquals(BuildRefIndex.historyKey(1, -1), BuildRefIndex.historyKey(2, -1));
+    }
+
+    /** */
+    @Test
+    public void testDateRange() {
+        BuildRefIndex idx = new BuildRefIndex();
+
+        idx.add(1, 10, 20, 1001, 1000);
+        idx.add(1, 10, 20, 1002, 2000);
+        idx.add(1, 10, 20, 1003, -1);
+
+        assertArrayEquals(new int[] {1002, 1003}, idx.getBuildIds(1, 10, 20, 1500, Long.MAX_VALUE));
+        assertArrayEquals(new int[] {1001, 1003}, idx.getBuildIds(1, 10, 20, Long.MIN_VALUE, 1999));
+        assertArrayEquals(new int[0], idx.getBuildIds(1, 10, 21, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    /** */
+    @Test
+    public void testResetReplacesAllData() {
+        BuildRefIndex idx = new BuildRefIndex();
+
+        idx.add(1, 10, 20, 1001, 0);
+        idx.add(2, 10, 20, 2001, 0);
+
+        BuildRefIndex.Builder bld = new BuildRefIndex.Builder();
+
+        for (int i = 20; i > 0; i--)
+            bld.add(1, 10, 20, 3000 + i, 1000L * i);
+
+        bld.add(1, 11, 20, 4001, 0);
+
+        idx.reset(bld);
+
+        int[] expected = new int[20];
+
+        for (int i = 0; i < expected.length; i++)
+            expected[i] = 3001 + i;
+
+        assertArrayEquals(expected, idx.getBuildIds(1, 10, 20));
+        assertArrayEquals(new int[] {4001}, idx.getBuildIds(1, 11, 20));
+        assertArrayEquals(new int[0], idx.getBuildIds(2, 10, 20));
+        assertArrayEquals(new int[] {3005, 3006}, idx.getBuildIds(1, 10, 20, 5000, 6000));
+
+        // Index is still updated after reset.
+        idx.add(1, 10, 20, 3000, 0);
+        idx.add(2, 10, 20, 2002, 0);
+
+        assertArrayEquals(new int[] {3000, 3001}, Arrays.copyOf(idx.getBuildIds(1, 10, 20), 2));
+        assertArrayEquals(new int[] {2002}, idx.getBuildIds(2, 10, 20));
+    }
+}
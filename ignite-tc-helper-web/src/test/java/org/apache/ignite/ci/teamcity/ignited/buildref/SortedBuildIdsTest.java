@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** */
+public class SortedBuildIdsTest {
+    /** */
+    @Test
+    public void testIdsAreSortedForAnyInsertOrder() {
+        SortedBuildIds ids = new SortedBuildIds();
+
+        assertTrue(ids.add(100, 0));
+        assertTrue(ids.add(300, 0));
+        assertTrue(ids.add(200, 0));
+        assertTrue(ids.add(50, 0));
+        assertTrue(ids.add(400, 0));
+
+        assertEquals(5, ids.size());
+        assertArrayEquals(new int[] {50, 100, 200, 300, 400}, ids.toArray());
+
+        assertTrue(ids.remove(200));
+        assertFalse(ids.remove(200));
+        assertTrue(ids.remove(50));
+
+        assertArrayEquals(new int[] {100, 300, 400}, ids.toArray());
+    }
+
+    /** */
+    @Test
+    public void testDuplicateIdUpdatesStartDate() {
+        SortedBuildIds ids = new SortedBuildIds();
+
+        ids.add(100, 1000);
+        ids.add(200, -1);
+
+        assertFalse(ids.add(200, 2000));
+        assertFalse(ids.add(100, 1000));
+
+        assertEquals(2, ids.size());
+        assertArrayEquals(new int[] {100, 200}, ids.toArray());
+
+        // Start date of the duplicate is now known and out of range.
+        assertArrayEquals(new int[] {100}, ids.toArray(0, 1500));
+    }
+
+    /** */
+    @Test
+    public void testDateRangeIncludesBoundsAndUnknownDates() {
+        SortedBuildIds ids = new SortedBuildIds();
+
+        ids.add(1, 1000);
+        ids.add(2, 2000);
+        ids.add(3, 0);
+        ids.add(4, 3000);
+        ids.add(5, -1);
+
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5}, ids.toArray(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertArrayEquals(new int[] {2, 3, 4, 5}, ids.toArray(2000, 3000));
+        assertArrayEquals(new int[] {1, 2, 3, 5}, ids.toArray(1000, 2000));
+        assertArrayEquals(new int[] {3, 5}, ids.toArray(3001, Long.MAX_VALUE));
+    }
+
+    /** */
+    @Test
+    public void testCreatedFromUnsortedArrays() {
+        SortedBuildIds ids = new SortedBuildIds(new int[] {30, 10, 20, 99}, new long[] {3000, 1000, 2000, 9900}, 3);
+
+        assertEquals(3, ids.size());
+        assertArrayEquals(new int[] {10, 20, 30}, ids.toArray());
+        assertArrayEquals(new int[] {10, 20}, ids.toArray(1000, 2000));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** */
+public class BuildLoadQueueTest {
+    /** */
+    @Test
+    public void testHigherPriorityIsPolledFirst() {
+        BuildLoadQueue queue = new BuildLoadQueue(100);
+
+        queue.addAll(Arrays.asList(1, 2, 3), LoadPriority.BACKFILL);
+        queue.addAll(Arrays.asList(10, 11), LoadPriority.NEW_REFS);
+        queue.addAll(Arrays.asList(3, 20), LoadPriority.INTERACTIVE);
+        queue.addAll(Arrays.asList(10), LoadPriority.BACKFILL);
+
+        assertEquals(2, queue.depth(LoadPriority.INTERACTIVE));
+        assertEquals(2, queue.depth(LoadPriority.NEW_REFS));
+        assertEquals(2, queue.depth(LoadPriority.BACKFILL));
+        assertEquals(6, queue.size());
+
+        assertArrayEquals(new int[] {3, 20, 10}, queue.poll(3).array());
+        assertArrayEquals(new int[] {11, 1, 2}, queue.poll(10).array());
+        assertEquals(0, queue.poll(10).size());
+        assertEquals(0, queue.size());
+    }
+
+    /** */
+    @Test
+    public void testLowestPriorityIsDroppedOnOverflow() {
+        BuildLoadQueue queue = new BuildLoadQueue(3);
+
+        queue.addAll(Arrays.asList(1, 2), LoadPriority.BACKFILL);
+        queue.addAll(Arrays.asList(10, 11), LoadPriority.RUNNING);
+        queue.addAll(Arrays.asList(3), LoadPriority.BACKFILL);
+
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.dropped());
+        assertArrayEquals(new int[] {10, 11, 2}, queue.poll(10).array());
+    }
+
+    /** */
+    @Test
+    public void testBuildMovedToHigherLevelIsNotEvictedFromLowerOne() {
+        BuildLoadQueue queue = new BuildLoadQueue(3);
+
+        queue.addAll(Arrays.asList(1, 2), LoadPriority.BACKFILL);
+        queue.addAll(Arrays.asList(2), LoadPriority.INTERACTIVE);
+        queue.addAll(Arrays.asList(10, 11), LoadPriority.RUNNING);
+
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.dropped());
+        assertEquals(0, queue.depth(LoadPriority.BACKFILL));
+        assertArrayEquals(new int[] {2, 10, 11}, queue.poll(10).array());
+    }
+
+    /** */
+    @Test
+    public void testBuildMovedToHigherLevelIsRemovedFromLowerOne() {
+        BuildLoadQueue queue = new BuildLoadQueue(3);
+
+        queue.addAll(Arrays.asList(1), LoadPriority.BACKFILL);
+        queue.addAll(Arrays.asList(1), LoadPriority.INTERACTIVE);
+
+        assertEquals(0, queue.depth(LoadPriority.BACKFILL));
+        assertArrayEquals(new int[] {1}, queue.poll(10).array());
+
+        // Build queued again is taken once.
+        queue.addAll(Arrays.asList(1), LoadPriority.BACKFILL);
+
+        assertEquals(1, queue.depth(LoadPriority.BACKFILL));
+        assertArrayEquals(new int[] {1}, queue.poll(10).array());
+        assertEquals(0, queue.poll(10).size());
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks shared dictionary compression of test details.
+ */
+public class DetailsDictionaryTest {
+    /** */
+    @Test
+    public void testDictionaryCompressionRoundTrip() throws Exception {
+        List<TestCompacted> all = TestListFixture.loadTests(new InMemoryStringCompactor()).stream()
+            .filter(t -> t.details() != null)
+            .collect(Collectors.toList());
+
+        // Dictionary is trained on one half of details and checked on another one, as for details saved later.
+        List<TestCompacted> training = new ArrayList<>();
+        List<TestCompacted> tests = new ArrayList<>();
+
+        for (int i = 0; i < all.size(); i++)
+            (i % 2 == 0 ? training : tests).add(all.get(i));
+
+        assertFalse(tests.isEmpty());
+
+        List<byte[]> raws = training.stream().map(TestCompacted::uncompressedDetails).collect(Collectors.toList());
+
+        DetailsDictionary dict = new DetailsDictionary(300, TestDetailsDictionaries.train(raws));
+
+        assertTrue(dict.size() > 0 && dict.size() <= DetailsDictionary.MAX_SIZE);
+
+        long perRecord = 0;
+        long withDict = 0;
+
+        for (TestCompacted test : tests) {
+            String text = test.getDetailsText();
+            byte[] compressed = dict.compress(test.uncompressedDetails());
+
+            assertEquals(300, DetailsDictionary.dictionaryId(compressed));
+            assertArrayEquals(test.uncompressedDetails(), dict.decompress(compressed));
+
+            perRecord += test.details().length;
+            withDict += compressed.length;
+
+            test.dictionaryDetails(compressed);
+            test.detailsLoader(new ITestDetailsLoader() {
+                @Override public Map<Integer, byte[]> loadDetails(int[] testIdsInBuild) {
+                    return Collections.emptyMap();
+                }
+
+                @Override public DetailsDictionary dictionary(int dictId) {
+                    return dictId == dict.id() ? dict : null;
+                }
+            });
+
+            assertTrue(test.isDictionaryCompressed());
+            assertEquals(text, test.getDetailsText());
+        }
+
+        System.out.println("Details of " + tests.size() + " tests: per record " + perRecord + " bytes, " +
+            "with dictionary " + withDict + " bytes");
+
+        assertTrue("Per record: " + perRecord + ", with dictionary: " + withDict, withDict * 2 < perRecord);
+    }
+}
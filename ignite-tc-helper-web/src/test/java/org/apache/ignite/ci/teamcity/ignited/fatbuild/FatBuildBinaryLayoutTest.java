@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryObjectBuilder;
+import org.apache.ignite.ci.db.TcHelperDb;
+import org.apache.ignite.ci.tcmodel.changes.Change;
+import org.apache.ignite.ci.tcmodel.result.Build;
+import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrences;
+import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.change.ChangeCompacted;
+import org.apache.ignite.ci.util.XmlUtil;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.binary.BinaryObjectImpl;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks raw binary layout of compacted entities and compatibility with entities written by reflection.
+ */
+public class FatBuildBinaryLayoutTest {
+    /** Test ignite port. */
+    private static final int TEST_IGNITE_PORT = 64125;
+
+    /** Tests in build used for benchmark, close to count of tests in Run All of Apache Ignite. */
+    private static final int BENCHMARK_TESTS = 5000;
+
+    /** Benchmark iterations. */
+    private static final int BENCHMARK_ITERS = 300;
+
+    /** Compacted string IDs of production server are about this value. */
+    private static final int STRING_ID_BASE = 100_000;
+
+    /** Ignite. */
+    private static Ignite ignite;
+
+    /**
+     *
+     */
+    @BeforeClass
+    public static void startIgnite() {
+        IgniteConfiguration cfg = new IgniteConfiguration();
+        TcpDiscoverySpi spi = new TcpDiscoverySpi();
+
+        spi.setLocalPort(TEST_IGNITE_PORT);
+        spi.setLocalPortRange(1);
+        spi.setIpFinder(new TcHelperDb.LocalOnlyTcpDiscoveryIpFinder(TEST_IGNITE_PORT));
+
+        cfg.setDiscoverySpi(spi);
+        cfg.setIgniteInstanceName(FatBuildBinaryLayoutTest.class.getSimpleName());
+
+        ignite = Ignition.start(cfg);
+    }
+
+    /**
+     *
+     */
+    @AfterClass
+    public static void stopIgnite() {
+        if (ignite != null)
+            ignite.close();
+    }
+
+    /** */
+    @Test
+    public void testRawLayoutRoundTrip() throws Exception {
+        FatBuildCompacted build = realisticBuild(new InMemoryStringCompactor());
+
+        assertEquals(build, ignite.binary().<BinaryObject>toBinary(build).deserialize());
+
+        TestCompacted test = build.testsCompacted().get(0);
+
+        test.setDetails("java.lang.AssertionError: expected:<1> but was:<0>");
+
+        assertEquals(test, ignite.binary().<BinaryObject>toBinary(test).deserialize());
+
+        ChangeCompacted change = change(new InMemoryStringCompactor());
+
+        assertEquals(change, ignite.binary().<BinaryObject>toBinary(change).deserialize());
+    }
+
+    /** */
+    @Test
+    public void testTestNamesDeltaRoundTrip() throws Exception {
+        FatBuildCompacted build = realisticBuild(new InMemoryStringCompactor());
+
+        int[] names = build.testNameIds();
+        int[] ref = names.clone();
+
+        ref[10] = STRING_ID_BASE - 1;
+
+        build.testNamesDelta(1, TestNamesDelta.encode(ref, names));
+
+        FatBuildCompacted read = ignite.binary().<BinaryObject>toBinary(build).deserialize();
+
+        assertEquals(1, read.testNamesRef());
+
+        int[] unresolved = read.testNameIds();
+
+        assertEquals(names.length, unresolved.length);
+        assertEquals(-1, unresolved[0]);
+
+        read.testNamesLoader(refId -> refId == 1 ? ref : null);
+
+        assertArrayEquals(names, read.testNameIds());
+        assertEquals(build, read);
+    }
+
+    /** */
+    @Test
+    public void testEntitiesWrittenByReflectionAreRead() throws Exception {
+        IStringCompactor compactor = new InMemoryStringCompactor();
+        FatBuildCompacted build = realisticBuild(compactor);
+
+        assertEquals(build, reflectionLayout(build).deserialize());
+
+        // Build of version 5 kept tests as list of objects.
+        FatBuildCompacted buildV5 = new FatBuildCompacted();
+        List<TestCompacted> tests = TestListFixture.loadTests(compactor);
+
+        tests.get(0).setDetails("java.lang.AssertionError: expected:<1> but was:<0>");
+
+        setField(buildV5, "_ver", (short)5);
+        setField(buildV5, "tests", tests);
+
+        FatBuildCompacted readV5 = reflectionLayout(buildV5).deserialize();
+
+        assertEquals(buildV5, readV5);
+        assertEquals(5, readV5.version());
+        assertEquals(tests.get(0).getDetailsText(), readV5.getAllTests().findFirst().get().getDetailsText());
+
+        ChangeCompacted change = change(compactor);
+
+        assertEquals(change, reflectionLayout(change).deserialize());
+    }
+
+    /**
+     * Compares build of {@link #BENCHMARK_TESTS} tests written by reflection (previous format) and in raw layout.
+     */
+    @Test
+    public void benchmarkSizeAndPutGetLatency() throws Exception {
+        FatBuildCompacted build = realisticBuild(new InMemoryStringCompactor());
+        ReflectiveFatBuild reflective = copyFields(build, new ReflectiveFatBuild());
+
+        int reflectiveSize = ((BinaryObjectImpl)ignite.binary().toBinary(reflective)).length();
+        int rawSize = ((BinaryObjectImpl)ignite.binary().toBinary(build)).length();
+
+        IgniteCache<Long, Object> cache = ignite.getOrCreateCache("binaryLayoutBenchmark");
+
+        try {
+            long[] reflectiveNs = putGetNanos(cache, reflective);
+            long[] rawNs = putGetNanos(cache, build);
+
+            System.out.println("Build with " + BENCHMARK_TESTS + " tests. Size: reflection " + reflectiveSize / 1024
+                + " KB, raw " + rawSize / 1024 + " KB. Put: reflection " + reflectiveNs[0] / 1000 + " us, raw "
+                + rawNs[0] / 1000 + " us. Get: reflection " + reflectiveNs[1] / 1000 + " us, raw "
+                + rawNs[1] / 1000 + " us.");
+        }
+        finally {
+            cache.destroy();
+        }
+
+        assertTrue(rawSize < reflectiveSize);
+    }
+
+    /**
+     * @param cache Cache.
+     * @param val Value.
+     * @return Average put and get time in nanoseconds.
+     */
+    private static long[] putGetNanos(IgniteCache<Long, Object> cache, Object val) {
+        long[] res = new long[2];
+
+        for (int warmup = 1; warmup >= 0; warmup--) {
+            long putNs = 0;
+            long getNs = 0;
+
+            for (int i = 0; i < BENCHMARK_ITERS; i++) {
+                long start = System.nanoTime();
+
+                cache.put((long)i, val);
+
+                putNs += System.nanoTime() - start;
+
+                start = System.nanoTime();
+
+                assertEquals(val.getClass(), cache.get((long)i).getClass());
+
+                getNs += System.nanoTime() - start;
+            }
+
+            res[0] = putNs / BENCHMARK_ITERS;
+            res[1] = getNs / BENCHMARK_ITERS;
+        }
+
+        return res;
+    }
+
+    /**
+     * @param compactor Compactor.
+     * @return Build with {@link #BENCHMARK_TESTS} tests, problems and statistics of real build.
+     */
+    private FatBuildCompacted realisticBuild(IStringCompactor compactor) throws Exception {
+        Build ref = load("/build.xml", Build.class);
+        FatBuildCompacted build = new FatBuildCompacted(compactor, ref);
+
+        List<TestCompacted> templates = TestListFixture.loadTests(compactor);
+        List<TestCompacted> tests = new ArrayList<>();
+
+        for (int i = 0; i < BENCHMARK_TESTS; i++) {
+            TestCompacted t = templates.get(i % templates.size());
+
+            tests.add(new TestCompacted(i, STRING_ID_BASE + i, t.status(), t.duration(), t.flagsBits(),
+                t.testId() + i, ref.getId(), t.details()));
+        }
+
+        build.addTests(tests);
+        build.addProblems(compactor, load("/problemList.xml", ProblemOccurrences.class).getProblemsNonNull());
+        build.statistics(compactor, load("/statistics.xml", Statistics.class));
+        build.changes(new int[] {834843, 834844, 834850});
+
+        return build;
+    }
+
+    /**
+     * @param compactor Compactor.
+     */
+    private ChangeCompacted change(IStringCompactor compactor) throws Exception {
+        return new ChangeCompacted(compactor, load("/change.xml", Change.class));
+    }
+
+    /**
+     * Creates binary object having the same fields as reflection based marshaller writes for entity.
+     *
+     * @param entity Entity.
+     */
+    private static BinaryObject reflectionLayout(Object entity) throws Exception {
+        BinaryObjectBuilder bld = ignite.binary().builder(entity.getClass().getName());
+
+        for (Field field : persistedFields(entity.getClass())) {
+            Object val = field.get(entity);
+
+            if (val instanceof List) {
+                List<BinaryObject> list = new ArrayList<>();
+
+                for (Object elem : (List<?>)val)
+                    list.add(reflectionLayout(elem));
+
+                val = list;
+            }
+
+            if (val != null)
+                bld.setField(field.getName(), val);
+        }
+
+        return bld.build();
+    }
+
+    /**
+     * @param from Source.
+     * @param to Destination having fields of the same names.
+     */
+    private static <T> T copyFields(Object from, T to) throws Exception {
+        for (Field field : persistedFields(to.getClass()))
+            field.set(to, findField(from.getClass(), field.getName()).get(from));
+
+        return to;
+    }
+
+    /**
+     * @param obj Object.
+     * @param name Field name.
+     * @param val Value.
+     */
+    private static void setField(Object obj, String name, Object val) throws Exception {
+        findField(obj.getClass(), name).set(obj, val);
+    }
+
+    /**
+     * @param cls Class.
+     * @param name Field name.
+     */
+    private static Field findField(Class<?> cls, String name) throws NoSuchFieldException {
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(name)) {
+                    field.setAccessible(true);
+
+                    return field;
+                }
+            }
+        }
+
+        throw new NoSuchFieldException(name);
+    }
+
+    /**
+     * @param cls Class.
+     * @return Non static non transient fields of class and its superclasses.
+     */
+    private static List<Field> persistedFields(Class<?> cls) {
+        List<Field> res = new ArrayList<>();
+
+        for (Class<?> c = cls; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0)
+                    continue;
+
+                field.setAccessible(true);
+
+                res.add(field);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * @param ref Resource.
+     * @param cls Class.
+     */
+    private <E> E load(String ref, Class<E> cls) throws Exception {
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream(ref), StandardCharsets.UTF_8)) {
+            return XmlUtil.load(cls, reader);
+        }
+    }
+
+    /**
+     * Fat build with the same fields as {@link FatBuildCompacted}, is written by reflection.
+     */
+    @SuppressWarnings("unused")
+    private static class ReflectiveFatBuild {
+        private int id;
+        private int buildTypeId;
+        private int branchName;
+        private int status;
+        private int state;
+        private long startDate;
+        private long finishDate;
+        private short _ver;
+        private long queuedDate;
+        private int projectId;
+        private int name;
+        private List<TestCompacted> tests;
+        private int[] testIdsInBuild;
+        private int[] testNames;
+        private int[] testStatuses;
+        private int[] testDurations;
+        private short[] testFlags;
+        private long[] testIds;
+        private int[] testActualBuildIds;
+        private byte[] testDetails;
+        private int[] testDetailsOffs;
+        private int[] snapshotDeps;
+        private BitSet flags;
+        private List<ProblemCompacted> problems;
+        private StatisticsCompacted statistics;
+        private int[] changesIds;
+    }
+}
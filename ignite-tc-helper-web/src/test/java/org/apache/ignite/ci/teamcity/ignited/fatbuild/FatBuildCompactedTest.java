@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks columnar tests storage of fat build.
+ */
+public class FatBuildCompactedTest {
+    /** */
+    @Test
+    public void testViewsAreSameAsCompactedTests() throws Exception {
+        IStringCompactor compactor = new InMemoryStringCompactor();
+        List<TestCompacted> tests = TestListFixture.loadTests(compactor);
+
+        TestCompacted notMutedFailure = new TestCompacted(compactor, "id:1,build:(id:2153237)", "NotMutedFailure",
+            "FAILURE", 42, false, false, false, false);
+
+        notMutedFailure.setDetails("java.lang.AssertionError: expected:<1> but was:<0>");
+        tests.add(notMutedFailure);
+
+        FatBuildCompacted build = new FatBuildCompacted();
+
+        build.addTests(tests.subList(0, 50));
+        build.addTests(tests.subList(50, tests.size()));
+
+        Map<Integer, byte[]> separateDetails = new HashMap<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        tests.stream().filter(t -> t.details() != null).forEach(t -> separateDetails.put(t.idInBuild(), t.details()));
+
+        build.detailsLoader(new ITestDetailsLoader() {
+            @Override public Map<Integer, byte[]> loadDetails(int[] ids) {
+                loads.incrementAndGet();
+
+                return Arrays.stream(ids).filter(separateDetails::containsKey).boxed()
+                    .collect(Collectors.toMap(id -> id, separateDetails::get));
+            }
+
+            @Override public DetailsDictionary dictionary(int dictId) {
+                return null;
+            }
+        });
+
+        assertEquals(tests.size(), build.testsCount());
+        assertFalse(separateDetails.isEmpty());
+        String expected = tests.stream().map(FatBuildCompactedTest::keptInColumns).collect(Collectors.toList())
+            .toString();
+
+        // Compacted details are arrays, so tests are compared by its string representation.
+        assertEquals(expected, build.getAllTests().collect(Collectors.toList()).toString());
+        assertEquals(expected, build.testsCompacted().toString());
+
+        List<ITest> failed = build.getFailedNotMutedTests(compactor).collect(Collectors.toList());
+
+        assertEquals(1, loads.get());
+        assertEquals(1, failed.size());
+        assertEquals("NotMutedFailure", failed.get(0).testName(compactor));
+        assertEquals(Integer.valueOf(42), failed.get(0).getDuration());
+        assertFalse(failed.get(0).getMutedFlag());
+        assertEquals(notMutedFailure.getDetailsText(), failed.get(0).getDetailsText());
+        assertEquals(1, loads.get());
+
+        assertEquals(tests.stream().filter(t -> t.isFailedButNotMuted(compactor)).count(), failed.size());
+        assertEquals(tests.stream().filter(ITest::isInvestigated).count(),
+            build.getAllTests().filter(ITest::isInvestigated).count());
+
+        for (int i = 0; i < tests.size(); i++) {
+            ITest view = build.getAllTests().skip(i).findFirst().get();
+
+            assertEquals(tests.get(i).getDetailsText(), view.getDetailsText());
+            assertEquals(tests.get(i).testName(compactor), view.testName(compactor));
+            assertEquals(tests.get(i).getDuration(), view.getDuration());
+            assertEquals(tests.get(i).getMutedFlag(), view.getMutedFlag());
+        }
+
+        int loadsBefore = loads.get();
+
+        assertEquals(tests.size(), build.getTestOcurrences(compactor).getTests().size());
+        assertEquals(loadsBefore, loads.get());
+
+        int successStatus = compactor.getStringId(TestOccurrence.STATUS_SUCCESS);
+
+        assertTrue(build.getAllTests().anyMatch(t -> t.status() == successStatus));
+    }
+
+    /**
+     * @param test Test as parsed.
+     * @return Same test as kept in build columns: details of test having ID in build are kept separately.
+     */
+    private static TestCompacted keptInColumns(TestCompacted test) {
+        if (test.idInBuild() < 0 || test.details() == null)
+            return test;
+
+        return new TestCompacted(test.idInBuild(), test.testName(), test.status(), test.duration(),
+            test.flagsBits() | 1 << TestCompacted.SEPARATE_DETAILS_F, test.testId(), test.actualBuildId(), null);
+    }
+
+    /** */
+    @Test
+    public void testBuildsWithSameTestsAreEqual() throws Exception {
+        IStringCompactor compactor = new InMemoryStringCompactor();
+
+        FatBuildCompacted build1 = new FatBuildCompacted();
+        build1.addTests(TestListFixture.loadTests(compactor));
+
+        FatBuildCompacted build2 = new FatBuildCompacted();
+        build2.addTests(TestListFixture.loadTests(compactor));
+
+        assertEquals(build1, build2);
+        assertEquals(build1.hashCode(), build2.hashCode());
+    }
+}
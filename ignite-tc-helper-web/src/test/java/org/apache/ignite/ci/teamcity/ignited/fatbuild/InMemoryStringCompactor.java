@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+
+/**
+ * In-memory compactor.
+ */
+class InMemoryStringCompactor implements IStringCompactor {
+    /** String -> id. */
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /** Id -> string. */
+    private final Map<Integer, String> strings = new ConcurrentHashMap<>();
+
+    /** {@inheritDoc} */
+    @Override public int getStringId(String val) {
+        if (val == null)
+            return -1;
+
+        return ids.computeIfAbsent(val, k -> {
+            int id = ids.size();
+
+            strings.put(id, k);
+
+            return id;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override public String getStringFromId(int id) {
+        return strings.get(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override public Integer getStringIdIfPresent(String val) {
+        return ids.get(val);
+    }
+}
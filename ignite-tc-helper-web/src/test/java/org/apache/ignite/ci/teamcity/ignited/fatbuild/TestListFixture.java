@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+
+/**
+ * Tests of reference build, parsed from testList.xml resource.
+ */
+class TestListFixture {
+    /**
+     * @param compactor Compactor.
+     */
+    static List<TestCompacted> loadTests(IStringCompactor compactor) throws Exception {
+        try (Reader reader = new InputStreamReader(TestListFixture.class.getResourceAsStream("/testList.xml"),
+            StandardCharsets.UTF_8)) {
+            return TestOccurrencesStaxParser.parse(reader, compactor).tests();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks delta encoding of test names against reference names.
+ */
+public class TestNamesDeltaTest {
+    /** Tests in suite. */
+    private static final int TESTS = 2000;
+
+    /** */
+    @Test
+    public void testDeltaRoundTrip() {
+        Random rnd = new Random(42);
+
+        int[] ref = names(TESTS);
+
+        for (int iter = 0; iter < 200; iter++) {
+            int[] names = edit(ref, rnd, rnd.nextInt(20));
+
+            int[] delta = TestNamesDelta.encode(ref, names);
+
+            assertArrayEquals(names, TestNamesDelta.decode(ref, delta));
+        }
+
+        assertArrayEquals(new int[0], TestNamesDelta.decode(ref, TestNamesDelta.encode(ref, new int[0])));
+        assertArrayEquals(ref, TestNamesDelta.decode(new int[0], TestNamesDelta.encode(new int[0], ref)));
+    }
+
+    /** */
+    @Test
+    public void testDeltaOfSimilarSuiteIsSmall() {
+        Random rnd = new Random(42);
+
+        int[] ref = names(TESTS);
+
+        assertEquals(3, TestNamesDelta.encode(ref, ref).length);
+
+        int[] names = edit(ref, rnd, 10);
+        int[] delta = TestNamesDelta.encode(ref, names);
+
+        assertTrue("Delta length: " + delta.length, delta.length < 100);
+    }
+
+    /** */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeltaNotMatchingReferenceIsRejected() {
+        int[] delta = TestNamesDelta.encode(names(TESTS), names(TESTS));
+
+        TestNamesDelta.decode(names(TESTS / 2), delta);
+    }
+
+    /** */
+    @Test
+    public void testBuildKeepsNamesAsDelta() {
+        int[] ref = names(TESTS);
+        int[] names = edit(ref, new Random(42), 10);
+
+        FatBuildCompacted plain = new FatBuildCompacted();
+
+        plain.addTests(tests(names));
+
+        FatBuildCompacted build = new FatBuildCompacted();
+
+        build.addTests(tests(names));
+        build.testNamesDelta(100, TestNamesDelta.encode(ref, names));
+
+        assertEquals(100, build.testNamesRef());
+        assertEquals(-1, plain.testNamesRef());
+        assertArrayEquals(names, build.testNameIds());
+
+        // Builds are compared by names representation, so resolving of names is not required.
+        assertNotEquals(plain, build);
+
+        plain.sameTestNamesAs(build);
+
+        assertEquals(100, plain.testNamesRef());
+        assertEquals(plain, build);
+        assertEquals(plain.hashCode(), build.hashCode());
+    }
+
+    /**
+     * @param cnt Count.
+     * @return Distinct names (compacted strings).
+     */
+    private static int[] names(int cnt) {
+        int[] res = new int[cnt];
+
+        for (int i = 0; i < cnt; i++)
+            res[i] = 100_000 + i * 7;
+
+        return res;
+    }
+
+    /**
+     * @param ref Reference names.
+     * @param rnd Random.
+     * @param edits Count of edits: removed, added or moved tests.
+     */
+    private static int[] edit(int[] ref, Random rnd, int edits) {
+        List<Integer> res = new ArrayList<>();
+
+        for (int name : ref)
+            res.add(name);
+
+        for (int i = 0; i < edits; i++) {
+            switch (rnd.nextInt(3)) {
+                case 0:
+                    res.remove(rnd.nextInt(res.size()));
+
+                    break;
+
+                case 1:
+                    res.add(rnd.nextInt(res.size() + 1), 200_000 + rnd.nextInt(1000));
+
+                    break;
+
+                default:
+                    Collections.swap(res, rnd.nextInt(res.size()), rnd.nextInt(res.size()));
+            }
+        }
+
+        return res.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param names Names.
+     */
+    private static List<TestCompacted> tests(int[] names) {
+        List<TestCompacted> res = new ArrayList<>();
+
+        for (int i = 0; i < names.length; i++)
+            res.add(new TestCompacted(i, names[i], 1, 10, 0, i, 100, null));
+
+        return res;
+    }
+}
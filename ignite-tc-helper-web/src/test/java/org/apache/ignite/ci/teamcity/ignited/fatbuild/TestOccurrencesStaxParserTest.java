@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.util.XmlUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks streaming parser of test occurrences produces the same tests as JAXB and allocates less memory.
+ */
+public class TestOccurrencesStaxParserTest {
+    /** Tests in page used for benchmark. */
+    private static final int BENCHMARK_TESTS = 1000;
+
+    /** Iterations of benchmark. */
+    private static final int BENCHMARK_ITERATIONS = 20;
+
+    /** */
+    @Test
+    public void testStreamingParseIsSameAsJaxb() throws Exception {
+        String xml = resource("/testList.xml");
+        IStringCompactor compactor = new InMemoryStringCompactor();
+
+        TestCompactedPage jaxb = parseJaxb(xml, compactor);
+        TestCompactedPage stax = TestOccurrencesStaxParser.parse(new StringReader(xml), compactor);
+
+        assertEquals(100, stax.tests().size());
+        assertEquals(jaxb.nextHref(), stax.nextHref());
+        // Compacted details are arrays, so tests are compared by its string representation.
+        assertEquals(jaxb.tests().toString(), stax.tests().toString());
+        assertTrue(stax.tests().stream().anyMatch(t -> t.isFailedTest(compactor)));
+    }
+
+    /** */
+    @Test
+    public void benchmarkAllocationPer1kTests() throws Exception {
+        String xml = testsPage(resource("/testList.xml"), BENCHMARK_TESTS);
+        IStringCompactor compactor = new InMemoryStringCompactor();
+
+        // Warm up both paths and fill compactor.
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            parseJaxb(xml, compactor);
+            TestOccurrencesStaxParser.parse(new StringReader(xml), compactor);
+        }
+
+        long jaxbBytes = allocatedBytes(() -> parseJaxb(xml, compactor));
+        long staxBytes = allocatedBytes(() -> TestOccurrencesStaxParser.parse(new StringReader(xml), compactor));
+
+        System.out.println("Allocated per " + BENCHMARK_TESTS + " tests: JAXB " + jaxbBytes / 1024 + " KB, " +
+            "streaming " + staxBytes / 1024 + " KB");
+
+        assertTrue("JAXB: " + jaxbBytes + ", streaming: " + staxBytes, staxBytes < jaxbBytes);
+    }
+
+    /**
+     * @param parse Parse action.
+     * @return Average bytes allocated by current thread for one parse.
+     */
+    private static long allocatedBytes(ParseAction parse) throws Exception {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long before = bean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+            parse.run();
+
+        return (bean.getThreadAllocatedBytes(threadId) - before) / BENCHMARK_ITERATIONS;
+    }
+
+    /**
+     * JAXB path: full object graph of test occurrences is created and converted.
+     *
+     * @param xml Xml.
+     * @param compactor Compactor.
+     */
+    private static TestCompactedPage parseJaxb(String xml, IStringCompactor compactor) throws Exception {
+        TestOccurrencesFull tests = XmlUtil.load(TestOccurrencesFull.class, new StringReader(xml));
+        TestCompactedPage page = new TestCompactedPage();
+
+        page.nextHref(tests.nextHref());
+
+        for (TestOccurrenceFull occurrence : tests.getTests())
+            page.tests().add(new TestCompacted(compactor, occurrence));
+
+        return page;
+    }
+
+    /**
+     * @param xml Page XML to take test occurrences from.
+     * @param cnt Count of tests required.
+     * @return Page XML with required count of tests.
+     */
+    private static String testsPage(String xml, int cnt) {
+        Matcher matcher = Pattern.compile("<testOccurrence .*?</testOccurrence>", Pattern.DOTALL).matcher(xml);
+        List<String> occurrences = new ArrayList<>();
+
+        while (matcher.find())
+            occurrences.add(matcher.group());
+
+        StringBuilder sb = new StringBuilder("<testOccurrences count=\"" + cnt + "\">\n");
+
+        for (int i = 0; i < cnt; i++)
+            sb.append(occurrences.get(i % occurrences.size())).append('\n');
+
+        return sb.append("</testOccurrences>").toString();
+    }
+
+    /**
+     * @param name Resource name.
+     */
+    private String resource(String name) throws IOException {
+        try (InputStream is = getClass().getResourceAsStream(name);
+             Scanner scanner = new Scanner(is, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    /** */
+    private interface ParseAction {
+        /** */
+        void run() throws Exception;
+    }
+}
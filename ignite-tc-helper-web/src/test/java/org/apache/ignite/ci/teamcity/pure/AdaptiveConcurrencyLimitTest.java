@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.pure;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** */
+public class AdaptiveConcurrencyLimitTest {
+    /** */
+    @Test
+    public void testLimitGrowsWhenSaturatedAndBacksOffOnOverload() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit();
+        Deque<Long> started = new ArrayDeque<>();
+
+        for (int i = 0; i < 100; i++) {
+            while (limit.inFlight() < limit.limit())
+                started.add(limit.acquire());
+
+            limit.release(started.poll(), false);
+        }
+
+        int grown = limit.limit();
+
+        assertTrue(grown > AdaptiveConcurrencyLimit.INITIAL_LIMIT);
+        assertEquals(0, limit.overloads());
+
+        limit.release(started.poll(), true);
+
+        assertEquals((int)(grown * AdaptiveConcurrencyLimit.BACKOFF_RATIO), limit.limit(), 1);
+        assertEquals(1, limit.overloads());
+
+        // Requests started before overload should not decrease limit again.
+        limit.release(started.poll(), true);
+
+        assertEquals(1, limit.overloads());
+    }
+}